@@ -0,0 +1,139 @@
+package expPlotter;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+
+import sGUI.SimpleGUI;
+
+/**
+ * Plays an animation at a fixed FPS frames per second, advancing the parameter t by 1/FPS each frame.
+ *
+ * Frames are rendered on a dedicated thread into one of two back buffers, starting from a copy of a
+ * static background (the axes, labels and data series, drawn once), and then presented straight to the
+ * screen. Nothing is added to the GUI's shape list, so an animation can run indefinitely.
+ *
+ * Frames are scheduled on a fixed grid of deadlines from the start. A frame that finishes late is shown
+ * at once; if rendering falls a whole frame or more behind, the missed frames are dropped so the
+ * animation keeps to real time instead of slowing down.
+ */
+final class Animator {
+	static final int FPS = 60;
+	private static final long FRAME_NANOS = 1000000000L / FPS;
+
+	/**
+	 * Draws the moving parts of a frame over the background.
+	 */
+	interface FrameRenderer {
+		void draw(Graphics2D g);
+	}
+
+	final Parameter time = new Parameter("t");
+	private final SimpleGUI GUI;
+	private Thread thread;
+
+	// Statistics for the current or last animation, written by the animation thread.
+	private volatile long framesShown;
+	private volatile long framesDropped;
+	private volatile long totalRenderNanos;
+	private volatile long maxRenderNanos;
+	private volatile long elapsedNanos;
+
+	Animator(SimpleGUI gui) {
+		this.GUI = gui;
+	}
+
+	boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * Starts animating from t = 0, stopping any animation already running.
+	 */
+	void start(BufferedImage background, FrameRenderer renderer) {
+		stop();
+		framesShown = framesDropped = totalRenderNanos = maxRenderNanos = elapsedNanos = 0;
+		thread = new Thread(() -> loop(background, renderer), "Animator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the animation and waits for the frame in progress. The last frame stays on screen.
+	 */
+	void stop() {
+		if (thread == null) {return;}
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	private void loop(BufferedImage background, FrameRenderer renderer) {
+		BufferedImage[] buffers = {blankLike(background), blankLike(background)};
+		int back = 0;
+		long start = System.nanoTime();
+		long frame = 0;
+
+		while (!Thread.currentThread().isInterrupted()) {
+			long renderStart = System.nanoTime();
+			time.value = (double) frame / FPS;
+
+			BufferedImage buffer = buffers[back];
+			try {
+				synchronized (buffer) {
+					Graphics2D g = buffer.createGraphics();
+					try {
+						g.drawImage(background, 0, 0, null);
+						renderer.draw(g);
+					} finally {
+						g.dispose();
+					}
+				}
+			} catch (CancellationException e) {
+				break; // Interrupted while sampling.
+			}
+			GUI.presentFrame(buffer);
+			back = 1 - back;
+
+			long renderNanos = System.nanoTime() - renderStart;
+			totalRenderNanos += renderNanos;
+			maxRenderNanos = Math.max(maxRenderNanos, renderNanos);
+			framesShown++;
+
+			// Skip the frames whose deadlines have already passed, then wait for the next deadline.
+			frame++;
+			long now = System.nanoTime();
+			long late = now - (start + frame * FRAME_NANOS);
+			if (late >= FRAME_NANOS) {
+				long missed = late / FRAME_NANOS;
+				frame += missed;
+				framesDropped += missed;
+			}
+			long deadline = start + frame * FRAME_NANOS;
+			while ((now = System.nanoTime()) < deadline && !Thread.currentThread().isInterrupted()) {
+				LockSupport.parkNanos(deadline - now);
+			}
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	private static BufferedImage blankLike(BufferedImage image) {
+		return new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * A summary of the frame pacing so far, e.g. to print when the animation stops.
+	 */
+	String stats() {
+		long shown = framesShown;
+		if (shown == 0) {return "No frames shown";}
+		return String.format("%d frames in %.1f s (%.1f fps, target %d), %d dropped; render %.2f ms average, %.2f ms max",
+				shown, elapsedNanos / 1e9, shown / (elapsedNanos / 1e9), FPS, framesDropped,
+				totalRenderNanos / 1e6 / shown, maxRenderNanos / 1e6);
+	}
+}
@@ -0,0 +1,53 @@
+package expPlotter;
+
+/**
+ * Checks that ArenaParser and the recursive Parser read expressions the same way: each expression of a
+ * corpus covering the grammar (precedence, unary minus, powers, implicit multiplication, function calls,
+ * nesting, other variable names, and text after the end of the expression) is parsed by both, with and
+ * without fast math, and the two must give exactly the same value at every x of a grid, NaN included.
+ *
+ * Usage: java expPlotter.ArenaParity
+ */
+final class ArenaParity {
+	private static final String[] CORPUS = {
+			"x", "42", "3.25", "-x", "--x", "-x^2", "(-x)^2", "x^2^0.5", "2^-x", "x^-2",
+			"1-2-3+x", "x/2/3", "x*2/3*4", "1+2*x-3/x", "2*x^3-x^2+5*x-7",
+			"2x", "2(x+1)", "x(x-1)(x+1)", "3sin(x)", "xsin(x)", "(x+1)(x-1)", "-(x+1)^2",
+			"sin(x)", "cos(x)", "tan(x)", "exp(x)", "log(x)", "sqrt(x)", "abs(x)",
+			"sin(cos(tan(x)))", "exp(-x^2/2)", "log(abs(x))+sqrt(x^2+1)", "sin(x)^2+cos(x)^2",
+			"((((x))))", "(x+(x*(x-(x/(x+1)))))", "1/(x-1)", "sqrt(1-x^2)", "x^0.5",
+			"t^2-1", "3y+y^2", "x + 2 * x", "x+1)", "2*x)*3",
+	};
+	private static final double X0 = -10, DX = 0.0137;
+	private static final int POINTS = 1461;
+
+	public static void main(String[] args) {
+		int failures = 0, compared = 0;
+		for (boolean fastMath : new boolean[] {false, true}) {
+			for (String exp : CORPUS) {
+				Parser.fastMath = fastMath;
+				ParseNode tree = Parser.parse(exp);
+				ExpressionArena arena = ArenaParser.parse(exp, fastMath);
+				for (int i = 0; i < POINTS; i++) {
+					// Every grid point, and the awkward values exactly.
+					double x = i < POINTS - 3 ? X0 + i*DX : new double[] {0, 1, -1}[i - (POINTS - 3)];
+					double expected = tree.evaluate(x), actual = arena.evaluate(x);
+					compared++;
+					if (Double.compare(expected, actual) != 0) {
+						System.out.println("  " + exp + (fastMath ? " (fast math)" : "") + " at x = " + x + ": Parser gives "
+								+ expected + ", ArenaParser " + actual);
+						failures++;
+						break;
+					}
+				}
+			}
+		}
+		Parser.fastMath = false;
+		System.out.println(CORPUS.length + " expressions, " + compared + " values compared, " + failures + " disagree");
+		if (failures > 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
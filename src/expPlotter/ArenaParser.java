@@ -0,0 +1,525 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A non-recursive (shunting-yard) parser for the same grammar as the ParseNode classes:
+ *
+ *   EXP     := TERM (('+' | '-') TERM)*
+ *   TERM    := FACTOR (('*' | '/' | implicit before '(' or a letter) FACTOR)*
+ *   FACTOR  := '-'* BASE
+ *   BASE    := PRIMARY ('^' FACTOR)?
+ *   PRIMARY := VARIABLE | NUMBER | FUNCTION '(' EXP ')' | '(' EXP ')'
+ *
+ * It builds an ExpressionArena instead of a tree of objects, and keeps its own explicit stacks, so
+ * machine-generated expressions with hundreds of thousands of terms or very deep nesting neither
+ * overflow the call stack nor allocate per node.
+ *
+ * Like the recursive parser, it stops at the first character that can't continue the expression,
+ * and the first letter that isn't a function call becomes the variable.
+ *
+ * parseIncrementally reparses an edited expression, reusing what it can of the last parse (a Memo) for
+ * the text before and after the edit. The parser's state depends only on the text it has read, so parsing
+ * resumes from the last checkpoint of that state before the edit, with the nodes emitted up to there
+ * copied over. After the edit, a bracketed group or function call whose text is unchanged becomes the
+ * same run of nodes in the arena as before (nodes are emitted children first, so a group's nodes are
+ * contiguous), which is copied instead of being parsed again.
+ */
+final class ArenaParser {
+	// Operator stack entries. Precedences follow the grammar: +- < */ < unary minus < ^.
+	private static final int OPEN = -1;          // '(' of a bracketed expression
+	private static final int FUNCTION_OPEN = -2; // '(' of a function call; the function is on the stack below it
+	// Function calls are stored on the operator stack as FUNCTION_CODE_BASE + the function's ordinal.
+	private static final int FUNCTION_CODE_BASE = 100;
+
+	// Checkpoints for incremental parsing are taken every CHECKPOINT_INTERVAL characters, where the stacks
+	// hold no more than CHECKPOINT_STACK entries in all.
+	private static final int CHECKPOINT_INTERVAL = 256;
+	private static final int CHECKPOINT_STACK = 64;
+	// How far past its first letter matching a function call may look.
+	private static final int CALL_LOOKAHEAD = longestFunctionName() + 1;
+
+	/**
+	 * A successful incremental parse, kept to speed up the next one.
+	 */
+	static final class Memo {
+		final String exp;
+		final boolean fastMath;
+		final ExpressionArena arena;
+		// How many of the arena's nodes were copied from the previous parse instead of being parsed.
+		final int reusedNodes;
+		private final char variable;
+		private final Groups groups;
+		private final int[] groupAt; // 1 + the group starting at each position, or 0
+		private final List<Checkpoint> checkpoints;
+
+		private Memo(ArenaParser parser) {
+			exp = parser.exp;
+			fastMath = parser.fastMath;
+			arena = parser.arena;
+			reusedNodes = parser.reused;
+			variable = parser.variable;
+			groups = parser.groups;
+			checkpoints = parser.checkpoints;
+			groupAt = new int[exp.length()];
+			for (int g = 0; g < groups.count; g++) {groupAt[groups.start[g]] = g + 1;}
+		}
+	}
+
+	/**
+	 * The bracketed groups and function calls of a parse, in the order they closed (so a group's
+	 * descendants are the groups just before it): their text from start to end, and their nodes from
+	 * first to last.
+	 */
+	private static final class Groups {
+		int count;
+		int[] start = new int[16], end = new int[16], first = new int[16], last = new int[16];
+		int[] descendants = new int[16];
+		boolean[] hasVariable = new boolean[16];
+
+		void add(int start, int end, int first, int last, int descendants, boolean hasVariable) {
+			if (count == this.start.length) {
+				int capacity = count * 2;
+				this.start = Arrays.copyOf(this.start, capacity);
+				this.end = Arrays.copyOf(this.end, capacity);
+				this.first = Arrays.copyOf(this.first, capacity);
+				this.last = Arrays.copyOf(this.last, capacity);
+				this.descendants = Arrays.copyOf(this.descendants, capacity);
+				this.hasVariable = Arrays.copyOf(this.hasVariable, capacity);
+			}
+			this.start[count] = start;
+			this.end[count] = end;
+			this.first[count] = first;
+			this.last[count] = last;
+			this.descendants[count] = descendants;
+			this.hasVariable[count] = hasVariable;
+			count++;
+		}
+	}
+
+	/**
+	 * The parser's whole state at the top of its loop. It depends on the text up to horizon only.
+	 */
+	private static final class Checkpoint {
+		final int pos, horizon;
+		final boolean expectOperand;
+		final int[] operators, operands;
+		final int[] openStart, openNode, openGroups, openVariables;
+		final int nodes, groups, variableLeaves;
+		final char variable;
+
+		Checkpoint(ArenaParser p, boolean expectOperand) {
+			pos = p.pos;
+			horizon = p.horizon;
+			this.expectOperand = expectOperand;
+			operators = Arrays.copyOf(p.operators, p.operatorCount);
+			operands = Arrays.copyOf(p.operands, p.operandCount);
+			openStart = Arrays.copyOf(p.openStart, p.openCount);
+			openNode = Arrays.copyOf(p.openNode, p.openCount);
+			openGroups = Arrays.copyOf(p.openGroups, p.openCount);
+			openVariables = Arrays.copyOf(p.openVariables, p.openCount);
+			nodes = p.arena.size;
+			groups = p.groups.count;
+			variableLeaves = p.variableLeaves;
+			variable = p.variable;
+		}
+	}
+
+	private final String exp;
+	private final boolean fastMath;
+	private final Parameter parameter;
+	private final ExpressionArena arena;
+	private int pos;
+	private char variable;
+
+	private int[] operators = new int[16];
+	private int operatorCount;
+	private int[] operands = new int[16];
+	private int operandCount;
+	// The furthest character looked at so far.
+	private int horizon;
+
+	// Only kept for incremental parsing.
+	private boolean recording;
+	private Groups groups;
+	private List<Checkpoint> checkpoints;
+	private int nextCheckpoint;
+	// Where each open group started, its first node, and the group and variable leaf counts when it opened.
+	private int[] openStart, openNode, openGroups, openVariables;
+	private int openCount;
+	private int variableLeaves;
+	// The previous parse, and how much of its text is unchanged at the start and at the end.
+	private Memo previous;
+	private int prefix, suffix;
+	private int reused;
+
+	private ArenaParser(String exp, boolean fastMath) {
+		this(exp, fastMath, Parser.parameter);
+	}
+
+	private ArenaParser(String exp, boolean fastMath, Parameter parameter) {
+		this.exp = exp;
+		this.fastMath = fastMath;
+		this.parameter = parameter;
+		// Roughly one node per character; it grows if needed and is trimmed at the end.
+		this.arena = new ExpressionArena(exp.length());
+		this.arena.parameter = parameter;
+	}
+
+	/**
+	 * Parses an expression, ignoring spaces. Built-in functions use their fast versions if Parser.fastMath is set,
+	 * and Parser.parameter (if set) is recognised the same way as in PrimaryNode.
+	 */
+	static ExpressionArena parse(String exp) {
+		ArenaParser parser = new ArenaParser(exp.replace(" ", ""), Parser.fastMath);
+		parser.parse(true);
+		parser.arena.trim();
+		return parser.arena;
+	}
+
+	/**
+	 * Parses an expression as parse does, but with the given fast math setting and never with a parameter, so
+	 * it reads none of Parser's settings and needs no lock.
+	 */
+	static ExpressionArena parse(String exp, boolean fastMath) {
+		ArenaParser parser = new ArenaParser(exp.replace(" ", ""), fastMath, null);
+		parser.parse(true);
+		parser.arena.trim();
+		return parser.arena;
+	}
+
+	/**
+	 * Parses an expression as parse does (but never with a parameter), reusing the previous parse (null if
+	 * there isn't one) for the text it has in common with it. The result is the same as parsing from scratch.
+	 * @throws ParseFailedException as parse does; previous can still be used for the next attempt.
+	 */
+	static Memo parseIncrementally(String exp, boolean fastMath, Memo previous) {
+		ArenaParser parser = new ArenaParser(exp.replace(" ", ""), fastMath, null);
+		parser.recording = true;
+		parser.groups = new Groups();
+		parser.checkpoints = new ArrayList<Checkpoint>();
+		parser.openStart = new int[16];
+		parser.openNode = new int[16];
+		parser.openGroups = new int[16];
+		parser.openVariables = new int[16];
+		boolean expectOperand = true;
+		if (previous != null && previous.fastMath == fastMath) {
+			expectOperand = parser.resume(previous);
+		}
+		parser.parse(expectOperand);
+		parser.arena.trim();
+		return new Memo(parser);
+	}
+
+	/**
+	 * Picks up from the last checkpoint of the previous parse that only depends on the unchanged start of the
+	 * text, if there is one, and returns whether an operand is expected there.
+	 */
+	private boolean resume(Memo previous) {
+		this.previous = previous;
+		String old = previous.exp;
+		int shorter = Math.min(old.length(), exp.length());
+		while (prefix < shorter && old.charAt(prefix) == exp.charAt(prefix)) {prefix++;}
+		while (suffix < shorter - prefix && old.charAt(old.length() - 1 - suffix) == exp.charAt(exp.length() - 1 - suffix)) {suffix++;}
+
+		Checkpoint from = null;
+		for (Checkpoint c : previous.checkpoints) {
+			if (c.horizon >= prefix) {break;}
+			from = c;
+		}
+		if (from == null) {return true;}
+
+		arena.append(previous.arena, 0, from.nodes);
+		reused = from.nodes;
+		pos = from.pos;
+		horizon = from.horizon;
+		operators = Arrays.copyOf(from.operators, Math.max(16, from.operators.length * 2));
+		operatorCount = from.operators.length;
+		operands = Arrays.copyOf(from.operands, Math.max(16, from.operands.length * 2));
+		operandCount = from.operands.length;
+		openCount = from.openStart.length;
+		openStart = Arrays.copyOf(from.openStart, Math.max(16, openCount * 2));
+		openNode = Arrays.copyOf(from.openNode, openStart.length);
+		openGroups = Arrays.copyOf(from.openGroups, openStart.length);
+		openVariables = Arrays.copyOf(from.openVariables, openStart.length);
+		variable = from.variable;
+		variableLeaves = from.variableLeaves;
+		Groups before = previous.groups;
+		for (int g = 0; g < from.groups; g++) {
+			groups.add(before.start[g], before.end[g], before.first[g], before.last[g], before.descendants[g], before.hasVariable[g]);
+		}
+		checkpoints.addAll(previous.checkpoints.subList(0, previous.checkpoints.indexOf(from) + 1));
+		nextCheckpoint = pos + CHECKPOINT_INTERVAL;
+		return from.expectOperand;
+	}
+
+	private void parse(boolean expectOperand) {
+		while (true) {
+			if (recording && pos >= nextCheckpoint && operatorCount + operandCount + openCount <= CHECKPOINT_STACK) {
+				checkpoints.add(new Checkpoint(this, expectOperand));
+				nextCheckpoint = pos + CHECKPOINT_INTERVAL;
+			}
+			if (expectOperand) {
+				// FACTOR: any number of minus signs, which cancel in pairs.
+				boolean negative = false;
+				while (peek() == '-') {
+					negative = !negative;
+					pos++;
+				}
+				if (negative) {pushOperator(ExpressionArena.NEGATE);}
+				if (previous != null && reuseGroup()) {
+					expectOperand = false;
+					continue;
+				}
+
+				char c = peek();
+				if (isLetter(c)) {
+					Matcher call = BuiltinFunction.CALL.matcher(exp).region(pos, exp.length());
+					horizon = Math.max(horizon, pos + CALL_LOOKAHEAD);
+					if (call.lookingAt()) {
+						pushOperator(FUNCTION_CODE_BASE + BuiltinFunction.lookup(call.group(1)).ordinal());
+						open(FUNCTION_OPEN);
+						pos = call.end() + 1; // The pattern checked that a '(' follows.
+					} else if (parameter != null && exp.startsWith(parameter.name, pos)) {
+						pos += parameter.name.length();
+						pushOperand(arena.addLeaf(ExpressionArena.PARAMETER, 0));
+						expectOperand = false;
+					} else {
+						variable(c);
+						expectOperand = false;
+					}
+				} else if (isDigit(c)) {
+					number();
+					expectOperand = false;
+				} else if (c == '(') {
+					open(OPEN);
+					pos++;
+				} else {
+					throw new ParseFailedException("Required \\( got " + (c == 0 ? "" : c) + " at PRIMARY", null);
+				}
+			} else {
+				char c = peek();
+				if (c == '+' || c == '-') {
+					binary(c == '+' ? ExpressionArena.ADD : ExpressionArena.SUBTRACT);
+					pos++;
+					expectOperand = true;
+				} else if (c == '*' || c == '/') {
+					binary(c == '*' ? ExpressionArena.MULTIPLY : ExpressionArena.DIVIDE);
+					pos++;
+					expectOperand = true;
+				} else if (c == '(' || isLetter(c)) {
+					// Implicit multiplication, e.g. 2x or (x+1)(x-1). Nothing is consumed.
+					binary(ExpressionArena.MULTIPLY);
+					expectOperand = true;
+				} else if (c == '^') {
+					binary(ExpressionArena.POWER);
+					pos++;
+					expectOperand = true;
+				} else if (c == ')' && closeBracket()) {
+					pos++;
+				} else {
+					break; // The end of the expression (anything after it is ignored, as in ExpNode).
+				}
+			}
+		}
+
+		String next = pos < exp.length() ? String.valueOf(peek()) : "";
+		while (operatorCount > 0) {
+			int op = operators[--operatorCount];
+			if (op == OPEN) {
+				throw new ParseFailedException("Required \\) got " + next + " at PRIMARY", null);
+			} else if (op == FUNCTION_OPEN) {
+				throw new ParseFailedException("Required \\) got " + next + " at FUNCTION", null);
+			}
+			emit(op);
+		}
+	}
+
+	private static int precedence(int op) {
+		switch (op) {
+		case ExpressionArena.ADD:
+		case ExpressionArena.SUBTRACT: return 1;
+		case ExpressionArena.MULTIPLY:
+		case ExpressionArena.DIVIDE: return 2;
+		case ExpressionArena.NEGATE: return 3;
+		case ExpressionArena.POWER: return 4;
+		default: return 0; // Brackets and function calls are never popped by an operator.
+		}
+	}
+
+	/**
+	 * Pushes a binary operator after emitting the stacked operators that bind at least as tightly.
+	 * ^ is right associative, so it doesn't pop another ^.
+	 */
+	private void binary(byte op) {
+		int p = precedence(op);
+		while (operatorCount > 0) {
+			int top = operators[operatorCount - 1];
+			int q = precedence(top);
+			if (q == 0 || q < p || (q == p && op == ExpressionArena.POWER)) {break;}
+			operatorCount--;
+			emit(top);
+		}
+		pushOperator(op);
+	}
+
+	/**
+	 * Emits operators back to the matching '(' and returns true, or returns false if there is no open
+	 * bracket (the ')' then ends the expression, as it would for ExpNode).
+	 */
+	private boolean closeBracket() {
+		int open = operatorCount - 1;
+		while (open >= 0 && operators[open] != OPEN && operators[open] != FUNCTION_OPEN) {
+			open--;
+		}
+		if (open < 0) {return false;}
+
+		while (operatorCount - 1 > open) {
+			emit(operators[--operatorCount]);
+		}
+		if (operators[--operatorCount] == FUNCTION_OPEN) {
+			emit(operators[--operatorCount]);
+		}
+		if (recording) {
+			openCount--;
+			groups.add(openStart[openCount], pos + 1, openNode[openCount], arena.size - 1,
+					groups.count - openGroups[openCount], variableLeaves > openVariables[openCount]);
+		}
+		return true;
+	}
+
+	/**
+	 * Pushes an open bracket, remembering where its group starts when recording.
+	 */
+	private void open(int op) {
+		pushOperator(op);
+		if (!recording) {return;}
+		if (openCount == openStart.length) {
+			openStart = Arrays.copyOf(openStart, openCount * 2);
+			openNode = Arrays.copyOf(openNode, openCount * 2);
+			openGroups = Arrays.copyOf(openGroups, openCount * 2);
+			openVariables = Arrays.copyOf(openVariables, openCount * 2);
+		}
+		openStart[openCount] = pos;
+		openNode[openCount] = arena.size;
+		openGroups[openCount] = groups.count;
+		openVariables[openCount] = variableLeaves;
+		openCount++;
+	}
+
+	/**
+	 * If an unchanged group of the previous parse starts here, copies its nodes (and its descendant groups,
+	 * for next time) instead of parsing it, and returns true.
+	 */
+	private boolean reuseGroup() {
+		int delta = exp.length() - previous.exp.length();
+		int old;
+		if (pos < prefix) {
+			old = pos;
+		} else if (pos >= exp.length() - suffix && pos < exp.length()) {
+			old = pos - delta;
+		} else {
+			return false;
+		}
+		int g = previous.groupAt[old] - 1;
+		if (g < 0) {return false;}
+		Groups before = previous.groups;
+		boolean inPrefix = before.end[g] <= prefix;
+		boolean inSuffix = old >= previous.exp.length() - suffix;
+		if (!inPrefix && !inSuffix) {return false;}
+		if (before.hasVariable[g]) {
+			// Parsed normally, a different letter would be an error; leave that to the normal path.
+			if (variable != 0 && variable != previous.variable) {return false;}
+			variable = previous.variable;
+			variableLeaves++;
+		}
+
+		int shift = arena.size - before.first[g], move = pos - old;
+		for (int d = g - before.descendants[g]; d < g; d++) {
+			groups.add(before.start[d] + move, before.end[d] + move, before.first[d] + shift, before.last[d] + shift,
+					before.descendants[d], before.hasVariable[d]);
+		}
+		int last = arena.append(previous.arena, before.first[g], before.last[g] + 1);
+		groups.add(pos, before.end[g] + move, before.first[g] + shift, last, before.descendants[g], before.hasVariable[g]);
+		pushOperand(last);
+		reused += last - (before.first[g] + shift) + 1;
+		pos = before.end[g] + move;
+		horizon = Math.max(horizon, pos - 1);
+		return true;
+	}
+
+	private void emit(int op) {
+		if (op >= FUNCTION_CODE_BASE) {
+			int arg = popOperand();
+			pushOperand(arena.addUnary(ExpressionArena.FUNCTION, arg, op - FUNCTION_CODE_BASE, fastMath ? 1 : 0));
+		} else if (op == ExpressionArena.NEGATE) {
+			pushOperand(arena.addUnary(ExpressionArena.NEGATE, popOperand(), -1, 0));
+		} else {
+			int r = popOperand();
+			int l = popOperand();
+			pushOperand(arena.addBinary((byte) op, l, r));
+		}
+	}
+
+	private void variable(char c) {
+		if (variable == 0) {
+			variable = c;
+		} else if (c != variable) {
+			throw new ParseFailedException("Required " + variable + " got " + c + " at VARIABLE", null);
+		}
+		pos++;
+		variableLeaves++;
+		pushOperand(arena.addLeaf(ExpressionArena.VARIABLE, 0));
+	}
+
+	private void number() {
+		int start = pos;
+		while (isDigit(peek())) {pos++;}
+		if (peek() == '.') {
+			pos++;
+			// There must be at least one digit after the decimal point.
+			if (!isDigit(peek())) {
+				char c = peek();
+				throw new ParseFailedException("Required [0-9] got " + (c == 0 ? "" : c) + " at NUMBER", null);
+			}
+			while (isDigit(peek())) {pos++;}
+		}
+		pushOperand(arena.addLeaf(ExpressionArena.NUMBER, Double.parseDouble(exp.substring(start, pos))));
+	}
+
+	private char peek() {
+		horizon = Math.max(horizon, pos);
+		return pos < exp.length() ? exp.charAt(pos) : 0;
+	}
+
+	private static int longestFunctionName() {
+		int longest = 0;
+		for (BuiltinFunction f : BuiltinFunction.values()) {longest = Math.max(longest, f.name.length());}
+		return longest;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private void pushOperator(int op) {
+		if (operatorCount == operators.length) {operators = Arrays.copyOf(operators, operatorCount * 2);}
+		operators[operatorCount++] = op;
+	}
+
+	private void pushOperand(int node) {
+		if (operandCount == operands.length) {operands = Arrays.copyOf(operands, operandCount * 2);}
+		operands[operandCount++] = node;
+	}
+
+	private int popOperand() {
+		return operands[--operandCount];
+	}
+}
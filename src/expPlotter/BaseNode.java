@@ -0,0 +1,48 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class BaseNode implements ParseNode {
+	
+	ParseNode base;
+	ParseNode exponent;
+	
+	@Override
+	public double evaluate(double x) {
+		if (exponent != null) {
+			return Math.pow(base.evaluate(x), exponent.evaluate(x));
+		} else {
+			return base.evaluate(x);
+		}
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		if (exponent != null) {
+			return base.evaluate(x).pow(exponent.evaluate(x));
+		} else {
+			return base.evaluate(x);
+		}
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		if (exponent != null) {
+			return base.evaluate(x).pow(exponent.evaluate(x));
+		} else {
+			return base.evaluate(x);
+		}
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		base = new PrimaryNode().parse(s);
+		
+		if (Parser.checkEat(Parser.EXPON, s)) {
+			exponent = new FactorNode().parse(s);
+		}
+		
+		return this;
+	}
+	
+}
@@ -0,0 +1,307 @@
+package expPlotter;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import sGUI.Raster;
+
+/**
+ * Headless timings of the plotting pipeline. Run with: java expPlotter.Benchmark
+ * or, for the render farm's scaling from 1 to N worker processes: java expPlotter.Benchmark farm [N]
+ *
+ * Each benchmark prints the best of several timed runs (after a warm-up) so the JIT has
+ * settled, and where relevant compares the result against the reference path.
+ */
+public class Benchmark {
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	// The default view: 501 columns either side of the origin.
+	private static final int COLUMNS = 501;
+	private static final double SCALE = 0.05;
+	private static final double X0 = -(COLUMNS / 2) * SCALE;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("farm")) {
+			benchmarkRenderFarm(args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+			return;
+		}
+		benchmarkFastMath();
+		benchmarkHorner();
+		benchmarkLargeExpressions();
+		benchmarkRasterizer();
+		benchmarkSupersampling();
+	}
+
+	/**
+	 * Trig-heavy expressions sampled with 256x oversampling, strict vs fast built-in functions.
+	 */
+	static void benchmarkFastMath() {
+		System.out.println("== Built-in functions: strict vs fast ==");
+		String[] expressions = {
+				"sin(x)",
+				"sin(x)cos(3x) + sin(7x)",
+				"exp(sin(x)) - log(abs(cos(x)) + 1)",
+				"sqrt(abs(x))sin(1/x)",
+		};
+		for (String exp : expressions) {
+			Parser.fastMath = false;
+			ParseNode strict = Parser.parse(exp);
+			Parser.fastMath = true;
+			ParseNode fast = Parser.parse(exp);
+			Parser.fastMath = false;
+
+			double strictMs = time(() -> CurveSampler.sample(strict, X0, SCALE, COLUMNS, 256));
+			double fastMs = time(() -> CurveSampler.sample(fast, X0, SCALE, COLUMNS, 256));
+
+			double maxError = 0;
+			for (int i = 0; i < COLUMNS * 256; i++) {
+				double x = X0 + i * SCALE / 256;
+				double error = Math.abs(strict.evaluate(x) - fast.evaluate(x));
+				if (error > maxError) {maxError = error;}
+			}
+			System.out.printf("%-40s strict %8.2f ms  fast %8.2f ms  speedup %5.2fx  max error %.2e%n",
+					exp, strictMs, fastMs, strictMs / fastMs, maxError);
+		}
+	}
+
+	/**
+	 * Polynomials and rational functions: the parse tree vs Horner's scheme (scalar, batch, and batch with FMA).
+	 * Error is the largest difference from the tree, relative to the size of the value (or absolute below 1).
+	 */
+	static void benchmarkHorner() {
+		System.out.println("== Polynomials: parse tree vs Horner ==");
+		String[] expressions = {
+				"3x^3 - 2x^2 + x - 7",
+				"(x-1)(x+2)(x-3)(x+4)(x-5)",
+				"x^9 - 4x^7 + 2x^4 - x + 1/3",
+				"(x^2 + 1) / (x^3 - 2x + 5)",
+				"(x+1)^20",
+		};
+		int n = COLUMNS * 256;
+		double[] xs = new double[n];
+		double[] out = new double[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = X0 + i * SCALE / 256;
+		}
+
+		for (String exp : expressions) {
+			ParseNode tree = Parser.parse(exp);
+			RationalFunction horner = RationalFunction.analyze(tree, false);
+			RationalFunction fma = RationalFunction.analyze(tree, true);
+
+			double treeMs = time(() -> {for (int i = 0; i < n; i++) {out[i] = tree.evaluate(xs[i]);}});
+			double scalarMs = time(() -> {for (int i = 0; i < n; i++) {out[i] = horner.evaluate(xs[i]);}});
+			double batchMs = time(() -> horner.evaluate(xs, out, n));
+			double fmaMs = time(() -> fma.evaluate(xs, out, n));
+
+			double hornerError = 0, fmaError = 0;
+			for (int i = 0; i < n; i++) {
+				double expected = tree.evaluate(xs[i]);
+				double size = Math.max(Math.abs(expected), 1);
+				hornerError = Math.max(hornerError, Math.abs(horner.evaluate(xs[i]) - expected) / size);
+				fmaError = Math.max(fmaError, Math.abs(fma.evaluate(xs[i]) - expected) / size);
+			}
+			System.out.printf("%-30s tree %7.2f ms  horner %6.2f ms  batch %6.2f ms  fma %6.2f ms  "
+					+ "rel. error %.1e (fma %.1e)%n",
+					exp, treeMs, scalarMs, batchMs, fmaMs, hornerError, fmaError);
+		}
+	}
+
+	/**
+	 * Machine-generated expressions: the recursive ParseNode parser vs the arena parser.
+	 */
+	static void benchmarkLargeExpressions() {
+		System.out.println("== Large expressions: recursive parser vs arena parser ==");
+		StringBuilder terms = new StringBuilder("x");
+		for (int i = 1; i < 5000; i++) {
+			terms.append(i % 2 == 0 ? " + " : " - ").append(i % 97).append("x^").append(i % 5);
+		}
+		StringBuilder nested = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {nested.append("(1+");}
+		nested.append("x");
+		for (int i = 0; i < 50000; i++) {nested.append(")");}
+
+		compareParsers("5000 terms", terms.toString());
+		compareParsers("50000 nested brackets", nested.toString());
+		reparse("5000 terms", terms.toString());
+		reparse("50000 nested brackets", nested.toString());
+	}
+
+	/**
+	 * Incremental reparsing after typing one character at the end, in the middle, and at the start.
+	 */
+	private static void reparse(String name, String exp) {
+		ArenaParser.Memo memo = ArenaParser.parseIncrementally(exp, false, null);
+		double fullMs = time(() -> ArenaParser.parse(exp));
+		StringBuilder line = new StringBuilder(String.format("%-25s full %8.2f ms", name, fullMs));
+		int middle = exp.indexOf('x', exp.length() / 2);
+		String[] edits = {exp + "x", exp.substring(0, middle) + "2" + exp.substring(middle), "2" + exp};
+		String[] names = {"end", "middle", "start"};
+		for (int i = 0; i < edits.length; i++) {
+			String edited = edits[i];
+			double ms = time(() -> ArenaParser.parseIncrementally(edited, false, memo));
+			ArenaParser.Memo result = ArenaParser.parseIncrementally(edited, false, memo);
+			line.append(String.format("  %s %7.2f ms (%3d%% reused)", names[i], ms, 100L * result.reusedNodes / result.arena.size));
+		}
+		System.out.println(line);
+	}
+
+	private static void compareParsers(String name, String exp) {
+		double arenaMs = time(() -> ArenaParser.parse(exp));
+		ExpressionArena arena = ArenaParser.parse(exp);
+		String tree;
+		try {
+			tree = String.format("%8.2f ms", time(() -> Parser.parse(exp)));
+		} catch (StackOverflowError e) {
+			tree = "stack overflow";
+		}
+		System.out.printf("%-25s tree %s  arena %8.2f ms (%d nodes, %d KiB)%n",
+				name, tree, arenaMs, arena.size, arena.size * 17 / 1024);
+	}
+
+	/**
+	 * Drawing a jagged curve (a random walk, like a noisy data series) into an image the size of the default
+	 * plot (COLUMNS x COLUMNS, i.e. 501x501): Java2D drawPolyline vs the software rasterizer, aliased and
+	 * antialiased, at line widths 1 and 3.
+	 */
+	static void benchmarkRasterizer() {
+		System.out.println("== Curve rasterization: Java2D vs software ==");
+		int size = COLUMNS, polylines = 100, vertices = 10001;
+		int[][] xs = new int[polylines][vertices], ys = new int[polylines][vertices];
+		Random random = new Random(1);
+		for (int p = 0; p < polylines; p++) {
+			int y = random.nextInt(size);
+			for (int i = 0; i < vertices; i++) {
+				xs[p][i] = i * (size - 1) / (vertices - 1);
+				y = Math.max(0, Math.min(size - 1, y + random.nextInt(41) - 20));
+				ys[p][i] = y;
+			}
+		}
+		double segments = (double) polylines * (vertices - 1);
+
+		for (int width : new int[] {1, 3}) {
+			for (boolean antialias : new boolean[] {false, true}) {
+				BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+				Graphics2D g = image.createGraphics();
+				g.setColor(Color.black);
+				g.setStroke(new BasicStroke(width));
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+						antialias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+				double java2dMs = time(() -> {
+					for (int p = 0; p < polylines; p++) {g.drawPolyline(xs[p], ys[p], vertices);}
+				});
+				g.dispose();
+
+				Raster raster = new Raster(size, size);
+				double softwareMs = time(() -> {
+					for (int p = 0; p < polylines; p++) {
+						raster.drawPolyline(xs[p], ys[p], vertices, Color.black, width, antialias);
+					}
+				});
+				System.out.printf("width %d %-11s Java2D %8.2f ms (%5.1f M segments/s)  software %8.2f ms (%5.1f M segments/s)  speedup %5.2fx%n",
+						width, antialias ? "antialiased" : "aliased", java2dMs, segments / java2dMs / 1e3,
+						softwareMs, segments / softwareMs / 1e3, java2dMs / softwareMs);
+			}
+		}
+	}
+
+	/**
+	 * A wide, heavily oversampled plot sampled by the render farm with 1 to maxWorkers workers, against
+	 * sampling it in this JVM. Throughput counts samples (columns times oversampling) per millisecond.
+	 */
+	static void benchmarkRenderFarm(int maxWorkers) throws IOException {
+		System.out.println("== Render farm: 1 to " + maxWorkers + " workers ==");
+		String exp = "sin(x)cos(3x) + sin(7x) + exp(sin(x)) - log(abs(cos(x)) + 1)";
+		int columns = 4096, oversampling = 64;
+		double samples = (double) columns * oversampling;
+
+		Parser.fastMath = false;
+		ParseNode f = Parser.parse(exp);
+		double localMs = time(() -> CurveSampler.sample(f, X0, SCALE / 8, columns, oversampling));
+		System.out.printf("in process  %8.2f ms (%7.0f samples/ms)%n", localMs, samples / localMs);
+
+		double oneWorkerMs = 0;
+		for (int workers = 1; workers <= maxWorkers; workers++) {
+			try (RenderFarm farm = new RenderFarm(workers, 60000)) {
+				double ms = time(() -> farm.sample(exp, false, X0, SCALE / 8, columns, oversampling));
+				if (workers == 1) {oneWorkerMs = ms;}
+				System.out.printf("%2d workers  %8.2f ms (%7.0f samples/ms)  speedup over 1 worker %5.2fx  %s%n",
+						workers, ms, samples / ms, oneWorkerMs / ms, farm.stats());
+			}
+		}
+	}
+
+	/**
+	 * One frame of a plot (COLUMNS x COLUMNS, the size of the plot the curves are sampled for) with a smooth and
+	 * a jagged curve (an oscillating function, and a random walk like a noisy data series), antialiased: Java2D with VALUE_ANTIALIAS_ON against the supersampled rasterizer at
+	 * 2x2, 4x4 and 8x8 subsamples per pixel. A frame includes clearing the image.
+	 */
+	static void benchmarkSupersampling() {
+		System.out.println("== Antialiased frame: Java2D vs supersampled ==");
+		int size = COLUMNS;
+		ParseNode f = Parser.parse("sin(x)cos(3x)*2 + sin(7x)/2");
+		SampleBuffer samples = CurveSampler.sample(f, X0, SCALE, COLUMNS, 1);
+		int[] smoothXs = new int[COLUMNS], smoothYs = new int[COLUMNS];
+		int[] jaggedXs = new int[COLUMNS], jaggedYs = new int[COLUMNS];
+		Random random = new Random(1);
+		int walk = size / 2;
+		for (int i = 0; i < COLUMNS; i++) {
+			smoothXs[i] = jaggedXs[i] = i;
+			smoothYs[i] = (int) Math.round(size / 2 - samples.first[i] / SCALE);
+			walk = Math.max(0, Math.min(size - 1, walk + random.nextInt(41) - 20));
+			jaggedYs[i] = walk;
+		}
+		List<int[]> xs = Arrays.asList(smoothXs, jaggedXs), ys = Arrays.asList(smoothYs, jaggedYs);
+
+		for (int width : new int[] {1, 3}) {
+			BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D g = image.createGraphics();
+			g.setStroke(new BasicStroke(width));
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			double java2dMs = time(() -> {
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(0, 0, size, size);
+				g.setComposite(AlphaComposite.SrcOver);
+				g.setColor(Color.black);
+				for (int p = 0; p < xs.size(); p++) {g.drawPolyline(xs.get(p), ys.get(p), COLUMNS);}
+			});
+			g.dispose();
+			StringBuilder line = new StringBuilder(String.format("width %d  Java2D %7.2f ms", width, java2dMs));
+
+			for (int n : new int[] {2, 4, 8}) {
+				Raster raster = new Raster(size, size);
+				double ms = time(() -> {
+					raster.clear();
+					raster.drawPolylinesSupersampled(xs, ys, Color.black, width, n);
+				});
+				line.append(String.format("  %dx%d %7.2f ms (%4.2fx the time)", n, n, ms, ms / java2dMs));
+			}
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Best wall-clock time of the task in milliseconds.
+	 */
+	static double time(Runnable task) {
+		for (int i = 0; i < WARMUP; i++) {
+			task.run();
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best / 1e6;
+	}
+}
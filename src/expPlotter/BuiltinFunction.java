@@ -0,0 +1,133 @@
+package expPlotter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The functions that can be called from an expression, e.g. sin(x).
+ *
+ * Each function has a strict implementation (StrictMath, so results are the same on every platform)
+ * and a fast approximation. Which one a plot uses is chosen when it is parsed (see Parser.fastMath).
+ * The maximum error of each fast approximation is documented on it.
+ */
+enum BuiltinFunction {
+
+	/** Fast: table of 4096 samples per period with linear interpolation. Max absolute error 3e-7 for |x| < 1e6. */
+	SIN("sin") {
+		double strict(double x) {return StrictMath.sin(x);}
+		double fast(double x) {return FastMath.sin(x);}
+		double derivative(double x, boolean fast) {return fast ? FastMath.cos(x) : StrictMath.cos(x);}
+	},
+
+	/** Fast: same table as sin. Max absolute error 3e-7 for |x| < 1e6. */
+	COS("cos") {
+		double strict(double x) {return StrictMath.cos(x);}
+		double fast(double x) {return FastMath.cos(x);}
+		double derivative(double x, boolean fast) {return -(fast ? FastMath.sin(x) : StrictMath.sin(x));}
+	},
+
+	/** Fast: sin/cos from the table. Absolute error 3e-7 divided by cos(x)^2, so it grows near the poles. */
+	TAN("tan") {
+		double strict(double x) {return StrictMath.tan(x);}
+		double fast(double x) {return FastMath.sin(x) / FastMath.cos(x);}
+		double derivative(double x, boolean fast) {
+			double c = fast ? FastMath.cos(x) : StrictMath.cos(x);
+			return 1 / (c*c);
+		}
+	},
+
+	/** Fast: 2^k * polynomial(r) with |r| <= ln(2)/2. Max relative error 2e-7. */
+	EXP("exp") {
+		double strict(double x) {return StrictMath.exp(x);}
+		double fast(double x) {return FastMath.exp(x);}
+		double derivative(double x, boolean fast) {return fast ? FastMath.exp(x) : StrictMath.exp(x);}
+	},
+
+	/** Natural logarithm. Fast: exponent + atanh series on the mantissa. Max absolute error 1e-9. */
+	LOG("log") {
+		double strict(double x) {return StrictMath.log(x);}
+		double fast(double x) {return FastMath.log(x);}
+		double derivative(double x, boolean fast) {return 1 / x;}
+	},
+
+	/** Math.sqrt is a single hardware instruction already, so the fast version is exact. */
+	SQRT("sqrt") {
+		double strict(double x) {return StrictMath.sqrt(x);}
+		double fast(double x) {return Math.sqrt(x);}
+		double derivative(double x, boolean fast) {return 0.5 / Math.sqrt(x);}
+	},
+
+	/** Exact in both modes. */
+	ABS("abs") {
+		double strict(double x) {return Math.abs(x);}
+		double fast(double x) {return Math.abs(x);}
+		double derivative(double x, boolean fast) {return Math.signum(x);}
+	};
+
+	private static final Map<String, BuiltinFunction> BY_NAME = new HashMap<String, BuiltinFunction>();
+	static {
+		for (BuiltinFunction f : values()) {
+			BY_NAME.put(f.name, f);
+		}
+	}
+
+	/**
+	 * Matches the name of a built-in function, but only if it is immediately followed by an open bracket.
+	 * \G anchors the match at the scanner's current position.
+	 */
+	static final Pattern CALL = Pattern.compile("\\G(" + String.join("|", names()) + ")(?=\\()");
+
+	final String name;
+
+	BuiltinFunction(String name) {
+		this.name = name;
+	}
+
+	abstract double strict(double x);
+
+	abstract double fast(double x);
+
+	/**
+	 * The derivative of this function at x.
+	 */
+	abstract double derivative(double x, boolean fast);
+
+	double evaluate(double x, boolean fast) {
+		return fast ? fast(x) : strict(x);
+	}
+
+	/**
+	 * Always precise: precision mode has no use for the fast approximations.
+	 */
+	DoubleDouble evaluate(DoubleDouble x) {
+		switch (this) {
+		case SIN: return x.sin();
+		case COS: return x.cos();
+		case TAN: return x.tan();
+		case EXP: return x.exp();
+		case LOG: return x.log();
+		case SQRT: return x.sqrt();
+		case ABS: return x.abs();
+		default: throw new IllegalStateException("No double-double version of " + name);
+		}
+	}
+
+	Dual evaluate(Dual x, boolean fast) {
+		double d = x.derivative == 0 ? 0 : derivative(x.value, fast) * x.derivative;
+		return new Dual(evaluate(x.value, fast), d);
+	}
+
+	static BuiltinFunction lookup(String name) {
+		return BY_NAME.get(name);
+	}
+
+	private static String[] names() {
+		BuiltinFunction[] functions = values();
+		String[] names = new String[functions.length];
+		for (int i = 0; i < functions.length; i++) {
+			names[i] = functions[i].name;
+		}
+		return names;
+	}
+}
@@ -0,0 +1,198 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates an expression across the pixel columns of the plot.
+ *
+ * With an oversampling factor of 1 there is one sample per column, as before. Larger factors
+ * evaluate that many evenly spaced points per column but only keep the first, min, max and last
+ * of them, so high frequency detail shows up as a vertical span instead of aliasing away,
+ * while the drawn curve never needs more than 4 vertices per column.
+ *
+ * Deep zoom: once columns are narrower than PRECISION_CHECK_DX, double rounding errors can be
+ * bigger than a pixel, e.g. in (x+1)^2 - 1 the x+1 keeps only a few digits of x. Each block of
+ * columns is then probed in both double and double-double precision, and blocks where the two
+ * disagree by more than a fraction of a pixel are sampled again in double-double. Everywhere
+ * else, and at normal zoom levels, sampling stays in plain doubles.
+ *
+ * Wide plots (e.g. on a 4K screen) are split into tiles of TILE_COLUMNS columns. The calling thread and
+ * helpers from the common fork/join pool take tiles in turn until none are left. Interrupting the
+ * calling thread cancels all of them.
+ */
+final class CurveSampler {
+	
+	private static final int BATCH = 1024;
+	
+	static final double PRECISION_CHECK_DX = 1e-8;
+	static final int PRECISION_BLOCK = 16; // columns
+	// Double and double-double may differ by this fraction of a column width before a block is escalated.
+	private static final double PRECISION_TOLERANCE = 1.0 / 16;
+	
+	// Plots with at least PARALLEL_COLUMNS columns are sampled in parallel, in tiles of TILE_COLUMNS
+	// (a multiple of PRECISION_BLOCK, so escalation blocks never straddle two tiles).
+	static final int PARALLEL_COLUMNS = 2048;
+	static final int TILE_COLUMNS = 512;
+	
+	private CurveSampler() {}
+	
+	static SampleBuffer sample(Evaluator f, double x0, double dx, int columns, int oversampling) {
+		SampleBuffer buffer = new SampleBuffer(x0, dx, columns);
+		if (columns < PARALLEL_COLUMNS || Runtime.getRuntime().availableProcessors() == 1) {
+			// Background sampling (e.g. ZoomPrefetcher) is cancelled by interrupting it.
+			buffer.preciseColumns = sample(f, buffer, 0, columns, oversampling, Thread::interrupted);
+			return buffer;
+		}
+		
+		// Helpers run on pool threads, so everyone watches the caller for interrupts.
+		Thread caller = Thread.currentThread();
+		AtomicBoolean stop = new AtomicBoolean();
+		BooleanSupplier cancelled = () -> stop.get() || caller.isInterrupted();
+		int tiles = (columns + TILE_COLUMNS - 1) / TILE_COLUMNS;
+		AtomicInteger nextTile = new AtomicInteger();
+		AtomicInteger precise = new AtomicInteger();
+		Runnable work = () -> {
+			for (int tile; (tile = nextTile.getAndIncrement()) < tiles; ) {
+				int from = tile * TILE_COLUMNS;
+				precise.addAndGet(sample(f, buffer, from, Math.min(from + TILE_COLUMNS, columns), oversampling, cancelled));
+			}
+		};
+		
+		List<Future<?>> helpers = new ArrayList<Future<?>>();
+		for (int i = 0; i < Math.min(ForkJoinPool.getCommonPoolParallelism(), tiles - 1); i++) {
+			helpers.add(ForkJoinPool.commonPool().submit(work));
+		}
+		try {
+			work.run();
+			for (Future<?> helper : helpers) {
+				helper.get();
+			}
+		} catch (CancellationException | InterruptedException e) {
+			stop.set(true);
+			Thread.interrupted(); // Handled, as in the single threaded case.
+			throw new CancellationException();
+		} catch (ExecutionException e) {
+			stop.set(true);
+			if (e.getCause() instanceof CancellationException) {
+				Thread.interrupted();
+				throw new CancellationException();
+			}
+			if (e.getCause() instanceof RuntimeException) {throw (RuntimeException) e.getCause();}
+			if (e.getCause() instanceof Error) {throw (Error) e.getCause();}
+			throw new IllegalStateException(e.getCause());
+		}
+		buffer.preciseColumns = precise.get();
+		return buffer;
+	}
+	
+	/**
+	 * Samples one tile of a plot, the columns from (inclusive) to 'to' (exclusive), into the buffer exactly as
+	 * sample() would, and returns how many needed double-double precision. For RenderFarm's workers.
+	 */
+	static int sampleTile(Evaluator f, SampleBuffer buffer, int from, int to, int oversampling) {
+		return sample(f, buffer, from, to, oversampling, Thread::interrupted);
+	}
+	
+	/**
+	 * Samples the columns from (inclusive) to 'to' (exclusive) into the buffer, and returns how many
+	 * of them needed double-double precision.
+	 */
+	private static int sample(Evaluator f, SampleBuffer buffer, int from, int to, int oversampling, BooleanSupplier cancelled) {
+		double dx = buffer.dx;
+		double step = dx / oversampling;
+		// Offset of the first sample from the column centre, so samples are spread evenly over the column.
+		double offset = (0.5 - oversampling / 2.0) * step;
+		
+		// Columns are evaluated in batches of at least BATCH points.
+		int perBatch = Math.max(1, BATCH / oversampling);
+		double[] xs = new double[perBatch * oversampling];
+		double[] ys = new double[perBatch * oversampling];
+		
+		for (int batchStart = from; batchStart < to; batchStart += perBatch) {
+			if (cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			int batchColumns = Math.min(perBatch, to - batchStart);
+			int n = 0;
+			for (int col = batchStart; col < batchStart + batchColumns; col++) {
+				double start = buffer.x(col) + offset;
+				for (int k = 0; k < oversampling; k++) {
+					xs[n++] = start + k*step;
+				}
+			}
+			f.evaluate(xs, ys, n);
+			
+			for (int c = 0; c < batchColumns; c++) {
+				aggregate(buffer, batchStart + c, ys, c * oversampling, oversampling);
+			}
+		}
+		
+		if (dx < PRECISION_CHECK_DX) {
+			return escalate(f, buffer, from, to, oversampling, cancelled);
+		}
+		return 0;
+	}
+	
+	/**
+	 * Resamples in double-double the blocks of columns where double precision isn't good enough,
+	 * judged from the first and middle column of each block. Returns how many columns were resampled.
+	 */
+	private static int escalate(Evaluator f, SampleBuffer buffer, int first, int last, int oversampling, BooleanSupplier cancelled) {
+		double tolerance = buffer.dx * PRECISION_TOLERANCE;
+		double step = buffer.dx / oversampling;
+		double offset = (0.5 - oversampling / 2.0) * step;
+		double[] ys = new double[oversampling];
+		int precise = 0;
+		
+		for (int from = first; from < last; from += PRECISION_BLOCK) {
+			if (cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			int to = Math.min(from + PRECISION_BLOCK, last);
+			if (!imprecise(f, buffer.x(from), tolerance) && !imprecise(f, buffer.x((from + to) / 2), tolerance)) {
+				continue;
+			}
+			for (int col = from; col < to; col++) {
+				double start = buffer.x(col) + offset;
+				for (int k = 0; k < oversampling; k++) {
+					ys[k] = f.evaluate(new DoubleDouble(start + k*step)).doubleValue();
+				}
+				aggregate(buffer, col, ys, 0, oversampling);
+			}
+			precise += to - from;
+		}
+		return precise;
+	}
+	
+	private static boolean imprecise(Evaluator f, double x, double tolerance) {
+		double approximate = f.evaluate(x);
+		double precise = f.evaluate(new DoubleDouble(x)).doubleValue();
+		if (Double.isNaN(approximate) != Double.isNaN(precise)) {return true;}
+		return Math.abs(approximate - precise) > tolerance;
+	}
+	
+	/**
+	 * Reduces the samples ys[from .. from+count) to the first, min, max and last of a column.
+	 */
+	private static void aggregate(SampleBuffer buffer, int col, double[] ys, int from, int count) {
+		double min = Double.NaN, max = Double.NaN;
+		for (int i = from; i < from + count; i++) {
+			double y = ys[i];
+			if (Double.isNaN(y)) {continue;}
+			if (!(y >= min)) {min = y;} // NaN comparisons are false, so the first number always sets these.
+			if (!(y <= max)) {max = y;}
+		}
+		buffer.first[col] = ys[from];
+		buffer.min[col] = min;
+		buffer.max[col] = max;
+		buffer.last[col] = ys[from + count - 1];
+	}
+}
@@ -0,0 +1,347 @@
+package expPlotter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A measured data series that is plotted alongside the expressions.
+ *
+ * The file is a flat sequence of (x, y) pairs of big-endian doubles (as written by DataOutputStream),
+ * sorted by x. It is memory-mapped rather than read, so even series of hundreds of millions of points
+ * don't touch the heap.
+ *
+ * The first time a file is opened a min/max pyramid is built for it and saved next to it as
+ * "<file>.pyr". Level 0 holds the min and max y of every BASE_BUCKET points, and each level above
+ * merges FANOUT buckets of the level below. Rendering picks the level whose buckets are a fraction of
+ * a pixel column wide, so a viewport costs about the same to draw however far out we are zoomed.
+ */
+final class DataSeries {
+	static final int BASE_BUCKET = 64;
+	static final int FANOUT = 4;
+
+	private static final int PAIR_BYTES = 16;
+	private static final int CHUNK_SHIFT = 26; // 2^26 pairs (1 GiB) per mapping, as one mapping can't exceed 2 GiB.
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	private static final int MAGIC = 0x46475059; // "FGPY"
+	private static final int VERSION = 1;
+	private static final int BUCKET_BYTES = 16;
+
+	private final File file;
+	private final long count;
+	private final MappedByteBuffer[] chunks;
+
+	private MappedByteBuffer pyramid;
+	private long[] levelOffsets;
+	private long[] levelCounts;
+
+	private DataSeries(File file) throws IOException {
+		this.file = file;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			count = channel.size() / PAIR_BYTES;
+			chunks = new MappedByteBuffer[(int)((count + CHUNK_MASK) >>> CHUNK_SHIFT)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long)i << CHUNK_SHIFT;
+				long pairs = Math.min(count - start, 1L << CHUNK_SHIFT);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * PAIR_BYTES, pairs * PAIR_BYTES);
+			}
+		}
+	}
+
+	/**
+	 * Maps the data file and loads its pyramid index, building (and saving) the index if it is
+	 * missing or out of date.
+	 */
+	static DataSeries open(File file) throws IOException {
+		DataSeries series = new DataSeries(file);
+		File index = indexFile(file);
+		if (!series.loadPyramid(index)) {
+			series.buildPyramid(index);
+			if (!series.loadPyramid(index)) {
+				throw new IOException("Could not read back pyramid index " + index);
+			}
+		}
+		return series;
+	}
+
+	static File indexFile(File file) {
+		return new File(file.getPath() + ".pyr");
+	}
+
+	String name() {return file.getName();}
+
+	long size() {return count;}
+
+	double x(long i) {
+		return chunks[(int)(i >>> CHUNK_SHIFT)].getDouble((int)(i & CHUNK_MASK) * PAIR_BYTES);
+	}
+
+	double y(long i) {
+		return chunks[(int)(i >>> CHUNK_SHIFT)].getDouble((int)(i & CHUNK_MASK) * PAIR_BYTES + 8);
+	}
+
+	/**
+	 * Aggregates the series into pixel columns the same way CurveSampler does for expressions,
+	 * so it can be drawn with the same code.
+	 */
+	SampleBuffer sample(double x0, double dx, int columns) {
+		SampleBuffer buffer = new SampleBuffer(x0, dx, columns);
+
+		long start = lowerBound(x0 - dx/2);
+		long end = lowerBound(x0 + (columns - 0.5)*dx);
+		int level = levelFor((double)(end - start) / columns);
+		long bucket = level < 0 ? 1 : bucketSize(level);
+
+		long ia = start;
+		for (int col = 0; col < columns; col++) {
+			long ib = col == columns - 1 ? end : lowerBound(x0 + (col + 0.5)*dx);
+			if (ia >= ib) {
+				buffer.first[col] = buffer.last[col] = buffer.min[col] = buffer.max[col] = Double.NaN;
+				continue;
+			}
+
+			double first = y(ia), last = y(ib - 1);
+			double min = Math.min(first, last), max = Math.max(first, last);
+
+			if (level < 0) {
+				for (long i = ia; i < ib; i++) {
+					min = Math.min(min, y(i));
+					max = Math.max(max, y(i));
+				}
+			} else {
+				// Every bucket that starts in this column is attributed to it. Buckets are at most a
+				// quarter of a column wide, so this is less than a pixel off at the column edges.
+				long levelOffset = levelOffsets[level];
+				for (long b = (ia + bucket - 1) / bucket, bEnd = (ib + bucket - 1) / bucket; b < bEnd; b++) {
+					int pos = (int)(levelOffset + b * BUCKET_BYTES);
+					min = Math.min(min, pyramid.getDouble(pos));
+					max = Math.max(max, pyramid.getDouble(pos + 8));
+				}
+			}
+
+			buffer.first[col] = first;
+			buffer.last[col] = last;
+			buffer.min[col] = min;
+			buffer.max[col] = max;
+			ia = ib;
+		}
+		return buffer;
+	}
+
+	/**
+	 * The coarsest level whose buckets are no more than a quarter of a column, or -1 if columns are
+	 * narrow enough that reading the points directly is cheaper.
+	 */
+	private int levelFor(double pointsPerColumn) {
+		int level = -1;
+		while (level + 1 < levelCounts.length && bucketSize(level + 1) * 4 <= pointsPerColumn) {
+			level++;
+		}
+		return level;
+	}
+
+	private static long bucketSize(int level) {
+		long size = BASE_BUCKET;
+		for (int i = 0; i < level; i++) {size *= FANOUT;}
+		return size;
+	}
+
+	/**
+	 * The series at x, interpolated between the points either side of it, or NaN outside the series.
+	 */
+	double valueAt(double x) {
+		long i = lowerBound(x);
+		if (i == count) {return Double.NaN;}
+		if (x(i) == x) {return y(i);}
+		if (i == 0) {return Double.NaN;}
+		double x1 = x(i - 1), x2 = x(i);
+		return y(i - 1) + (y(i) - y(i - 1)) * (x - x1) / (x2 - x1);
+	}
+
+	/**
+	 * Index of the first point with x >= target.
+	 */
+	private long lowerBound(double target) {
+		long lo = 0, hi = count;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (x(mid) < target) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/* ***************
+	 * PYRAMID INDEX
+	 * ***************
+	 */
+
+	private static int levelCount(long points) {
+		int levels = 0;
+		for (long buckets = (points + BASE_BUCKET - 1) / BASE_BUCKET; buckets > 0; buckets = buckets > 1 ? (buckets + FANOUT - 1) / FANOUT : 0) {
+			levels++;
+		}
+		return levels;
+	}
+
+	private static int headerBytes(int levels) {
+		return 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + levels * 16;
+	}
+
+	/**
+	 * Maps an existing index, returning false if it doesn't exist or doesn't belong to the current data file.
+	 */
+	private boolean loadPyramid(File index) throws IOException {
+		if (!index.isFile()) {return false;}
+
+		try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {return false;}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (map.remaining() < headerBytes(0)
+					|| map.getInt() != MAGIC || map.getInt() != VERSION
+					|| map.getLong() != count
+					|| map.getLong() != file.length()
+					|| map.getLong() != file.lastModified()
+					|| map.getInt() != BASE_BUCKET || map.getInt() != FANOUT) {
+				return false;
+			}
+			int levels = map.getInt();
+			if (levels != levelCount(count) || map.remaining() < levels * 16) {return false;}
+
+			levelOffsets = new long[levels];
+			levelCounts = new long[levels];
+			for (int l = 0; l < levels; l++) {
+				levelOffsets[l] = map.getLong();
+				levelCounts[l] = map.getLong();
+			}
+			if (levels > 0 && levelOffsets[levels - 1] + levelCounts[levels - 1] * BUCKET_BYTES > channel.size()) {
+				return false;
+			}
+			pyramid = map;
+			return true;
+		}
+	}
+
+	/**
+	 * Builds every level in a single streaming pass over the data. Each level keeps one partially
+	 * filled bucket and a small write buffer, so memory use doesn't depend on the size of the series.
+	 */
+	private void buildPyramid(File index) throws IOException {
+		int levels = levelCount(count);
+		long[] offsets = new long[levels];
+		long[] counts = new long[levels];
+		long position = headerBytes(levels);
+		for (int l = 0; l < levels; l++) {
+			counts[l] = (count + bucketSize(l) - 1) / bucketSize(l);
+			offsets[l] = position;
+			position += counts[l] * BUCKET_BYTES;
+		}
+
+		File temp = new File(index.getPath() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(headerBytes(levels));
+			header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(file.length()).putLong(file.lastModified());
+			header.putInt(BASE_BUCKET).putInt(FANOUT).putInt(levels);
+			for (int l = 0; l < levels; l++) {
+				header.putLong(offsets[l]).putLong(counts[l]);
+			}
+			header.flip();
+			out.write(header, 0);
+
+			PyramidWriter writer = new PyramidWriter(out, offsets);
+			double previousX = Double.NEGATIVE_INFINITY;
+			for (long i = 0; i < count; i++) {
+				double x = x(i);
+				if (x < previousX) {
+					throw new IOException(file + " is not sorted by x (point " + i + ")");
+				}
+				previousX = x;
+				writer.add(0, y(i), y(i));
+			}
+			writer.finish();
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+
+		index.delete();
+		if (!temp.renameTo(index)) {
+			throw new IOException("Could not write pyramid index " + index);
+		}
+	}
+
+	private static final class PyramidWriter {
+		private final FileChannel out;
+		private final long[] positions;
+		private final ByteBuffer[] pending;
+		private final double[] mins, maxes;
+		private final int[] filled;
+
+		PyramidWriter(FileChannel out, long[] offsets) {
+			int levels = offsets.length;
+			this.out = out;
+			this.positions = offsets.clone();
+			pending = new ByteBuffer[levels];
+			mins = new double[levels];
+			maxes = new double[levels];
+			filled = new int[levels];
+			for (int l = 0; l < levels; l++) {
+				pending[l] = ByteBuffer.allocate(BUCKET_BYTES * 4096);
+				mins[l] = Double.NaN;
+				maxes[l] = Double.NaN;
+			}
+		}
+
+		/**
+		 * Folds a point (level 0) or a closed bucket of the level below into the open bucket of a level,
+		 * closing that bucket once it holds BASE_BUCKET points or FANOUT buckets.
+		 */
+		void add(int level, double min, double max) throws IOException {
+			if (!(min >= mins[level])) {mins[level] = min;} // NaN comparisons keep the first value.
+			if (!(max <= maxes[level])) {maxes[level] = max;}
+			if (++filled[level] == (level == 0 ? BASE_BUCKET : FANOUT)) {
+				closeBucket(level);
+			}
+		}
+
+		private void closeBucket(int level) throws IOException {
+			double min = mins[level], max = maxes[level];
+			ByteBuffer buf = pending[level];
+			buf.putDouble(min).putDouble(max);
+			if (!buf.hasRemaining()) {flush(level);}
+			mins[level] = Double.NaN;
+			maxes[level] = Double.NaN;
+			filled[level] = 0;
+			if (level + 1 < pending.length) {
+				add(level + 1, min, max);
+			}
+		}
+
+		private void flush(int level) throws IOException {
+			ByteBuffer buf = pending[level];
+			buf.flip();
+			while (buf.hasRemaining()) {
+				positions[level] += out.write(buf, positions[level]);
+			}
+			buf.clear();
+		}
+
+		/**
+		 * Closes the trailing partial buckets, lowest level first so each one reaches the level above.
+		 */
+		void finish() throws IOException {
+			for (int l = 0; l < pending.length; l++) {
+				if (filled[l] > 0) {closeBucket(l);}
+				flush(l);
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package expPlotter;
+
+/**
+ * A double-double number: the unevaluated sum hi + lo of two doubles with |lo| <= ulp(hi)/2,
+ * giving about 32 significant decimal digits (106 bits) instead of 16.
+ *
+ * Used to evaluate expressions when the view is zoomed in so far that double rounding errors
+ * are visible at pixel size (see CurveSampler). The algorithms are the usual error-free
+ * transformations (Dekker, Knuth) with Math.fma for exact products; the transcendental functions
+ * reduce their argument and sum a Taylor series to double-double precision.
+ *
+ * Infinities and NaN are carried in hi, with lo = 0.
+ */
+final class DoubleDouble {
+	static final DoubleDouble ZERO = new DoubleDouble(0);
+	static final DoubleDouble ONE = new DoubleDouble(1);
+	static final DoubleDouble PI = new DoubleDouble(3.141592653589793, 1.2246467991473532e-16);
+	static final DoubleDouble HALF_PI = new DoubleDouble(1.5707963267948966, 6.123233995736766e-17);
+	static final DoubleDouble LN2 = new DoubleDouble(0.6931471805599453, 2.3190468138462996e-17);
+	// exp() squares its series result this many times, after dividing the argument by 2^EXP_SQUARINGS.
+	private static final int EXP_SQUARINGS = 10;
+	private static final double EPS = 1e-33;
+
+	final double hi;
+	final double lo;
+
+	DoubleDouble(double x) {
+		this(x, 0);
+	}
+
+	DoubleDouble(double hi, double lo) {
+		this.hi = hi;
+		this.lo = lo;
+	}
+
+	double doubleValue() {
+		return hi + lo;
+	}
+
+	boolean isFinite() {
+		return Double.isFinite(hi);
+	}
+
+	/**
+	 * hi + lo where |hi| >= |lo| is known, renormalised.
+	 */
+	private static DoubleDouble quickTwoSum(double a, double b) {
+		double s = a + b;
+		if (!Double.isFinite(s)) {return new DoubleDouble(s);}
+		return new DoubleDouble(s, b - (s - a));
+	}
+
+	private static DoubleDouble twoSum(double a, double b) {
+		double s = a + b;
+		if (!Double.isFinite(s)) {return new DoubleDouble(s);}
+		double bb = s - a;
+		return new DoubleDouble(s, (a - (s - bb)) + (b - bb));
+	}
+
+	DoubleDouble add(DoubleDouble o) {
+		DoubleDouble s = twoSum(hi, o.hi);
+		if (!s.isFinite()) {return s;}
+		DoubleDouble t = twoSum(lo, o.lo);
+		DoubleDouble u = quickTwoSum(s.hi, s.lo + t.hi);
+		return quickTwoSum(u.hi, u.lo + t.lo);
+	}
+
+	DoubleDouble subtract(DoubleDouble o) {
+		return add(o.negate());
+	}
+
+	DoubleDouble negate() {
+		return new DoubleDouble(-hi, -lo);
+	}
+
+	DoubleDouble multiply(DoubleDouble o) {
+		double p = hi * o.hi;
+		if (!Double.isFinite(p)) {return new DoubleDouble(p);}
+		double e = Math.fma(hi, o.hi, -p); // The exact rounding error of the product.
+		return quickTwoSum(p, e + (hi * o.lo + lo * o.hi));
+	}
+
+	DoubleDouble multiply(double o) {
+		return multiply(new DoubleDouble(o));
+	}
+
+	DoubleDouble divide(DoubleDouble o) {
+		double q1 = hi / o.hi;
+		if (!Double.isFinite(q1) || o.hi == 0) {return new DoubleDouble(q1);}
+		// Long division: each step corrects the quotient with the remainder.
+		DoubleDouble r = subtract(o.multiply(q1));
+		double q2 = r.hi / o.hi;
+		r = r.subtract(o.multiply(q2));
+		double q3 = r.hi / o.hi;
+		return quickTwoSum(q1, q2).add(new DoubleDouble(q3));
+	}
+
+	DoubleDouble abs() {
+		return hi < 0 ? negate() : this;
+	}
+
+	DoubleDouble sqrt() {
+		if (hi <= 0 || !isFinite()) {return new DoubleDouble(Math.sqrt(hi));}
+		double x = Math.sqrt(hi);
+		// One Newton step: sqrt(a) ~ x + (a - x^2) / 2x.
+		DoubleDouble x2 = new DoubleDouble(x).multiply(x);
+		return quickTwoSum(x, subtract(x2).hi / (2 * x));
+	}
+
+	/**
+	 * e^this: e^(k ln2 + r) = 2^k e^r, with e^r = (e^(r/2^n))^(2^n) and e^(r/2^n) from its Taylor series.
+	 */
+	DoubleDouble exp() {
+		if (hi > 709.8) {return new DoubleDouble(Double.POSITIVE_INFINITY);}
+		if (hi < -745.2) {return ZERO;}
+		if (!isFinite()) {return new DoubleDouble(Math.exp(hi));}
+
+		double k = Math.rint(hi / LN2.hi);
+		DoubleDouble r = subtract(LN2.multiply(k));
+		r = new DoubleDouble(Math.scalb(r.hi, -EXP_SQUARINGS), Math.scalb(r.lo, -EXP_SQUARINGS));
+
+		// e^r - 1 from its Taylor series. |r| < 4e-4, so about ten terms reach full precision.
+		DoubleDouble sum = r;
+		DoubleDouble term = r;
+		for (int n = 2; Math.abs(term.hi) > EPS; n++) {
+			term = term.multiply(r).divide(new DoubleDouble(n));
+			sum = sum.add(term);
+		}
+		// (1 + s)^2 - 1 = s * (s + 2) keeps the small part exact while squaring.
+		for (int i = 0; i < EXP_SQUARINGS; i++) {
+			sum = sum.multiply(sum.add(new DoubleDouble(2)));
+		}
+		sum = sum.add(ONE);
+		return new DoubleDouble(Math.scalb(sum.hi, (int) k), Math.scalb(sum.lo, (int) k));
+	}
+
+	/**
+	 * Natural logarithm, by one Newton step on exp from the double result: x + a e^-x - 1.
+	 */
+	DoubleDouble log() {
+		if (hi <= 0 || !isFinite()) {return new DoubleDouble(Math.log(hi));}
+		DoubleDouble x = new DoubleDouble(Math.log(hi));
+		return x.add(multiply(x.negate().exp())).subtract(ONE);
+	}
+
+	DoubleDouble sin() {
+		return sinCos(0);
+	}
+
+	DoubleDouble cos() {
+		return sinCos(1);
+	}
+
+	DoubleDouble tan() {
+		return sin().divide(cos());
+	}
+
+	/**
+	 * sin(this + shift * pi/2): reduce the argument to r in [-pi/4, pi/4] plus a quadrant, then use the
+	 * sin or cos series of r. The reduction is only exact to double-double precision, so very large
+	 * arguments lose digits, as they would in double.
+	 */
+	private DoubleDouble sinCos(int shift) {
+		if (!isFinite()) {return new DoubleDouble(Double.NaN);}
+		double k = Math.rint(hi / HALF_PI.hi);
+		DoubleDouble r = subtract(HALF_PI.multiply(k));
+		int quadrant = (int) ((((long) k + shift) % 4 + 4) % 4);
+
+		DoubleDouble r2 = r.multiply(r);
+		DoubleDouble result;
+		if (quadrant % 2 == 0) {
+			result = series(r, r2, 2); // sin r = r - r^3/3! + ...
+		} else {
+			result = series(ONE, r2, 1); // cos r = 1 - r^2/2! + ...
+		}
+		return quadrant >= 2 ? result.negate() : result;
+	}
+
+	/**
+	 * first - first*x2/(n(n+1)) + ..., the alternating series shared by sin (first = r, n = 2) and cos (first = 1, n = 1).
+	 */
+	private static DoubleDouble series(DoubleDouble first, DoubleDouble x2, int n) {
+		DoubleDouble sum = first;
+		DoubleDouble term = first;
+		while (Math.abs(term.hi) > EPS) {
+			term = term.multiply(x2).divide(new DoubleDouble((double) n * (n + 1))).negate();
+			sum = sum.add(term);
+			n += 2;
+		}
+		return sum;
+	}
+
+	/**
+	 * this^exponent, following Math.pow's rules. Integer exponents use repeated squaring, so negative
+	 * bases work; anything else is exp(exponent * log(this)).
+	 */
+	DoubleDouble pow(DoubleDouble exponent) {
+		double e = exponent.hi;
+		if (exponent.lo == 0 && e == Math.rint(e) && Math.abs(e) < 1 << 30) {
+			if (hi == 0) {return new DoubleDouble(Math.pow(hi, e));}
+			DoubleDouble result = ONE;
+			DoubleDouble square = this;
+			for (long n = (long) Math.abs(e); n > 0; n >>= 1) {
+				if ((n & 1) == 1) {result = result.multiply(square);}
+				if (n > 1) {square = square.multiply(square);}
+			}
+			return e < 0 ? ONE.divide(result) : result;
+		}
+		if (hi <= 0 || !isFinite() || !exponent.isFinite()) {
+			return new DoubleDouble(Math.pow(doubleValue(), exponent.doubleValue()));
+		}
+		return exponent.multiply(log()).exp();
+	}
+
+	@Override
+	public String toString() {
+		return hi + " + " + lo;
+	}
+}
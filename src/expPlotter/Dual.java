@@ -0,0 +1,67 @@
+package expPlotter;
+
+/**
+ * A dual number (value + derivative * e, where e^2 = 0).
+ * Evaluating a ParseNode with a Dual whose derivative is 1 gives f(x) and f'(x) in a single pass.
+ */
+final class Dual {
+	final double value;
+	final double derivative;
+
+	Dual(double value, double derivative) {
+		this.value = value;
+		this.derivative = derivative;
+	}
+
+	static Dual variable(double x) {
+		return new Dual(x, 1);
+	}
+
+	static Dual constant(double c) {
+		return new Dual(c, 0);
+	}
+
+	Dual add(Dual o) {
+		return new Dual(value + o.value, derivative + o.derivative);
+	}
+
+	Dual subtract(Dual o) {
+		return new Dual(value - o.value, derivative - o.derivative);
+	}
+
+	Dual multiply(Dual o) {
+		return new Dual(value * o.value, derivative * o.value + value * o.derivative);
+	}
+
+	Dual divide(Dual o) {
+		return new Dual(value / o.value, (derivative * o.value - value * o.derivative) / (o.value * o.value));
+	}
+
+	Dual negate() {
+		return new Dual(-value, -derivative);
+	}
+
+	/**
+	 * d(u^v) = u^v * (v' * ln(u) + v * u' / u).
+	 * When the exponent is constant we use the power rule instead, which also holds for
+	 * negative bases with integer exponents and for u = 0 (where ln(u) and 1/u blow up).
+	 */
+	Dual pow(Dual exponent) {
+		double u = value, du = derivative;
+		double v = exponent.value, dv = exponent.derivative;
+		double result = Math.pow(u, v);
+
+		double d;
+		if (dv == 0) {
+			d = (du == 0 || v == 0) ? 0 : v * Math.pow(u, v - 1) * du;
+		} else {
+			d = result * (dv * Math.log(u) + (du == 0 ? 0 : v * du / u));
+		}
+		return new Dual(result, d);
+	}
+
+	@Override
+	public String toString() {
+		return value + " + " + derivative + "e";
+	}
+}
@@ -0,0 +1,28 @@
+package expPlotter;
+
+/**
+ * Something that can compute f(x) for the plot: a parsed expression, or a faster equivalent of one.
+ */
+interface Evaluator {
+	double evaluate(double x);
+	
+	/**
+	 * f(x) and f'(x) in one pass. See Dual.
+	 */
+	Dual evaluate(Dual x);
+	
+	/**
+	 * f(x) in double-double precision, for deep zoom levels where doubles run out of digits.
+	 */
+	DoubleDouble evaluate(DoubleDouble x);
+	
+	/**
+	 * Batch form: out[i] = f(xs[i]) for i < n.
+	 * Evaluators with a tight inner loop override this so the loop isn't a virtual call per point.
+	 */
+	default void evaluate(double[] xs, double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = evaluate(xs[i]);
+		}
+	}
+}
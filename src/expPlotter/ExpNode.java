@@ -0,0 +1,85 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+class ExpNode implements ParseNode {
+	
+	ArrayList<ParseNode> children = new ArrayList<ParseNode>();
+	// This Map tells us whether we should add or minus the next term.
+	Map<ParseNode, Boolean> addMap = new HashMap<ParseNode, Boolean>(); 
+	
+	@Override
+	public double evaluate(double x) {
+		double sum = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (addMap.get(child)) { // If true, we add the terms.
+				sum += child.evaluate(x);
+			} else { // Otherwise, we subtract.
+				sum -= child.evaluate(x);
+			}
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		Dual sum = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (addMap.get(child)) {
+				sum = sum.add(child.evaluate(x));
+			} else {
+				sum = sum.subtract(child.evaluate(x));
+			}
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		DoubleDouble sum = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (addMap.get(child)) {
+				sum = sum.add(child.evaluate(x));
+			} else {
+				sum = sum.subtract(child.evaluate(x));
+			}
+		}
+		
+		return sum;
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		children.add(new TermNode().parse(s));
+		
+		while (true) {
+			if (Parser.checkEat(Parser.PLUS, s)) {
+				ParseNode nextTerm = new TermNode().parse(s);
+				children.add(nextTerm);
+				
+				addMap.put(nextTerm, true);
+			} else if (Parser.checkEat(Parser.MINUS, s)) {
+				ParseNode nextTerm = new TermNode().parse(s);
+				children.add(nextTerm);
+				
+				addMap.put(nextTerm, false);
+			} else {
+				break;
+			}
+		}
+		
+		return this;
+	}
+	
+}
@@ -0,0 +1,243 @@
+package expPlotter;
+
+import java.util.Arrays;
+
+/**
+ * An expression tree stored as parallel primitive arrays instead of ParseNode objects.
+ *
+ * Node i is an operator (ops[i]) applied to the nodes left[i] and right[i], or a leaf holding values[i].
+ * Nodes are appended children first, so the array order is reverse Polish notation: evaluating the
+ * nodes in index order with a value stack needs no recursion, however deeply the expression nests.
+ * Each node costs 17 bytes, against several objects (and an ArrayList and HashMap) per ParseNode.
+ *
+ * Built by ArenaParser.
+ */
+final class ExpressionArena implements Evaluator {
+	static final byte NUMBER = 0;    // values[i] is the number
+	static final byte VARIABLE = 1;
+	static final byte ADD = 2;
+	static final byte SUBTRACT = 3;
+	static final byte MULTIPLY = 4;
+	static final byte DIVIDE = 5;
+	static final byte NEGATE = 6;    // -left
+	static final byte POWER = 7;     // left ^ right
+	static final byte FUNCTION = 8;  // BuiltinFunction ordinal right[i] of left; values[i] is 1 for the fast version
+	static final byte PARAMETER = 9; // The current value of parameter
+
+	private static final int BATCH = 256;
+	// Beyond this stack depth, batch evaluation would need too much memory (one BATCH array per stack slot).
+	private static final int MAX_BATCH_STACK = 64;
+	private static final BuiltinFunction[] FUNCTIONS = BuiltinFunction.values();
+
+	byte[] ops;
+	int[] left;
+	int[] right;
+	double[] values;
+	int size;
+	Parameter parameter;
+	// The deepest the value stack gets while evaluating, tracked as nodes are added.
+	int maxStack;
+	private int stack;
+
+	ExpressionArena(int capacity) {
+		capacity = Math.max(capacity, 4);
+		ops = new byte[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		values = new double[capacity];
+	}
+
+	/**
+	 * An arena over arrays that already hold a complete expression, e.g. one read back by ExpressionStore.
+	 */
+	ExpressionArena(byte[] ops, int[] left, int[] right, double[] values, int maxStack) {
+		this.ops = ops;
+		this.left = left;
+		this.right = right;
+		this.values = values;
+		this.size = ops.length;
+		this.maxStack = maxStack;
+	}
+
+	int root() {
+		return size - 1;
+	}
+
+	int addLeaf(byte op, double value) {
+		stack++;
+		maxStack = Math.max(maxStack, stack);
+		return add(op, -1, -1, value);
+	}
+
+	int addUnary(byte op, int operand, int functionOrdinal, double value) {
+		return add(op, operand, functionOrdinal, value);
+	}
+
+	int addBinary(byte op, int l, int r) {
+		stack--;
+		return add(op, l, r, 0);
+	}
+
+	private int add(byte op, int l, int r, double value) {
+		if (size == ops.length) {
+			int capacity = size * 2;
+			ops = Arrays.copyOf(ops, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		ops[size] = op;
+		left[size] = l;
+		right[size] = r;
+		values[size] = value;
+		return size++;
+	}
+
+	/**
+	 * Appends the nodes from (inclusive) to 'to' (exclusive) of another arena, which must be a complete
+	 * subexpression or the start of one, with their child references moved to match. Returns the index of
+	 * the last node appended.
+	 */
+	int append(ExpressionArena source, int from, int to) {
+		int shift = size - from;
+		for (int i = from; i < to; i++) {
+			byte op = source.ops[i];
+			switch (op) {
+			case NUMBER:
+			case VARIABLE:
+			case PARAMETER:
+				addLeaf(op, source.values[i]);
+				break;
+			case NEGATE:
+			case FUNCTION:
+				addUnary(op, source.left[i] + shift, source.right[i], source.values[i]);
+				break;
+			default:
+				addBinary(op, source.left[i] + shift, source.right[i] + shift);
+			}
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Shrinks the arrays to the number of nodes, once parsing is done.
+	 */
+	void trim() {
+		ops = Arrays.copyOf(ops, size);
+		left = Arrays.copyOf(left, size);
+		right = Arrays.copyOf(right, size);
+		values = Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public double evaluate(double x) {
+		return evaluate(x, new double[maxStack]);
+	}
+
+	private double evaluate(double x, double[] stack) {
+		int sp = 0;
+		for (int i = 0; i < size; i++) {
+			switch (ops[i]) {
+			case NUMBER: stack[sp++] = values[i]; break;
+			case VARIABLE: stack[sp++] = x; break;
+			case PARAMETER: stack[sp++] = parameter.value; break;
+			case ADD: sp--; stack[sp-1] += stack[sp]; break;
+			case SUBTRACT: sp--; stack[sp-1] -= stack[sp]; break;
+			case MULTIPLY: sp--; stack[sp-1] *= stack[sp]; break;
+			case DIVIDE: sp--; stack[sp-1] /= stack[sp]; break;
+			case NEGATE: stack[sp-1] = -stack[sp-1]; break;
+			case POWER: sp--; stack[sp-1] = Math.pow(stack[sp-1], stack[sp]); break;
+			case FUNCTION: stack[sp-1] = FUNCTIONS[right[i]].evaluate(stack[sp-1], values[i] != 0); break;
+			default: throw new IllegalStateException("Unknown op " + ops[i]);
+			}
+		}
+		return stack[0];
+	}
+
+	@Override
+	public Dual evaluate(Dual x) {
+		Dual[] stack = new Dual[maxStack];
+		int sp = 0;
+		for (int i = 0; i < size; i++) {
+			switch (ops[i]) {
+			case NUMBER: stack[sp++] = Dual.constant(values[i]); break;
+			case VARIABLE: stack[sp++] = x; break;
+			case PARAMETER: stack[sp++] = Dual.constant(parameter.value); break;
+			case ADD: sp--; stack[sp-1] = stack[sp-1].add(stack[sp]); break;
+			case SUBTRACT: sp--; stack[sp-1] = stack[sp-1].subtract(stack[sp]); break;
+			case MULTIPLY: sp--; stack[sp-1] = stack[sp-1].multiply(stack[sp]); break;
+			case DIVIDE: sp--; stack[sp-1] = stack[sp-1].divide(stack[sp]); break;
+			case NEGATE: stack[sp-1] = stack[sp-1].negate(); break;
+			case POWER: sp--; stack[sp-1] = stack[sp-1].pow(stack[sp]); break;
+			case FUNCTION: stack[sp-1] = FUNCTIONS[right[i]].evaluate(stack[sp-1], values[i] != 0); break;
+			default: throw new IllegalStateException("Unknown op " + ops[i]);
+			}
+		}
+		return stack[0];
+	}
+
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		DoubleDouble[] stack = new DoubleDouble[maxStack];
+		int sp = 0;
+		for (int i = 0; i < size; i++) {
+			switch (ops[i]) {
+			case NUMBER: stack[sp++] = new DoubleDouble(values[i]); break;
+			case VARIABLE: stack[sp++] = x; break;
+			case PARAMETER: stack[sp++] = new DoubleDouble(parameter.value); break;
+			case ADD: sp--; stack[sp-1] = stack[sp-1].add(stack[sp]); break;
+			case SUBTRACT: sp--; stack[sp-1] = stack[sp-1].subtract(stack[sp]); break;
+			case MULTIPLY: sp--; stack[sp-1] = stack[sp-1].multiply(stack[sp]); break;
+			case DIVIDE: sp--; stack[sp-1] = stack[sp-1].divide(stack[sp]); break;
+			case NEGATE: stack[sp-1] = stack[sp-1].negate(); break;
+			case POWER: sp--; stack[sp-1] = stack[sp-1].pow(stack[sp]); break;
+			case FUNCTION: stack[sp-1] = FUNCTIONS[right[i]].evaluate(stack[sp-1]); break;
+			default: throw new IllegalStateException("Unknown op " + ops[i]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * Runs each node over BATCH points at a time, so the interpreter's dispatch cost is paid once per
+	 * node per batch rather than once per node per point.
+	 */
+	@Override
+	public void evaluate(double[] xs, double[] out, int n) {
+		if (maxStack > MAX_BATCH_STACK) {
+			double[] stack = new double[maxStack];
+			for (int i = 0; i < n; i++) {
+				out[i] = evaluate(xs[i], stack);
+			}
+			return;
+		}
+
+		double[][] stack = new double[maxStack][BATCH];
+		for (int start = 0; start < n; start += BATCH) {
+			int count = Math.min(BATCH, n - start);
+			int sp = 0;
+			for (int node = 0; node < size; node++) {
+				double[] a = sp >= 2 ? stack[sp-2] : null;
+				double[] b = sp >= 1 ? stack[sp-1] : null;
+				switch (ops[node]) {
+				case NUMBER: Arrays.fill(stack[sp++], 0, count, values[node]); break;
+				case VARIABLE: System.arraycopy(xs, start, stack[sp++], 0, count); break;
+				case PARAMETER: Arrays.fill(stack[sp++], 0, count, parameter.value); break;
+				case ADD: for (int i = 0; i < count; i++) {a[i] += b[i];} sp--; break;
+				case SUBTRACT: for (int i = 0; i < count; i++) {a[i] -= b[i];} sp--; break;
+				case MULTIPLY: for (int i = 0; i < count; i++) {a[i] *= b[i];} sp--; break;
+				case DIVIDE: for (int i = 0; i < count; i++) {a[i] /= b[i];} sp--; break;
+				case NEGATE: for (int i = 0; i < count; i++) {b[i] = -b[i];} break;
+				case POWER: for (int i = 0; i < count; i++) {a[i] = Math.pow(a[i], b[i]);} sp--; break;
+				case FUNCTION:
+					BuiltinFunction f = FUNCTIONS[right[node]];
+					boolean fast = values[node] != 0;
+					for (int i = 0; i < count; i++) {b[i] = f.evaluate(b[i], fast);}
+					break;
+				default: throw new IllegalStateException("Unknown op " + ops[node]);
+				}
+			}
+			System.arraycopy(stack[0], 0, out, start, count);
+		}
+	}
+}
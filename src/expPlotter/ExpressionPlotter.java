@@ -1,123 +1,747 @@
-package expPlotter;
-import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Scanner;
-import sGUI.SimpleGUI;
-import sGUI.Shape;
-
-public class ExpressionPlotter {
-		SimpleGUI GUI;
-		Shape axises;
-		
-		private int gridSize = 500;
-		private int center = gridSize/2;
-		
-		private final double ZOOM_FACTOR = 2;
-		private double scale = 1;
-		
-	public ExpressionPlotter() {
-		createAndSetupGUI();
-	}
-	
-	public void createAndSetupGUI() {
-		GUI = SimpleGUI.setupGUI();
-		GUI.setFrameName("Expression Plotter");
-		
-		ArrayList<Shape> shapeSequence = new ArrayList<Shape>();
-		
-		// Y-axis
-		shapeSequence.add(GUI.createLineShape(center, gridSize, center, 0));
-		// X-axis
-		shapeSequence.add(GUI.createLineShape(0, center, gridSize, center));
-		
-		axises = Shape.layer(shapeSequence);
-		GUI.drawShape(axises, 0, 0);
-		
-		GUI.addButton("Scale up", 20, () -> zoomIn());
-		GUI.addButton("Scale down", 10, () -> zoomOut());
-		
-		GUI.addTextFieldListener(() -> this.run());
-	}
-	
-	public void zoomIn() {
-		scale /= ZOOM_FACTOR;
-		run();
-	}
-	
-	public void zoomOut() {
-		scale *= ZOOM_FACTOR;
-		run();
-	}
-	
-	public void updateAxis() {
-		// Clear the draw area and redraw the axis with updated labels.
-		GUI.clear();
-		GUI.drawShape(axises, 0, 0);
-		
-		// Update axis marks and number labels.
-		for (int i = 0; i <= gridSize; i+=50) {
-			double label = (i-center)*scale;
-			label = (double)Math.round(label * 1e3d) / 1e3d;
-			
-			// X-axis
-			GUI.drawLine(i, center + 2, i, center - 2);
-			GUI.drawString(String.valueOf(label), i, center + 20, Color.black);
-			
-			// Y-axis
-			GUI.drawLine(center+2, i, center-2, i);
-			GUI.drawString(String.valueOf(-label), center + 20, i, Color.black);
-		}
-	}
-	
-	public void run() {
-		String exp;
-		exp = GUI.getTextFieldTxt();
-		exp = exp.replaceAll(" ", ""); // Strip space characters
-		Scanner scan = new Scanner(exp);
-		scan.useDelimiter("");
-		try {
-			// Clear the last iteration's chosen variable.
-			Parser.recognizedVar = null;
-			
-			ParseNode root = parseExp(scan);
-			GUI.println(exp);
-			
-			// Clear the points from last iteration and update axis labels.
-			updateAxis();
-			
-			// Plot the points relative to the center.
-			double previousY = 0;
-			for (int x =- center;x <= gridSize; x++) {
-				double y = root.evaluate(x*scale) / scale;
-				
-				
-				if (center-y > gridSize || x+center > gridSize) { // Don't draw beyond the axises.
-					previousY = y;
-					continue;
-				}
-				
-				
-				if (x != -center) {
-					GUI.drawLine(x+center, center-y, x+center - 1, center-previousY);
-				} else {
-					GUI.drawLine(x+center, center-y, x+center, center-y);
-				}
-				previousY = y;
-				
-			}
-			
-		} catch (ParseFailedException e) {
-			GUI.println(e.getMessage());
-		}
-		scan.close();
-	}
-	
-	private static ParseNode parseExp(Scanner s) {
-		return new ExpNode().parse(s);
-	}
-
-	public static void main(String[] args) {
-		ExpressionPlotter expPlotter = new ExpressionPlotter();
-	}
-
-}
+package expPlotter;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import sGUI.Raster;
+import sGUI.SimpleGUI;
+import sGUI.Shape;
+
+public class ExpressionPlotter {
+		SimpleGUI GUI;
+		Shape axises;
+		
+		// The plot is a square gridSize+1 units across, fitted to the draw area less a margin for the labels.
+		private int gridSize = 500;
+		private int center = gridSize/2;
+		private final int MARGIN = 100;
+		private final int MIN_GRID_SIZE = 100;
+		// Device pixels per unit (e.g. 2 on a HiDPI screen). Curves are sampled and drawn per device pixel.
+		private double pixelScale = 1;
+		// A resize only replots once the window has kept the same size for this long.
+		private final int RESIZE_DEBOUNCE = 150; // ms
+		
+		static final int LARGE_EXPRESSION = 1000;
+		
+		// The plot follows the text field once typing pauses for this long.
+		private final int LIVE_PREVIEW_DEBOUNCE = 150; // ms
+		private LivePreview livePreview = new LivePreview();
+		// The expression whose curve is on screen, whether plotted or previewed.
+		private String shown = "";
+		
+		static final double ZOOM_FACTOR = 2;
+		private double scale = 1;
+		
+		static final int OVERSAMPLING_FACTOR = 1024;
+		private int oversampling = 1;
+		
+		private boolean fastMath = false;
+		// Whether polynomials are evaluated with Math.fma. Only fast on CPUs with FMA instructions.
+		private boolean hornerFma = false;
+		
+		// Sampling, zoom prefetching, range analysis and saving the session, shared with SessionReplay.
+		private PlotPipeline pipeline = new PlotPipeline(SwingUtilities::invokeLater);
+		
+		// Progressive mode draws a coarse curve within FIRST_FRAME_BUDGET, then refines it in the background.
+		private final long FIRST_FRAME_BUDGET = 30; // ms
+		private boolean progressive = false;
+		private ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer(FIRST_FRAME_BUDGET);
+		// The shapes of the current curve and its root/extremum markers, so a refinement can replace just them.
+		private List<Shape> curveLayer = new ArrayList<Shape>();
+		
+		// Animation mode plots expressions in x and the time t, e.g. sin(x - t).
+		private Animator animator;
+		
+		// Curves can be drawn by Java2D (one Polyline shape per run) or rasterized in software into one image.
+		private enum CurveRenderer {JAVA2D, BRESENHAM, WU, SUPERSAMPLED}
+		private final int SUBSAMPLES = 4; // Per side of a pixel, for SUPERSAMPLED
+		private CurveRenderer curveRenderer = CurveRenderer.JAVA2D;
+		
+		// While recording, every action is written to a session file for SessionReplay.
+		private SessionRecorder recorder;
+		
+		// Worker processes that sample plots in place of this JVM; null to sample here. The farm is waited for
+		// on its own thread, and a plot from it is only shown if its generation is still the latest.
+		private RenderFarm renderFarm;
+		private final long RENDER_FARM_TIMEOUT = 2000; // ms per tile
+		private final ExecutorService farmDispatcher = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "Render farm dispatcher");
+			t.setDaemon(true);
+			return t;
+		});
+		private Future<?> farmPlot;
+		private volatile int farmGeneration;
+		
+		// Whether clipping and zoom prefetch statistics are printed to the console.
+		private boolean showStats = false;
+		
+		// Tick labels by value. A zoom keeps every other label and a resize most of them, so few are formatted
+		// again; the least recently used are dropped beyond MAX_TICK_LABELS.
+		private final int MAX_TICK_LABELS = 256;
+		private final Map<Double, String> tickLabels = new LinkedHashMap<Double, String>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Double, String> eldest) {return size() > MAX_TICK_LABELS;}
+		};
+		
+		private final Color DATA_COLOR = new Color(0, 150, 0);
+		private List<DataSeries> dataSeries = new ArrayList<DataSeries>();
+		
+		// The readout of every curve's value under the mouse. While the mouse moves it is read from the samples;
+		// once it rests for HOVER_REFINE_DELAY the expression is evaluated exactly.
+		private final int HOVER_REFINE_DELAY = 300; // ms
+		private HoverTrace hover = new HoverTrace(Color.black, DATA_COLOR);
+		private Timer hoverRefine;
+		
+	public ExpressionPlotter() {
+		createAndSetupGUI();
+	}
+	
+	public void createAndSetupGUI() {
+		GUI = SimpleGUI.setupGUI();
+		GUI.setFrameName("Expression Plotter");
+		
+		fitToDrawArea();
+		GUI.drawShape(axises, 0, 0);
+		GUI.addResizeListener(RESIZE_DEBOUNCE, () -> resized());
+		
+		GUI.addButton("Scale up", 20, () -> zoomIn());
+		GUI.addButton("Scale down", 10, () -> zoomOut());
+		GUI.addButton("Oversampling", 10, () -> toggleOversampling());
+		GUI.addButton("Fast math", 10, () -> toggleFastMath());
+		GUI.addButton("Horner FMA", 10, () -> toggleHornerFma());
+		GUI.addButton("Progressive", 10, () -> toggleProgressive());
+		GUI.addButton("Animate", 10, () -> toggleAnimation());
+		GUI.addButton("Software raster", 10, () -> cycleCurveRenderer());
+		GUI.addButton("Render farm", 10, () -> toggleRenderFarm());
+		GUI.addButton("Record session", 10, () -> toggleRecording());
+		GUI.addButton("Stats", 10, () -> toggleStats());
+		GUI.addButton("Load data", 10, () -> {
+			File file = GUI.chooseFile("Load data series");
+			if (file != null) {loadDataSeries(file);}
+		});
+		
+		GUI.addTextFieldListener(() -> {
+			record("expr", GUI.getTextFieldTxt());
+			this.run();
+		});
+		GUI.addTextChangeListener(LIVE_PREVIEW_DEBOUNCE, () -> preview());
+		
+		GUI.setOverlay(hover);
+		hoverRefine = new Timer(HOVER_REFINE_DELAY, e -> {
+			hover.refine();
+			GUI.repaintOverlay();
+		});
+		hoverRefine.setRepeats(false);
+		GUI.addHoverListener((x, y) -> {
+			hover.hover(x, y);
+			GUI.repaintOverlay();
+			hoverRefine.restart();
+		});
+		animator = new Animator(GUI);
+	}
+	
+	/**
+	 * Sizes the plot to the draw area and the screen's pixel scale, rebuilding the axes if either changed.
+	 * Returns whether anything changed.
+	 */
+	private boolean fitToDrawArea() {
+		Dimension area = GUI.getDrawAreaSize();
+		int size = gridSize;
+		if (area.width > 0 && area.height > 0) {
+			size = Math.max(MIN_GRID_SIZE, Math.min(area.width, area.height) - MARGIN);
+		}
+		double density = GUI.getPixelScale();
+		if (axises != null && size == gridSize && density == pixelScale) {return false;}
+		gridSize = size;
+		center = gridSize/2;
+		pixelScale = density;
+		
+		ArrayList<Shape> shapeSequence = new ArrayList<Shape>();
+		
+		// Y-axis
+		shapeSequence.add(GUI.createLineShape(center, gridSize, center, 0));
+		// X-axis
+		shapeSequence.add(GUI.createLineShape(0, center, gridSize, center));
+		
+		// The axes only change with the plot size, so they are rendered once and drawn as an image.
+		axises = Shape.cachedLayer(shapeSequence, gridSize+1, gridSize+1);
+		return true;
+	}
+	
+	/**
+	 * Called once a resize of the window has settled.
+	 */
+	private void resized() {
+		if (!fitToDrawArea()) {return;}
+		GUI.println("Plot size: " + (gridSize+1) + " units, " + deviceColumns() + " device pixels across");
+		if (GUI.getTextFieldTxt().trim().isEmpty()) {
+			updateAxis();
+			drawDataSeries();
+		} else {
+			run();
+		}
+	}
+	
+	/**
+	 * The number of device pixel columns across the plot, which is how many columns are sampled.
+	 */
+	private int deviceColumns() {
+		return view().columns();
+	}
+	
+	/**
+	 * The current view and settings.
+	 */
+	private PlotPipeline.View view() {
+		return new PlotPipeline.View(scale, gridSize, pixelScale, oversampling, fastMath, hornerFma);
+	}
+	
+	public void zoomIn() {
+		record("zoomIn", null);
+		scale /= ZOOM_FACTOR;
+		run();
+		printPrefetchStats();
+	}
+	
+	public void zoomOut() {
+		record("zoomOut", null);
+		scale *= ZOOM_FACTOR;
+		run();
+		printPrefetchStats();
+	}
+	
+	private void printPrefetchStats() {
+		if (!showStats) {return;}
+		ZoomPrefetcher prefetcher = pipeline.prefetcher();
+		GUI.println(String.format("Zoom prefetch hit rate: %.0f%% (%d of %d)", prefetcher.hitRate() * 100,
+				prefetcher.hits(), prefetcher.hits() + prefetcher.misses()));
+	}
+	
+	public void toggleOversampling() {
+		record("oversampling", null);
+		oversampling = oversampling == 1 ? OVERSAMPLING_FACTOR : 1;
+		GUI.println("Oversampling: " + oversampling + "x");
+		run();
+	}
+	
+	/**
+	 * Switches built-in functions (sin, exp, ...) between their strict and fast approximate versions.
+	 */
+	public void toggleFastMath() {
+		record("fastMath", null);
+		fastMath = !fastMath;
+		GUI.println("Fast math: " + (fastMath ? "on" : "off"));
+		run();
+	}
+	
+	public void toggleHornerFma() {
+		record("hornerFma", null);
+		hornerFma = !hornerFma;
+		GUI.println("Horner FMA: " + (hornerFma ? "on" : "off"));
+		run();
+	}
+	
+	/**
+	 * Switches printing clipping and zoom prefetch statistics to the console on or off.
+	 */
+	public void toggleStats() {
+		showStats = !showStats;
+		GUI.println("Stats: " + (showStats ? "on" : "off"));
+	}
+	
+	public void toggleProgressive() {
+		record("progressive", null);
+		progressive = !progressive;
+		GUI.println("Progressive rendering: " + (progressive ? "on" : "off"));
+		run();
+	}
+	
+	/**
+	 * Cycles the curve renderer: Java2D, software aliased (Bresenham), software antialiased (Wu),
+	 * software supersampled.
+	 */
+	public void cycleCurveRenderer() {
+		curveRenderer = CurveRenderer.values()[(curveRenderer.ordinal() + 1) % CurveRenderer.values().length];
+		GUI.println("Curve renderer: " + curveRenderer);
+		run();
+	}
+	
+	/**
+	 * Starts sampling plots in a pool of worker processes, one per processor, or stops them.
+	 */
+	public void toggleRenderFarm() {
+		if (renderFarm != null) {
+			// Closed on the dispatcher once any plot it is sampling has stopped, which may take a tile's timeout.
+			cancelFarmPlot();
+			RenderFarm farm = renderFarm;
+			renderFarm = null;
+			farmDispatcher.submit(() -> {
+				farm.close();
+				SwingUtilities.invokeLater(() -> GUI.println("Render farm stopped: " + farm.stats()));
+			});
+			run();
+			return;
+		}
+		try {
+			renderFarm = new RenderFarm(Runtime.getRuntime().availableProcessors(), RENDER_FARM_TIMEOUT);
+			GUI.println("Render farm: " + renderFarm.workers() + " workers");
+		} catch (IOException e) {
+			GUI.println("Could not start the render farm: " + e.getMessage());
+			return;
+		}
+		run();
+	}
+	
+	/**
+	 * Starts recording the session to a file chosen by the user, or stops recording.
+	 * Play a recording back with SessionReplay.
+	 */
+	public void toggleRecording() {
+		if (recorder != null) {
+			recorder.close();
+			GUI.println("Recorded " + recorder.actions() + " actions to " + recorder.file().getName());
+			recorder = null;
+			return;
+		}
+		File file = GUI.chooseFile("Record session to");
+		if (file == null) {return;}
+		try {
+			recorder = new SessionRecorder(file);
+			GUI.println("Recording session to " + file.getName());
+		} catch (IOException e) {
+			GUI.println("Could not record to " + file.getName() + ": " + e.getMessage());
+		}
+	}
+	
+	private void record(String action, String argument) {
+		if (recorder != null) {recorder.record(action, argument);}
+	}
+	
+	/**
+	 * Starts animating the current expression in x and t, or stops the running animation.
+	 */
+	public void toggleAnimation() {
+		if (animator.isRunning()) {
+			animator.stop();
+			GUI.println("Animation stopped: " + animator.stats());
+			return;
+		}
+		
+		String exp = GUI.getTextFieldTxt().replaceAll(" ", "");
+		progressiveRenderer.cancel();
+		cancelFarmPlot();
+		Evaluator root;
+		synchronized (Parser.class) {
+			try {
+				Parser.fastMath = fastMath;
+				Parser.parameter = animator.time;
+				root = parseExp(exp);
+			} catch (ParseFailedException e) {
+				GUI.println(e.getMessage());
+				return;
+			} finally {
+				Parser.parameter = null;
+			}
+		}
+		GUI.println("Animating " + exp + " at " + Animator.FPS + " fps");
+		
+		// The axes and data series don't move, so they are drawn once and copied into every frame.
+		trace(null, null); // Nor would the readout.
+		updateAxis();
+		drawDataSeries();
+		// Frames are drawn one pixel per unit. Oversampling is left out; a frame has to be ready within 1/FPS seconds.
+		PlotPipeline.View frame = new PlotPipeline.View(scale, gridSize, 1, 1, fastMath, hornerFma);
+		animator.start(GUI.snapshot(), g -> {
+			SampleBuffer samples = PlotPipeline.sample(root, frame);
+			g.setColor(Color.black);
+			g.setStroke(new BasicStroke(GUI.getLineWidth()));
+			PlotPipeline.clip(samples, frame, (xs, ys, n) -> g.drawPolyline(xs, ys, n));
+		});
+	}
+	
+	/**
+	 * Overlays a file of (x, y) double pairs on the plot. See DataSeries for the file format.
+	 */
+	public void loadDataSeries(File file) {
+		try {
+			DataSeries series = DataSeries.open(file);
+			dataSeries.add(series);
+			GUI.println("Loaded " + series.size() + " points from " + series.name());
+		} catch (IOException e) {
+			GUI.println("Could not load " + file.getName() + ": " + e.getMessage());
+			return;
+		}
+		
+		if (GUI.getTextFieldTxt().trim().isEmpty()) {
+			updateAxis();
+			drawDataSeries();
+		} else {
+			run();
+		}
+	}
+	
+	private void drawDataSeries() {
+		GUI.setColor(DATA_COLOR);
+		for (DataSeries series : dataSeries) {
+			drawCurve(series.sample(-center*scale, scale/pixelScale, deviceColumns()), new ArrayList<Shape>());
+		}
+		GUI.setColor(Color.black);
+	}
+	
+	public void updateAxis() {
+		// Clear the draw area and redraw the axis with updated labels.
+		GUI.clear();
+		curveLayer.clear();
+		GUI.drawShape(axises, 0, 0);
+		
+		// Update axis marks and number labels, every 50 px out from the origin so the labels stay round.
+		for (int i = center % 50; i <= gridSize; i+=50) {
+			double label = (i-center)*scale;
+			label = (double)Math.round(label * 1e3d) / 1e3d;
+			
+			// X-axis
+			GUI.drawLine(i, center + 2, i, center - 2);
+			GUI.drawString(tickLabel(label), i, center + 20, Color.black);
+			
+			// Y-axis
+			GUI.drawLine(center+2, i, center-2, i);
+			GUI.drawString(tickLabel(-label), center + 20, i, Color.black);
+		}
+	}
+	
+	private String tickLabel(double value) {
+		String label = tickLabels.get(value);
+		if (label == null) {
+			label = String.valueOf(value);
+			tickLabels.put(value, label);
+		}
+		return label;
+	}
+	
+	public void run() {
+		String exp;
+		exp = GUI.getTextFieldTxt();
+		exp = exp.replaceAll(" ", ""); // Strip space characters
+		// Any refinement, preview or animation still running is for the old input.
+		progressiveRenderer.cancel();
+		livePreview.cancel();
+		cancelFarmPlot();
+		if (animator.isRunning()) {
+			animator.stop();
+			GUI.println("Animation stopped: " + animator.stats());
+		}
+		try {
+			plot(exp, pipeline.parse(exp, fastMath));
+		} catch (ParseFailedException e) {
+			GUI.println(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Plots what is being typed without waiting for Enter. Parsing and sampling run in the background, and
+	 * until the text parses the last curve stays. Roots, range analysis and prefetching wait for Enter.
+	 */
+	private void preview() {
+		String exp = GUI.getTextFieldTxt().replaceAll(" ", "");
+		if (exp.isEmpty() || exp.equals(shown) || animator.isRunning()) {return;}
+		// The preview is sampled on LivePreview's thread, so it takes the settings as they are now.
+		PlotPipeline.View view = view();
+		RenderFarm farm = renderFarm;
+		LivePreview.Sampler sampler = farm == null
+				? root -> PlotPipeline.sample(PlotPipeline.evaluatorFor(root, view), view)
+				// The text is only parsed here, to see whether it is complete; the workers evaluate it.
+				: root -> farm.sample(exp, view.fastMath, view.left(), view.scale/view.density, view.columns(), view.oversampling);
+		livePreview.preview(exp, fastMath, sampler, (samples, parseNanos, reused, nodes) -> {
+			progressiveRenderer.cancel();
+			cancelFarmPlot();
+			pipeline.cancelAnalysis();
+			shown = exp;
+			updateAxis();
+			drawDataSeries();
+			drawCurve(samples, curveLayer);
+			trace(samples, null);
+			GUI.println(String.format("Preview: %s (parsed in %.2f ms%s)", exp.length() > 60 ? exp.substring(0, 60) + "..." : exp,
+					parseNanos / 1e6, nodes > 0 ? String.format(", %d%% of nodes reused", 100L * reused / nodes) : ""));
+		});
+	}
+	
+	/**
+	 * Plots an expression that has already been parsed (or restored compiled), then saves it to the store.
+	 */
+	private void plot(String exp, Evaluator root) {
+		shown = exp;
+		pipeline.cancelAnalysis(); // Any analysis still running is of the last plot.
+		GUI.println(exp);
+		PlotPipeline.View view = view();
+		
+		// Clear the points from last iteration and update axis labels.
+		updateAxis();
+		drawDataSeries();
+		
+		if (renderFarm != null) {
+			saveSession(exp, view);
+			renderOnFarm(exp, view);
+			return;
+		}
+		Evaluator f = PlotPipeline.evaluatorFor(root, view);
+		if (f instanceof RationalFunction) {
+			GUI.println("Horner form: " + f);
+		}
+		
+		// Sample every pixel column (several times per column when oversampling) and plot relative to the center.
+		// After a zoom the samples have usually been prefetched already.
+		SampleBuffer samples = pipeline.prefetched(exp, view);
+		if (samples == null && progressive) {
+			saveSession(exp, view);
+			renderProgressively(exp, root, f, view);
+			return;
+		}
+		if (samples == null) {
+			samples = PlotPipeline.sample(f, view);
+		}
+		ViewportClipper clipper = drawCurve(samples, curveLayer);
+		trace(samples, root);
+		if (showStats) {GUI.println("Clipping: " + clipper.stats());}
+		if (samples.preciseColumns > 0) {
+			GUI.println("Deep zoom: " + samples.preciseColumns + " of " + samples.columns + " columns in double-double precision");
+		}
+		
+		printRangeAnalysis(exp, root, view, markRootsAndExtrema(root));
+		pipeline.prefetchNeighbours(root, exp, view);
+		saveSession(exp, view);
+	}
+	
+	/**
+	 * Keeps the expression, compiled, with the view and settings so the next launch can show it without parsing.
+	 */
+	private void saveSession(String exp, PlotPipeline.View view) {
+		pipeline.save(exp, view, e -> GUI.println("Could not save the session: " + e.getMessage()));
+	}
+	
+	/**
+	 * Keeps each plot in the given store from now on, and first plots whatever the store holds from last time.
+	 * The restored plot is evaluated from the stored arena, so a polynomial isn't put in Horner form (that
+	 * needs the parse tree) until it is next replotted, e.g. by a zoom.
+	 */
+	public void restoreSession(File file) {
+		long start = System.nanoTime();
+		ExpressionStore.Session session;
+		try {
+			session = new ExpressionStore(file).load();
+		} catch (IOException e) {
+			GUI.println("Ignoring the stored session: " + e.getMessage());
+			session = null;
+		}
+		// Set after plotting, so the restored session isn't written straight back.
+		if (session == null) {
+			pipeline.keepSessions(new ExpressionStore(file));
+			return;
+		}
+		
+		scale = session.scale;
+		oversampling = session.oversampling;
+		fastMath = session.fastMath;
+		hornerFma = session.hornerFma;
+		GUI.setTextFieldTxt(session.expression);
+		pipeline.restored(session);
+		plot(session.expression, session.program);
+		GUI.println(String.format("Restored session in %.1f ms", (System.nanoTime() - start) / 1e6));
+		pipeline.keepSessions(new ExpressionStore(file));
+	}
+	
+	/**
+	 * Shows a coarse curve quickly and refines it in passes. Each pass only replaces the curve layer;
+	 * the axes and data series stay as they are.
+	 */
+	private void renderProgressively(String exp, Evaluator root, Evaluator f, PlotPipeline.View view) {
+		progressiveRenderer.render(f, view.left(), view.scale/view.density, view.columns(), view.oversampling, (samples, first, last, elapsed) -> {
+			clearCurveLayer();
+			drawCurve(samples, curveLayer);
+			trace(samples, root);
+			if (first) {
+				GUI.println(String.format("First frame: %.1f ms", elapsed / 1e6));
+			}
+			if (last) {
+				GUI.println(String.format("Final frame: %.1f ms", elapsed / 1e6));
+				printRangeAnalysis(exp, root, view, markRootsAndExtrema(root));
+				pipeline.prefetchNeighbours(root, exp, view);
+			}
+		});
+	}
+	
+	/**
+	 * Has the render farm sample the plot, and draws the curve once it is done. The expression is never
+	 * evaluated in this JVM: there is no Horner form, prefetching, roots or range analysis, and the hover
+	 * readout only interpolates between the farm's samples.
+	 */
+	private void renderOnFarm(String exp, PlotPipeline.View view) {
+		cancelFarmPlot();
+		int myGeneration = farmGeneration;
+		RenderFarm farm = renderFarm;
+		farmPlot = farmDispatcher.submit(() -> {
+			SampleBuffer samples;
+			try {
+				samples = farm.sample(exp, view.fastMath, view.left(), view.scale/view.density, view.columns(), view.oversampling);
+			} catch (CancellationException e) {
+				return; // A newer plot has taken over.
+			} catch (ParseFailedException | UncheckedIOException e) {
+				SwingUtilities.invokeLater(() -> {
+					if (farmGeneration == myGeneration) {GUI.println("Render farm: " + e.getMessage());}
+				});
+				return;
+			}
+			SwingUtilities.invokeLater(() -> {
+				if (farmGeneration != myGeneration) {return;}
+				clearCurveLayer();
+				drawCurve(samples, curveLayer);
+				trace(samples, null);
+				GUI.println("Render farm: " + farm.stats());
+			});
+		});
+	}
+	
+	private void cancelFarmPlot() {
+		farmGeneration++;
+		if (farmPlot != null) {
+			farmPlot.cancel(true);
+			farmPlot = null;
+		}
+	}
+	
+	/**
+	 * Points the hover readout at the curve just drawn; null samples hide it.
+	 */
+	private void trace(SampleBuffer samples, Evaluator root) {
+		hover.setPlot(shown, root, samples, dataSeries, scale, center, gridSize);
+		GUI.repaintOverlay();
+	}
+	
+	private void clearCurveLayer() {
+		for (Shape s : curveLayer) {
+			GUI.deleteShape(s);
+		}
+		curveLayer.clear();
+	}
+	
+	/**
+	 * Draws the curve in device pixels, as Polyline shapes or rasterized into one image.
+	 */
+	private ViewportClipper drawCurve(SampleBuffer samples, List<Shape> layer) {
+		PlotPipeline.View view = view();
+		if (curveRenderer == CurveRenderer.JAVA2D) {
+			return PlotPipeline.clip(samples, view, (xs, ys, n) -> layer.add(GUI.drawPolyline(xs, ys, n, pixelScale)));
+		}
+		// Rasterize every polyline into one image, which is then drawn as a single shape. The polylines are
+		// collected first so that a large image can be rasterized in parallel bands.
+		List<int[]> polylineXs = new ArrayList<int[]>(), polylineYs = new ArrayList<int[]>();
+		ViewportClipper clipper = PlotPipeline.clip(samples, view, (xs, ys, n) -> {
+			polylineXs.add(Arrays.copyOf(xs, n));
+			polylineYs.add(Arrays.copyOf(ys, n));
+		});
+		int size = (int)Math.ceil((gridSize+1) * pixelScale);
+		Raster raster = new Raster(size, size);
+		int lineWidth = (int)Math.max(1, Math.round(GUI.getLineWidth() * pixelScale));
+		if (curveRenderer == CurveRenderer.SUPERSAMPLED) {
+			raster.drawPolylinesSupersampled(polylineXs, polylineYs, GUI.getColor(), lineWidth, SUBSAMPLES);
+		} else {
+			raster.drawPolylines(polylineXs, polylineYs, GUI.getColor(), lineWidth, curveRenderer == CurveRenderer.WU);
+		}
+		layer.add(GUI.drawImg(raster.image(), 0, 0, pixelScale));
+		return clipper;
+	}
+	
+	/**
+	 * Circles the roots (red) and extrema (blue) of the expression that lie within the view.
+	 * @return the extrema.
+	 */
+	private List<Double> markRootsAndExtrema(Evaluator root) {
+		RootFinder finder = RootFinder.solve(root, -center*scale, (gridSize-center)*scale);
+		
+		GUI.setColor(Color.red);
+		for (double x : finder.roots()) {
+			markPoint(x, root.evaluate(x));
+		}
+		GUI.setColor(Color.blue);
+		for (double x : finder.extrema()) {
+			markPoint(x, root.evaluate(x));
+		}
+		GUI.setColor(Color.black);
+		
+		GUI.println("Roots: " + formatPoints(finder.roots()));
+		GUI.println("Extrema: " + formatPoints(finder.extrema()));
+		GUI.println("(" + finder.evaluations() + " evaluations: " + (RootFinder.COARSE_SAMPLES+1) + " in the coarse scan, "
+				+ (finder.evaluations() - RootFinder.COARSE_SAMPLES - 1) + " refining)");
+		return finder.extrema();
+	}
+	
+	/**
+	 * Prints the integral, mean, minimum and maximum of the expression across the view, once they have
+	 * been worked out in the background. Nothing is printed if another plot is made first.
+	 */
+	private void printRangeAnalysis(String exp, Evaluator root, PlotPipeline.View view, List<Double> extrema) {
+		pipeline.analyze(exp, root, view, extrema, analysis -> printRangeAnalysis(analysis, view.left(), view.right()));
+	}
+	
+	private void printRangeAnalysis(RangeAnalysis analysis, double a, double b) {
+		String integral = String.format("%.10g +- %.2g", analysis.integral(), analysis.errorEstimate());
+		if (!analysis.converged()) {integral = "does not converge (estimate " + integral + ")";}
+		GUI.println(String.format("Integral over [%.6g, %.6g]: %s", a, b, integral));
+		GUI.println(String.format("Mean: %.6g, min: %.6g at x = %.6g, max: %.6g at x = %.6g", analysis.mean(),
+				analysis.min(), analysis.minX(), analysis.max(), analysis.maxX()));
+		if (analysis.undefinedFraction() > 0) {
+			GUI.println(String.format("Undefined on about %.1f%% of the view, which counts as 0", analysis.undefinedFraction() * 100));
+		}
+		GUI.println("(" + analysis.evaluations() + " evaluations, " + analysis.cacheHits() + " cached intervals reused)");
+	}
+	
+	private void markPoint(double x, double y) {
+		double px = x/scale + center;
+		double py = center - y/scale;
+		if (py < 0 || py > gridSize) {return;}
+		curveLayer.add(GUI.drawOval(px - 3, py - 3, 6, 6));
+	}
+	
+	private static String formatPoints(List<Double> xs) {
+		StringBuilder sb = new StringBuilder();
+		for (double x : xs) {
+			if (sb.length() > 0) {sb.append(", ");}
+			sb.append(String.format("%.6g", x));
+		}
+		return sb.length() > 0 ? sb.toString() : "none";
+	}
+	
+	/**
+	 * Long (usually machine-generated) expressions go to the arena parser, which has no recursion
+	 * depth limit and uses far less memory per node. Both parsers accept the same grammar.
+	 */
+	static Evaluator parseExp(String exp) {
+		if (exp.length() > LARGE_EXPRESSION) {
+			return ArenaParser.parse(exp);
+		}
+		return Parser.parse(exp);
+	}
+
+	public static void main(String[] args) {
+		ExpressionPlotter expPlotter = new ExpressionPlotter();
+		expPlotter.restoreSession(ExpressionStore.defaultFile());
+		
+		// Any arguments are data series files to overlay.
+		for (String arg : args) {
+			expPlotter.loadDataSeries(new File(arg));
+		}
+	}
+
+}
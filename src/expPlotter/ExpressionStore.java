@@ -0,0 +1,226 @@
+package expPlotter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the last session (the expression, compiled to an ExpressionArena, and the view and settings it was
+ * plotted with) in a small binary file, so the next launch can plot it straight away without parsing.
+ *
+ * File layout (big-endian):
+ *
+ *   int    MAGIC
+ *   short  VERSION
+ *   int    payload length in bytes
+ *   long   CRC32 of the payload
+ *   payload:
+ *     double scale, int oversampling, byte flags (FAST_MATH, HORNER_FMA)
+ *     int length, then the expression text in UTF-8
+ *     int nodes, int maxStack, then the arena arrays: byte ops[nodes], int left[nodes], int right[nodes],
+ *     double values[nodes]
+ *
+ * Reading maps the file and checks the magic number, version, length and checksum, then that the arena
+ * is a well formed program whose operands are the nodes before them, before trusting any of it. Writing goes to a temporary file which then
+ * replaces the old one, so a crash never leaves half a session behind.
+ */
+final class ExpressionStore {
+	static final int MAGIC = 0x46475353; // "FGSS"
+	static final short VERSION = 1;
+	private static final int HEADER_BYTES = 4 + 2 + 4 + 8;
+	private static final byte FAST_MATH = 1;
+	private static final byte HORNER_FMA = 2;
+
+	/**
+	 * A stored session.
+	 */
+	static final class Session {
+		final String expression;
+		final ExpressionArena program;
+		final double scale;
+		final int oversampling;
+		final boolean fastMath;
+		final boolean hornerFma;
+
+		Session(String expression, ExpressionArena program, double scale, int oversampling, boolean fastMath, boolean hornerFma) {
+			this.expression = expression;
+			this.program = program;
+			this.scale = scale;
+			this.oversampling = oversampling;
+			this.fastMath = fastMath;
+			this.hornerFma = hornerFma;
+		}
+	}
+
+	private final File file;
+
+	ExpressionStore(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * The default store, in the user's home directory.
+	 */
+	static File defaultFile() {
+		return new File(System.getProperty("user.home"), ".function-grapher-session");
+	}
+
+	File file() {return file;}
+
+	/**
+	 * Reads the stored session, or returns null if there isn't one.
+	 * @throws IOException if the file exists but can't be read or fails validation.
+	 */
+	Session load() throws IOException {
+		if (!file.isFile()) {return null;}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_BYTES) {throw corrupt("too short");}
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+			if (in.getInt() != MAGIC) {throw corrupt("not a session file");}
+			short version = in.getShort();
+			if (version != VERSION) {throw corrupt("format version " + version + ", expected " + VERSION);}
+			int payloadLength = in.getInt();
+			long checksum = in.getLong();
+			if (payloadLength != length - HEADER_BYTES) {throw corrupt("truncated");}
+			CRC32 crc = new CRC32();
+			crc.update(in.duplicate());
+			if (crc.getValue() != checksum) {throw corrupt("checksum mismatch");}
+
+			try {
+				return readPayload(in);
+			} catch (RuntimeException e) { // e.g. BufferUnderflowException from a bad length field
+				throw corrupt("malformed (" + e + ")");
+			}
+		}
+	}
+
+	private Session readPayload(ByteBuffer in) throws IOException {
+		double scale = in.getDouble();
+		int oversampling = in.getInt();
+		byte flags = in.get();
+		byte[] text = new byte[in.getInt()];
+		in.get(text);
+
+		int nodes = in.getInt();
+		int maxStack = in.getInt();
+		if (nodes <= 0 || nodes > in.remaining()) {throw corrupt("bad node count " + nodes);}
+		byte[] ops = new byte[nodes];
+		int[] left = new int[nodes];
+		int[] right = new int[nodes];
+		double[] values = new double[nodes];
+		in.get(ops);
+		in.asIntBuffer().get(left);
+		in.position(in.position() + 4 * nodes);
+		in.asIntBuffer().get(right);
+		in.position(in.position() + 4 * nodes);
+		in.asDoubleBuffer().get(values);
+		in.position(in.position() + 8 * nodes);
+		if (in.hasRemaining()) {throw corrupt("trailing bytes");}
+
+		validate(ops, left, right, maxStack);
+		if (!(scale > 0) || oversampling < 1) {throw corrupt("bad view");}
+		return new Session(new String(text, StandardCharsets.UTF_8), new ExpressionArena(ops, left, right, values, maxStack),
+				scale, oversampling, (flags & FAST_MATH) != 0, (flags & HORNER_FMA) != 0);
+	}
+
+	/**
+	 * Checks that the arena evaluates without going outside its stack or the built-in functions, by running
+	 * its stack discipline with the node each value came from in place of the value. Each node's operands
+	 * (left, and right for binary operations) must be the nodes whose values it takes off the stack, which
+	 * keeps them within [0, i) of their node i, so code that follows them (e.g. ExpressionArena.append)
+	 * walks the same tree as evaluation.
+	 */
+	private void validate(byte[] ops, int[] left, int[] right, int maxStack) throws IOException {
+		int[] stack = new int[ops.length];
+		int sp = 0, deepest = 0;
+		for (int i = 0; i < ops.length; i++) {
+			switch (ops[i]) {
+			case ExpressionArena.NUMBER:
+			case ExpressionArena.VARIABLE:
+				stack[sp++] = i;
+				break;
+			case ExpressionArena.ADD:
+			case ExpressionArena.SUBTRACT:
+			case ExpressionArena.MULTIPLY:
+			case ExpressionArena.DIVIDE:
+			case ExpressionArena.POWER:
+				if (sp < 2) {throw corrupt("stack underflow at node " + i);}
+				if (left[i] != stack[sp-2] || right[i] != stack[sp-1]) {throw corrupt("bad operands at node " + i);}
+				stack[--sp - 1] = i;
+				break;
+			case ExpressionArena.NEGATE:
+				if (sp < 1) {throw corrupt("stack underflow at node " + i);}
+				if (left[i] != stack[sp-1]) {throw corrupt("bad operand at node " + i);}
+				stack[sp-1] = i;
+				break;
+			case ExpressionArena.FUNCTION:
+				if (sp < 1) {throw corrupt("stack underflow at node " + i);}
+				if (left[i] != stack[sp-1]) {throw corrupt("bad operand at node " + i);}
+				if (right[i] < 0 || right[i] >= BuiltinFunction.values().length) {throw corrupt("unknown function at node " + i);}
+				stack[sp-1] = i;
+				break;
+			default:
+				// Includes PARAMETER: animations aren't stored.
+				throw corrupt("unknown operation " + ops[i] + " at node " + i);
+			}
+			deepest = Math.max(deepest, sp);
+		}
+		if (sp != 1) {throw corrupt("program leaves " + sp + " values");}
+		if (deepest > maxStack) {throw corrupt("stack deeper than recorded");}
+	}
+
+	/**
+	 * Replaces the stored session. The program must not use a Parameter.
+	 */
+	void save(Session session) throws IOException {
+		ExpressionArena program = session.program;
+		byte[] text = session.expression.getBytes(StandardCharsets.UTF_8);
+		int nodes = program.size;
+		int payloadLength = 8 + 4 + 1 + 4 + text.length + 4 + 4 + nodes * (1 + 4 + 4 + 8);
+
+		ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+		payload.putDouble(session.scale);
+		payload.putInt(session.oversampling);
+		payload.put((byte) ((session.fastMath ? FAST_MATH : 0) | (session.hornerFma ? HORNER_FMA : 0)));
+		payload.putInt(text.length);
+		payload.put(text);
+		payload.putInt(nodes);
+		payload.putInt(program.maxStack);
+		payload.put(program.ops, 0, nodes);
+		payload.asIntBuffer().put(program.left, 0, nodes);
+		payload.position(payload.position() + 4 * nodes);
+		payload.asIntBuffer().put(program.right, 0, nodes);
+		payload.position(payload.position() + 4 * nodes);
+		payload.asDoubleBuffer().put(program.values, 0, nodes);
+		payload.position(payload.position() + 8 * nodes);
+		payload.flip();
+
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putShort(VERSION).putInt(payloadLength).putLong(crc.getValue());
+		header.flip();
+
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining() || payload.hasRemaining()) {
+				channel.write(new ByteBuffer[] {header, payload});
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private IOException corrupt(String reason) {
+		return new IOException(file.getName() + ": " + reason);
+	}
+}
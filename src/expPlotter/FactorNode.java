@@ -0,0 +1,49 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class FactorNode implements ParseNode {
+	
+	ParseNode child;
+	boolean negative = false;
+	
+	@Override
+	public double evaluate(double x) {
+		if (negative) {
+			return -child.evaluate(x);
+		} else {
+			return child.evaluate(x);
+		}
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		if (negative) {
+			return child.evaluate(x).negate();
+		} else {
+			return child.evaluate(x);
+		}
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		if (negative) {
+			return child.evaluate(x).negate();
+		} else {
+			return child.evaluate(x);
+		}
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		
+		while (Parser.checkEat(Parser.MINUS, s)) {
+			negative = !negative;
+		}
+		
+		child = new BaseNode().parse(s);
+		
+		return this;
+	}
+	
+}
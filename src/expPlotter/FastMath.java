@@ -0,0 +1,76 @@
+package expPlotter;
+
+/**
+ * Fast approximations of the transcendental functions used by BuiltinFunction.
+ * They trade a little accuracy (well below a pixel at any zoom level worth plotting at) for speed.
+ */
+final class FastMath {
+	private static final int SIN_BITS = 12;
+	private static final int SIN_SIZE = 1 << SIN_BITS;
+	private static final int SIN_MASK = SIN_SIZE - 1;
+	private static final double TWO_PI = 2 * Math.PI;
+	private static final double TABLE_PER_RADIAN = SIN_SIZE / TWO_PI;
+
+	// One extra entry so interpolation at the last index doesn't have to wrap.
+	private static final double[] SIN_TABLE = new double[SIN_SIZE + 1];
+	static {
+		for (int i = 0; i <= SIN_SIZE; i++) {
+			SIN_TABLE[i] = StrictMath.sin(i / TABLE_PER_RADIAN);
+		}
+	}
+
+	private static final double LN2 = Math.log(2);
+	private static final double INV_LN2 = 1 / LN2;
+	private static final double SQRT2 = Math.sqrt(2);
+
+	private FastMath() {}
+
+	/**
+	 * Linear interpolation in a 4096 entry table. The error of linear interpolation is at most
+	 * h^2/8 * max|sin''| = (2pi/4096)^2 / 8, about 3e-7.
+	 */
+	static double sin(double x) {
+		if (!(Math.abs(x) < 1e6)) {return StrictMath.sin(x);} // Large arguments lose the fraction we interpolate with.
+		double t = x * TABLE_PER_RADIAN;
+		double floor = Math.floor(t);
+		int i = (int)((long)floor & SIN_MASK);
+		double frac = t - floor;
+		return SIN_TABLE[i] + (SIN_TABLE[i + 1] - SIN_TABLE[i]) * frac;
+	}
+
+	static double cos(double x) {
+		return sin(x + Math.PI / 2);
+	}
+
+	/**
+	 * exp(x) = 2^k * exp(r) where k = round(x / ln2) and |r| <= ln2 / 2.
+	 * exp(r) uses its Taylor series to r^6, whose truncation error is at most 0.347^7 / 7!, a relative error under 2e-7.
+	 */
+	static double exp(double x) {
+		if (!(Math.abs(x) < 700)) {return StrictMath.exp(x);} // Overflow, underflow and NaN.
+		double k = Math.rint(x * INV_LN2);
+		double r = x - k * LN2;
+		double p = 1 + r*(1 + r*(1.0/2 + r*(1.0/6 + r*(1.0/24 + r*(1.0/120 + r*(1.0/720))))));
+		return Double.longBitsToDouble((long)(k + 1023) << 52) * p;
+	}
+
+	/**
+	 * log(x) = e*ln2 + log(m) where x = m * 2^e and m is in [sqrt(1/2), sqrt(2)).
+	 * log(m) = 2*atanh(t) with t = (m-1)/(m+1), so |t| <= 0.172, summed to t^9. The first dropped term
+	 * is 2t^11/11, under 1e-9.
+	 */
+	static double log(double x) {
+		if (!(x >= Double.MIN_NORMAL) || x == Double.POSITIVE_INFINITY) {return StrictMath.log(x);}
+		long bits = Double.doubleToRawLongBits(x);
+		int e = (int)((bits >>> 52) & 0x7ff) - 1023;
+		double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+		if (m >= SQRT2) {
+			m /= 2;
+			e++;
+		}
+		double t = (m - 1) / (m + 1);
+		double t2 = t*t;
+		double series = t*(2 + t2*(2.0/3 + t2*(2.0/5 + t2*(2.0/7 + t2*(2.0/9)))));
+		return e * LN2 + series;
+	}
+}
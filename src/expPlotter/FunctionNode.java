@@ -0,0 +1,41 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class FunctionNode implements ParseNode {
+	
+	final BuiltinFunction function;
+	final boolean fast;
+	ParseNode argument;
+	
+	FunctionNode(BuiltinFunction function) {
+		this.function = function;
+		this.fast = Parser.fastMath;
+	}
+	
+	@Override
+	public double evaluate(double x) {
+		return function.evaluate(argument.evaluate(x), fast);
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		return function.evaluate(argument.evaluate(x), fast);
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		return function.evaluate(argument.evaluate(x));
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		// The function name has already been consumed by PrimaryNode.
+		Parser.requireEat(Parser.OPEN_BRACKET, "FUNCTION", s);
+		argument = new ExpNode().parse(s);
+		Parser.requireEat(Parser.CLOSE_BRACKET, "FUNCTION", s);
+		
+		return this;
+	}
+	
+}
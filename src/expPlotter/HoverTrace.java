@@ -0,0 +1,182 @@
+package expPlotter;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.util.List;
+
+import sGUI.Overlay;
+
+/**
+ * The readout that follows the mouse: at the x under the pointer, a marker on every curve (the expression
+ * and each data series) and a label with its (x, y).
+ *
+ * Moving the mouse only looks values up: the expression's from the samples of its last plot, interpolated
+ * between the two columns either side of x, and each data series by binary search between its points.
+ * Once the mouse rests, refine() replaces the expression's value with one evaluated exactly at x.
+ *
+ * It is drawn as an Overlay, so following the mouse repaints only the readout's area, and allocates no shapes.
+ * Plots aren't always made on the event dispatch thread (a restored session is plotted from main), so its
+ * methods are synchronized.
+ */
+final class HoverTrace implements Overlay {
+	private static final int MARKER = 7; // px across
+	private static final int OFFSET = 12; // px from the pointer to the label
+	private static final int PADDING = 4;
+	private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+	private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+	private static final Color BACKGROUND = new Color(255, 255, 255, 220);
+
+	private final Color curveColor, dataColor;
+
+	// The plot being traced.
+	private String expression;
+	private Evaluator root;
+	private SampleBuffer samples;
+	private List<DataSeries> series;
+	private double scale;
+	private int center, gridSize;
+
+	// The readout: the pointer, and a value per curve (the expression first).
+	private boolean visible;
+	private double pointerX, pointerY;
+	private double x;
+	private double[] ys = new double[1];
+	private String[] labels = new String[1];
+	private int curves;
+	private final Rectangle bounds = new Rectangle();
+
+	HoverTrace(Color curveColor, Color dataColor) {
+		this.curveColor = curveColor;
+		this.dataColor = dataColor;
+	}
+
+	/**
+	 * Traces a new plot, moving the readout to match if it is showing.
+	 * @param root : the expression, for refine(), or null if only its samples are at hand.
+	 */
+	synchronized void setPlot(String expression, Evaluator root, SampleBuffer samples, List<DataSeries> series,
+			double scale, int center, int gridSize) {
+		this.expression = expression;
+		this.root = root;
+		this.samples = samples;
+		this.series = series;
+		this.scale = scale;
+		this.center = center;
+		this.gridSize = gridSize;
+		if (visible) {hover(pointerX, pointerY);}
+	}
+
+	/**
+	 * Moves the readout to the pointer at (px, py), in drawing coordinates; NaN hides it.
+	 */
+	synchronized void hover(double px, double py) {
+		pointerX = px;
+		pointerY = py;
+		visible = samples != null && px >= 0 && px <= gridSize && py >= 0 && py <= gridSize;
+		if (!visible) {return;}
+
+		x = (px - center) * scale;
+		curves = 1 + series.size();
+		if (ys.length < curves) {
+			ys = new double[curves];
+			labels = new String[curves];
+		}
+		ys[0] = interpolate(x);
+		for (int i = 1; i < curves; i++) {
+			ys[i] = series.get(i - 1).valueAt(x);
+		}
+		layOut();
+	}
+
+	/**
+	 * Evaluates the expression exactly at the readout's x, in place of the value from the samples.
+	 */
+	synchronized void refine() {
+		if (!visible || root == null) {return;}
+		ys[0] = root.evaluate(x);
+		layOut();
+	}
+
+	/**
+	 * The expression's value at x from the samples: the middle of each column's range of values, linearly
+	 * interpolated between the columns either side.
+	 */
+	private double interpolate(double x) {
+		double c = (x - samples.x0) / samples.dx;
+		int i = (int) Math.max(0, Math.min(samples.columns - 2, Math.floor(c)));
+		double t = Math.max(0, Math.min(1, c - i));
+		double a = (samples.min[i] + samples.max[i]) / 2;
+		if (samples.columns == 1) {return a;}
+		double b = (samples.min[i+1] + samples.max[i+1]) / 2;
+		if (Double.isNaN(a)) {return t >= 0.5 ? b : Double.NaN;}
+		if (Double.isNaN(b)) {return t < 0.5 ? a : Double.NaN;}
+		return a + (b - a) * t;
+	}
+
+	/**
+	 * Writes the labels and works out the area the readout covers.
+	 */
+	private void layOut() {
+		int px = (int) Math.round(pointerX);
+		bounds.setBounds(px, (int) Math.round(pointerY), 0, 0);
+		double width = 0;
+		for (int i = 0; i < curves; i++) {
+			String name = i == 0 ? expression : series.get(i - 1).name();
+			if (name.length() > 30) {name = name.substring(0, 30) + "...";}
+			labels[i] = String.format("%s: (%.6g, %.6g)", name, x, ys[i]);
+			width = Math.max(width, FONT.getStringBounds(labels[i], FRC).getWidth());
+
+			double py = center - ys[i] / scale;
+			if (py >= 0 && py <= gridSize) {
+				bounds.add(new Rectangle(px - MARKER/2, (int) Math.round(py) - MARKER/2, MARKER + 1, MARKER + 1));
+			}
+		}
+		bounds.add(labelBox((int) Math.ceil(width)));
+	}
+
+	private Rectangle labelBox(int textWidth) {
+		int lineHeight = FONT.getSize() + 2;
+		int w = textWidth + 2 * PADDING, h = curves * lineHeight + 2 * PADDING;
+		// Keep the label on the side of the pointer nearer the middle of the plot.
+		int left = pointerX < center ? (int) pointerX + OFFSET : (int) pointerX - OFFSET - w;
+		int top = pointerY < center ? (int) pointerY + OFFSET : (int) pointerY - OFFSET - h;
+		return new Rectangle(left, top, w, h);
+	}
+
+	@Override
+	public synchronized Rectangle bounds() {
+		return visible ? bounds : null;
+	}
+
+	@Override
+	public synchronized void paint(Graphics2D g) {
+		if (!visible) {return;}
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setFont(FONT);
+		int px = (int) Math.round(pointerX);
+		double width = 0;
+		for (int i = 0; i < curves; i++) {
+			double py = center - ys[i] / scale;
+			if (py >= 0 && py <= gridSize) {
+				g.setColor(i == 0 ? curveColor : dataColor);
+				g.fillOval(px - MARKER/2, (int) Math.round(py) - MARKER/2, MARKER, MARKER);
+			}
+			width = Math.max(width, FONT.getStringBounds(labels[i], FRC).getWidth());
+		}
+
+		Rectangle box = labelBox((int) Math.ceil(width));
+		g.setColor(BACKGROUND);
+		g.fillRect(box.x, box.y, box.width, box.height);
+		g.setColor(Color.gray);
+		g.drawRect(box.x, box.y, box.width - 1, box.height - 1);
+		g.setColor(Color.black);
+		int lineHeight = FONT.getSize() + 2;
+		for (int i = 0; i < curves; i++) {
+			g.drawString(labels[i], box.x + PADDING, box.y + PADDING + (i + 1) * lineHeight - 3);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package expPlotter;
+
+/**
+ * Checks that ArenaParser.parseIncrementally gives the same arena as parsing from scratch: a long expression
+ * (long enough to have many checkpoints) is edited by inserting, deleting and replacing text at its start, in
+ * its middle (between terms, and inside a deeply nested group) and at its end, and each edit is parsed
+ * incrementally from the parse before it and with ArenaParser.parse. The two arenas must hold the same nodes
+ * and evaluate the same, and the incremental parse must have reused some nodes. The edits are checked both
+ * from the unedited expression and one after another.
+ *
+ * Usage: java expPlotter.IncrementalParseCheck
+ */
+final class IncrementalParseCheck {
+	private static final int TERMS = 300;
+	private static final int NESTING = 40;
+
+	/**
+	 * Replaces length characters at the given position with text.
+	 */
+	private static final class Edit {
+		final String what;
+		final int at, length;
+		final String text;
+
+		Edit(String what, int at, int length, String text) {
+			this.what = what;
+			this.at = at;
+			this.length = length;
+			this.text = text;
+		}
+
+		String apply(String exp) {
+			return exp.substring(0, at) + text + exp.substring(at + length);
+		}
+	}
+
+	public static void main(String[] args) {
+		StringBuilder b = new StringBuilder("x");
+		for (int k = 1; k <= TERMS; k++) {
+			b.append("+sin(x+").append(k).append(")*(x-").append(k).append(")/(").append(k).append("+1)");
+			if (k == TERMS/2) {
+				b.append("+");
+				for (int d = 0; d < NESTING; d++) {b.append("(x+");}
+				b.append("1");
+				for (int d = 0; d < NESTING; d++) {b.append(")");}
+			}
+		}
+		String exp = b.toString();
+		String middleTerm = "+sin(x+" + TERMS/3 + ")*(x-" + TERMS/3 + ")/(" + TERMS/3 + "+1)";
+		String lastTerm = "+sin(x+" + TERMS + ")*(x-" + TERMS + ")/(" + TERMS + "+1)";
+		int middle = exp.indexOf(middleTerm), nested = exp.indexOf("1)))"), end = exp.length();
+
+		// Positions are in the unedited expression; when chained, the edits are applied from the end backwards.
+		Edit[] edits = {
+				new Edit("replace at end", end - lastTerm.length(), lastTerm.length(), "+log(abs(x))"),
+				new Edit("insert at end", end, 0, "+x^2"),
+				new Edit("delete at end", end - lastTerm.length(), lastTerm.length(), ""),
+				new Edit("replace inside nested group", nested, 1, "exp(-x)"),
+				new Edit("insert inside nested group", nested, 0, "2*"),
+				new Edit("delete inside nested group", nested - 2, 2, ""),
+				new Edit("replace in middle", middle + 1, 3, "cos"),
+				new Edit("insert in middle", middle, 0, "+exp(-x^2)"),
+				new Edit("delete in middle", middle, middleTerm.length(), ""),
+				new Edit("replace at start", 0, 1, "cos(x)"),
+				new Edit("insert at start", 0, 0, "2*"),
+				new Edit("delete at start", 0, 2, ""),
+		};
+
+		int failures = 0;
+		for (boolean fastMath : new boolean[] {false, true}) {
+			ArenaParser.Memo original = ArenaParser.parseIncrementally(exp, fastMath, null);
+			failures += compare(original, exp, fastMath, "first parse");
+			for (Edit edit : edits) {
+				ArenaParser.Memo memo = ArenaParser.parseIncrementally(edit.apply(exp), fastMath, original);
+				failures += compare(memo, edit.apply(exp), fastMath, edit.what);
+				// Thousands of characters either side of every edit are unchanged, so some nodes needn't be parsed again.
+				if (memo.reusedNodes == 0) {
+					System.out.println("  " + edit.what + (fastMath ? " (fast math)" : "") + ": nothing reused");
+					failures++;
+				}
+			}
+
+			// Each edit parsed from the one before. Only one of each group of three (at the same place) is applied.
+			ArenaParser.Memo memo = original;
+			String edited = exp;
+			for (int i = 0; i < edits.length; i += 3) {
+				edited = edits[i].apply(edited);
+				memo = ArenaParser.parseIncrementally(edited, fastMath, memo);
+				failures += compare(memo, edited, fastMath, "then " + edits[i].what);
+			}
+
+			// A failed parse leaves the last one usable.
+			try {
+				ArenaParser.parseIncrementally(exp.substring(0, middle) + "+*" + exp.substring(middle), fastMath, original);
+				System.out.println("  Expected a misplaced operator to fail the parse");
+				failures++;
+			} catch (ParseFailedException e) {
+				failures += compare(ArenaParser.parseIncrementally(edits[7].apply(exp), fastMath, original),
+						edits[7].apply(exp), fastMath, "insert in middle after a failed parse");
+			}
+		}
+
+		System.out.println(exp.length() + " characters, " + edits.length + " edits: " + failures + " mismatched");
+		if (failures > 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Compares an incremental parse of exp with a parse from scratch, node by node and by value.
+	 */
+	private static int compare(ArenaParser.Memo memo, String exp, boolean fastMath, String what) {
+		ExpressionArena incremental = memo.arena, fresh = ArenaParser.parse(exp, fastMath);
+		String problem = null;
+		if (!memo.exp.equals(exp)) {
+			problem = "the memo is of a different expression";
+		} else if (incremental.size != fresh.size || incremental.maxStack != fresh.maxStack) {
+			problem = incremental.size + " nodes (stack " + incremental.maxStack + ") instead of " + fresh.size
+					+ " (stack " + fresh.maxStack + ")";
+		} else {
+			for (int i = 0; i < fresh.size && problem == null; i++) {
+				if (incremental.ops[i] != fresh.ops[i] || incremental.left[i] != fresh.left[i]
+						|| incremental.right[i] != fresh.right[i] || Double.compare(incremental.values[i], fresh.values[i]) != 0) {
+					problem = "node " + i + " differs";
+				}
+			}
+			for (double x = -5; x <= 5 && problem == null; x += 0.25) {
+				if (Double.compare(incremental.evaluate(x), fresh.evaluate(x)) != 0) {problem = "the value at " + x + " differs";}
+			}
+		}
+		if (problem == null) {return 0;}
+		System.out.println("  " + what + (fastMath ? " (fast math)" : "") + " (" + memo.reusedNodes + " nodes reused): " + problem);
+		return 1;
+	}
+}
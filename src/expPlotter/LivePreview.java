@@ -0,0 +1,105 @@
+package expPlotter;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Parses and samples the expression being typed on a background thread, and hands the result to the event
+ * dispatch thread, so the plot follows the text field without waiting for Enter.
+ *
+ * Long expressions are parsed incrementally (see ArenaParser.parseIncrementally) against the last one that
+ * parsed, so an edit only costs about as much as the text around it. Text that doesn't parse is skipped,
+ * leaving the last curve on screen. As in ProgressiveRenderer, starting a new preview cancels the one in
+ * progress, and a cancelled preview is never shown.
+ */
+final class LivePreview {
+
+	/**
+	 * Samples a parsed expression. Runs on the background thread.
+	 */
+	interface Sampler {
+		SampleBuffer sample(Evaluator root);
+	}
+
+	/**
+	 * Receives the preview on the event dispatch thread.
+	 */
+	interface Listener {
+		/**
+		 * @param reusedNodes : how many of the expression's nodes were reused from the last parse (0 if not parsed incrementally).
+		 */
+		void show(SampleBuffer samples, long parseNanos, int reusedNodes, int nodes);
+	}
+
+	private final ExecutorService executor;
+	private Future<?> current;
+	// Incremented on every preview and cancel; a preview is only shown if its generation is still the latest.
+	private volatile int generation;
+	// The last long expression that parsed. Only used on the background thread.
+	private ArenaParser.Memo memo;
+
+	LivePreview() {
+		this.executor = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "Live preview");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Starts previewing exp, cancelling any preview in progress.
+	 */
+	synchronized void preview(String exp, boolean fastMath, Sampler sampler, Listener listener) {
+		cancel();
+		int myGeneration = generation;
+
+		current = executor.submit(() -> {
+			long start = System.nanoTime();
+			Evaluator root;
+			int reused = 0, nodes = 0;
+			try {
+				if (exp.length() > ExpressionPlotter.LARGE_EXPRESSION) {
+					memo = ArenaParser.parseIncrementally(exp, fastMath, memo);
+					root = memo.arena;
+					reused = memo.reusedNodes;
+					nodes = memo.arena.size;
+				} else {
+					// The recursive parser keeps its settings in static fields.
+					synchronized (Parser.class) {
+						Parser.fastMath = fastMath;
+						root = Parser.parse(exp);
+					}
+				}
+			} catch (ParseFailedException e) {
+				return; // Probably still being typed.
+			}
+			long parseNanos = System.nanoTime() - start;
+			if (generation != myGeneration) {return;}
+
+			SampleBuffer samples;
+			try {
+				samples = sampler.sample(root);
+			} catch (CancellationException e) {
+				return; // A newer preview has taken over.
+			}
+			int reusedNodes = reused, allNodes = nodes;
+			SwingUtilities.invokeLater(() -> {
+				if (generation == myGeneration) {
+					listener.show(samples, parseNanos, reusedNodes, allNodes);
+				}
+			});
+		});
+	}
+
+	synchronized void cancel() {
+		generation++;
+		if (current != null) {
+			current.cancel(true);
+			current = null;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class NumberNode implements ParseNode {
+	
+	double number;
+	
+	@Override
+	public double evaluate(double x) {
+		return number;
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		return Dual.constant(number);
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		return new DoubleDouble(number);
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		// First, parse the integer part of this number.
+		String num = Parser.requireSpit(Parser.INTEGER, "NUMBER", s);
+		while (s.hasNext(Parser.INTEGER)) {
+			num += s.next();
+		}
+		
+		// Next, parse the decimal part of this number if it exists.
+		String decimal = "";
+		if (Parser.checkEat(Parser.DECIMAL, s)) {
+			decimal = ".";
+			
+			// There must now be atleast one number after the decimal place.
+			decimal += Parser.requireSpit(Parser.INTEGER, "NUMBER", s);
+			
+			// Concat until we run out of digit characters.
+			while (s.hasNext(Parser.INTEGER)) {
+				decimal += s.next();
+			}
+		}
+		
+		// Now we convert the number from String to a double.
+		this.number = Double.valueOf(num + decimal);
+		
+		return this;
+	}
+	
+}
@@ -0,0 +1,15 @@
+package expPlotter;
+
+/**
+ * A named value that an expression can refer to besides its variable, e.g. the time t when animating.
+ * Expressions read the current value every time they are evaluated, so changing it re-shapes the curve
+ * without re-parsing.
+ */
+final class Parameter {
+	final String name;
+	volatile double value;
+	
+	Parameter(String name) {
+		this.name = name;
+	}
+}
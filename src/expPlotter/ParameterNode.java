@@ -0,0 +1,34 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class ParameterNode implements ParseNode {
+	
+	final Parameter parameter;
+	
+	ParameterNode(Parameter parameter) {
+		this.parameter = parameter;
+	}
+	
+	@Override
+	public double evaluate(double x) {
+		return parameter.value;
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		return Dual.constant(parameter.value);
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		return new DoubleDouble(parameter.value);
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		Parser.requireEat(parameter.name, "PARAMETER", s);
+		return this;
+	}
+	
+}
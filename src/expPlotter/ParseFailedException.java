@@ -0,0 +1,18 @@
+package expPlotter;
+
+class ParseFailedException extends RuntimeException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public ParseFailedException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
+	
+	public ParseFailedException(String msg) {
+		super(msg);
+	}
+	
+	public ParseFailedException(Throwable cause) {
+		super(cause);
+	}
+}
@@ -0,0 +1,10 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+interface ParseNode extends Evaluator {
+	double evaluate(double x);
+	Dual evaluate(Dual x);
+	DoubleDouble evaluate(DoubleDouble x);
+	ParseNode parse(Scanner s);
+}
@@ -0,0 +1,268 @@
+package expPlotter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Everything a plot computes, without drawing it: parsing, choosing how to evaluate the expression,
+ * sampling (or taking samples prefetched after the last zoom), clipping the curve to the view, range
+ * analysis, prefetching the neighbouring zoom levels and saving the session. ExpressionPlotter draws
+ * what it makes; SessionReplay's headless target runs the same steps and throws the results away.
+ *
+ * Range analysis and saving run on their own threads. Their results are handed over with the Executor
+ * given to the constructor (e.g. SwingUtilities::invokeLater), and an analysis is only handed over if no
+ * other has been started or cancelled since.
+ */
+final class PlotPipeline {
+	private static final long PREFETCH_BUDGET = 16 << 20; // bytes
+
+	/**
+	 * The view and settings of one plot. Work queued for another thread takes one of these, so it is done
+	 * with the settings it was queued with, whatever they are by the time it runs.
+	 */
+	static final class View {
+		final double scale; // Units of x per unit of the plot
+		final int size; // The plot is size+1 units across
+		final double density; // Device pixels per unit
+		final int oversampling;
+		final boolean fastMath, hornerFma;
+
+		View(double scale, int size, double density, int oversampling, boolean fastMath, boolean hornerFma) {
+			this.scale = scale;
+			this.size = size;
+			this.density = density;
+			this.oversampling = oversampling;
+			this.fastMath = fastMath;
+			this.hornerFma = hornerFma;
+		}
+
+		View withScale(double scale) {
+			return new View(scale, size, density, oversampling, fastMath, hornerFma);
+		}
+
+		int center() {return size/2;}
+
+		/** The number of device pixel columns across the plot, which is how many columns are sampled. */
+		int columns() {return (int)Math.round(size * density) + 1;}
+
+		/** The x at the left edge. */
+		double left() {return -center()*scale;}
+
+		/** The x at the right edge. */
+		double right() {return (size-center())*scale;}
+
+		/**
+		 * Identifies the samples of exp in this view at any scale, for the prefetcher.
+		 */
+		String key(String exp) {
+			return exp + "|" + oversampling + "|" + fastMath + "|" + hornerFma + "|" + size + "|" + density;
+		}
+	}
+
+	private final Executor deliver;
+
+	// Samples for the zoom levels either side of the current one, computed while the user isn't doing anything.
+	private final ZoomPrefetcher prefetcher = new ZoomPrefetcher(PREFETCH_BUDGET);
+
+	// Quadrature results over dyadic intervals of the current expression, reused after a zoom.
+	private final RangeAnalysis.Cache analysisCache = new RangeAnalysis.Cache();
+	private final ExecutorService rangeAnalyzer = daemon("Range analysis");
+	private volatile int analysisGeneration;
+
+	// Where the last plot is kept for the next launch; null to keep nothing. The expression is compiled for it
+	// once each time it (or fast math) changes, and written whenever the view or settings do.
+	private ExpressionStore store;
+	private String compiledKey;
+	private ExpressionArena compiled;
+	private ExpressionStore.Session saved;
+	private final ExecutorService sessionSaver = daemon("Session saver");
+
+	/**
+	 * @param deliver : runs the callbacks from the background threads, e.g. on the event dispatch thread.
+	 */
+	PlotPipeline(Executor deliver) {
+		this.deliver = deliver;
+	}
+
+	private static ExecutorService daemon(String name) {
+		return Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, name);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	ZoomPrefetcher prefetcher() {return prefetcher;}
+
+	/**
+	 * Parses exp with built-in functions in their fast versions or not, and compiles it for the store if
+	 * there is one.
+	 */
+	Evaluator parse(String exp, boolean fastMath) {
+		Evaluator root;
+		synchronized (Parser.class) { // LivePreview parses on its own thread too.
+			Parser.fastMath = fastMath;
+			root = ExpressionPlotter.parseExp(exp);
+		}
+		if (store != null) {compileForStore(exp, fastMath, root);}
+		return root;
+	}
+
+	/**
+	 * Polynomials and rational functions are evaluated from their coefficients with Horner's scheme;
+	 * everything else is evaluated through the parse tree.
+	 */
+	static Evaluator evaluatorFor(Evaluator root, View view) {
+		if (!(root instanceof ParseNode)) {return root;}
+		RationalFunction rational = RationalFunction.analyze((ParseNode) root, view.hornerFma);
+		// The expanded form must match the tree to within a thousandth of a pixel across the view.
+		if (rational == null || !rational.agreesWith((ParseNode) root, view.left(), view.right(), view.scale*1e-3)) {
+			return root;
+		}
+		return rational;
+	}
+
+	/**
+	 * Samples f once per device pixel column of the view (several times per column when oversampling).
+	 */
+	static SampleBuffer sample(Evaluator f, View view) {
+		return CurveSampler.sample(f, view.left(), view.scale/view.density, view.columns(), view.oversampling);
+	}
+
+	/**
+	 * The samples of exp in view if they have been prefetched, or null.
+	 */
+	SampleBuffer prefetched(String exp, View view) {
+		return prefetcher.take(view.key(exp), view.scale);
+	}
+
+	/**
+	 * Now the plot has settled, prepares the neighbouring zoom levels in the background.
+	 */
+	void prefetchNeighbours(Evaluator root, String exp, View view) {
+		View in = view.withScale(view.scale / ExpressionPlotter.ZOOM_FACTOR), out = view.withScale(view.scale * ExpressionPlotter.ZOOM_FACTOR);
+		prefetcher.prefetch(view.key(exp), in.scale, view.columns(), () -> sample(evaluatorFor(root, in), in));
+		prefetcher.prefetch(view.key(exp), out.scale, view.columns(), () -> sample(evaluatorFor(root, out), out));
+	}
+
+	/**
+	 * Clips the sampled curve to the view and passes it to the sink as polylines in device pixels, using at
+	 * most 4 vertices per column (first, min, max and last) however many samples were taken in it.
+	 */
+	static ViewportClipper clip(SampleBuffer samples, View view, ViewportClipper.Sink sink) {
+		double edge = view.size * view.density;
+		ViewportClipper clipper = new ViewportClipper(0, 0, edge, edge, samples.columns * 4, sink);
+
+		for (int col = 0; col < samples.columns; col++) {
+			// A column without a value is a gap in the curve.
+			if (!samples.hasValue(col)) {
+				clipper.gap();
+				continue;
+			}
+
+			// Coarse passes have fewer, wider columns, so work out which pixel column this is.
+			double px = Math.round((samples.x(col)/view.scale + view.center()) * view.density);
+
+			// Visit whichever extreme is nearer the first sample first, so the column is a single vertical sweep.
+			double first = samples.first[col];
+			boolean minFirst = Math.abs(first - samples.min[col]) <= Math.abs(first - samples.max[col]);
+			addVertex(clipper, view, px, first);
+			addVertex(clipper, view, px, minFirst ? samples.min[col] : samples.max[col]);
+			addVertex(clipper, view, px, minFirst ? samples.max[col] : samples.min[col]);
+			addVertex(clipper, view, px, samples.last[col]);
+		}
+		clipper.finish();
+		return clipper;
+	}
+
+	private static void addVertex(ViewportClipper clipper, View view, double px, double y) {
+		// A NaN (no value) stays NaN, so the clipper ends the polyline there rather than joining across it.
+		clipper.vertex(px, (view.center() - y/view.scale) * view.density);
+	}
+
+	/**
+	 * Works out the integral, mean, minimum and maximum of root across the view in the background, and
+	 * hands them to done unless another analysis is started, or this one cancelled, first.
+	 * @param extrema : root's extrema in the view, e.g. from RootFinder.
+	 */
+	void analyze(String exp, Evaluator root, View view, List<Double> extrema, Consumer<RangeAnalysis> done) {
+		String function = exp + "|" + view.fastMath;
+		int myGeneration = ++analysisGeneration;
+		rangeAnalyzer.submit(() -> {
+			if (analysisGeneration != myGeneration) {return;}
+			// Switched here rather than by the caller, so an analysis still running can't cache the old
+			// function's estimates under the new one.
+			analysisCache.switchTo(function);
+			RangeAnalysis analysis = RangeAnalysis.analyze(root, view.left(), view.right(), extrema, analysisCache);
+			deliver.execute(() -> {
+				if (analysisGeneration == myGeneration) {done.accept(analysis);}
+			});
+		});
+	}
+
+	/**
+	 * Drops the analysis in progress, e.g. because another plot has replaced it.
+	 */
+	void cancelAnalysis() {
+		analysisGeneration++;
+	}
+
+	/**
+	 * Saves every plot to the store from now on.
+	 */
+	void keepSessions(ExpressionStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Takes a session restored from the store as saved, so it isn't written straight back.
+	 */
+	void restored(ExpressionStore.Session session) {
+		compiledKey = session.expression + "|" + session.fastMath;
+		compiled = session.program;
+		saved = session;
+	}
+
+	/**
+	 * Keeps exp, compiled, with the view's scale and settings so the next launch can show it without parsing.
+	 * The file is only rewritten if something has changed since the last save, and then on its own thread.
+	 */
+	void save(String exp, View view, Consumer<IOException> failed) {
+		if (store == null || compiled == null || !(exp + "|" + view.fastMath).equals(compiledKey)) {return;}
+		ExpressionStore.Session session = new ExpressionStore.Session(exp, compiled, view.scale, view.oversampling,
+				view.fastMath, view.hornerFma);
+		if (saved != null && saved.program == session.program && saved.scale == session.scale
+				&& saved.oversampling == session.oversampling && saved.hornerFma == session.hornerFma) {
+			return;
+		}
+		saved = session;
+		ExpressionStore store = this.store;
+		sessionSaver.submit(() -> {
+			try {
+				store.save(session);
+			} catch (IOException e) {
+				deliver.execute(() -> failed.accept(e));
+			}
+		});
+	}
+
+	/**
+	 * Compiles exp for the store, unless it already has been with the same fast math setting. The arena
+	 * parser is used whatever the expression's length, as only arenas are stored. If it fails on an expression
+	 * Parser accepted, that expression just isn't stored; the plot goes ahead.
+	 */
+	private void compileForStore(String exp, boolean fastMath, Evaluator root) {
+		String key = exp + "|" + fastMath;
+		if (key.equals(compiledKey)) {return;}
+		try {
+			compiled = root instanceof ExpressionArena ? (ExpressionArena) root : ArenaParser.parse(exp, fastMath);
+		} catch (RuntimeException e) { // ParseFailedException, or a bug in the arena parser
+			compiled = null;
+		}
+		compiledKey = key;
+	}
+}
@@ -0,0 +1,84 @@
+package expPlotter;
+
+import java.util.Arrays;
+
+/**
+ * Arithmetic on polynomials stored as coefficient arrays, constant term first.
+ * Used by RationalFunction while it expands a parse tree.
+ */
+final class Polynomial {
+
+	private Polynomial() {}
+
+	static double[] add(double[] a, double[] b) {
+		double[] sum = new double[Math.max(a.length, b.length)];
+		for (int i = 0; i < sum.length; i++) {
+			sum[i] = (i < a.length ? a[i] : 0) + (i < b.length ? b[i] : 0);
+		}
+		return trim(sum);
+	}
+
+	static double[] negate(double[] a) {
+		double[] result = new double[a.length];
+		for (int i = 0; i < a.length; i++) {
+			result[i] = -a[i];
+		}
+		return result;
+	}
+
+	static double[] multiply(double[] a, double[] b) {
+		double[] product = new double[a.length + b.length - 1];
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] == 0) {continue;}
+			for (int j = 0; j < b.length; j++) {
+				product[i + j] += a[i] * b[j];
+			}
+		}
+		return trim(product);
+	}
+
+	static double[] pow(double[] a, int n) {
+		double[] result = {1};
+		double[] square = a;
+		// Exponentiation by squaring.
+		while (n > 0) {
+			if ((n & 1) == 1) {
+				result = multiply(result, square);
+			}
+			n >>= 1;
+			if (n > 0) {
+				square = multiply(square, square);
+			}
+		}
+		return result;
+	}
+
+	static boolean equal(double[] a, double[] b) {
+		return Arrays.equals(a, b);
+	}
+
+	/**
+	 * Drops leading zero coefficients (e.g. from x - x), always keeping the constant term.
+	 */
+	private static double[] trim(double[] a) {
+		int length = a.length;
+		while (length > 1 && a[length - 1] == 0) {
+			length--;
+		}
+		return length == a.length ? a : Arrays.copyOf(a, length);
+	}
+
+	static String toString(double[] c) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = c.length - 1; i >= 0; i--) {
+			if (c[i] == 0 && c.length > 1) {continue;}
+			if (sb.length() > 0) {sb.append(c[i] < 0 ? " - " : " + ");}
+			else if (c[i] < 0) {sb.append("-");}
+			double abs = Math.abs(c[i]);
+			if (abs != 1 || i == 0) {sb.append(abs == Math.rint(abs) && abs < 1e15 ? String.valueOf((long) abs) : String.valueOf(abs));}
+			if (i > 0) {sb.append("x");}
+			if (i > 1) {sb.append("^").append(i);}
+		}
+		return sb.length() > 0 ? sb.toString() : "0";
+	}
+}
@@ -0,0 +1,44 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class PrimaryNode implements ParseNode {
+	
+	ParseNode child;
+	
+	@Override
+	public double evaluate(double x) {
+		return child.evaluate(x);
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		return child.evaluate(x);
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		return child.evaluate(x);
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		
+		if (s.hasNext(Parser.VARIABLE) && s.findWithinHorizon(BuiltinFunction.CALL, 0) != null) {
+			child = new FunctionNode(BuiltinFunction.lookup(s.match().group(1))).parse(s);
+		} else if (Parser.parameter != null && s.hasNext(Parser.parameter.name)) {
+			child = new ParameterNode(Parser.parameter).parse(s);
+		} else if (s.hasNext(Parser.VARIABLE)) {
+			child = new VariableNode().parse(s);
+		} else if (s.hasNext(Parser.INTEGER)) {
+			child = new NumberNode().parse(s);
+		} else {
+			Parser.requireEat(Parser.OPEN_BRACKET, "PRIMARY", s);
+			child = new ExpNode().parse(s);
+			Parser.requireEat(Parser.CLOSE_BRACKET, "PRIMARY", s);
+		}
+		
+		return this;
+	}
+	
+}
@@ -0,0 +1,110 @@
+package expPlotter;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Samples a curve in passes of increasing detail on a background thread, handing each pass to the
+ * event dispatch thread as soon as it is ready.
+ *
+ * The first pass samples every stride-th column, with the stride (at least MIN_STRIDE) chosen so that
+ * the pass fits in the first frame latency budget. Each following pass halves the stride down to one
+ * sample per column, and a last pass adds oversampling if it is on. All passes together cost at most
+ * about twice the final one.
+ *
+ * Starting a new render, or calling cancel(), interrupts the current one; passes from a cancelled render
+ * are never shown.
+ */
+final class ProgressiveRenderer {
+	static final int MIN_STRIDE = 8;
+	private static final int PROBES = 16;
+
+	/**
+	 * Receives each pass on the event dispatch thread.
+	 */
+	interface PassListener {
+		/**
+		 * @param elapsedNanos : time from the start of the render until this pass was handed over.
+		 */
+		void show(SampleBuffer samples, boolean first, boolean last, long elapsedNanos);
+	}
+
+	private final long firstFrameBudgetNanos;
+	private final ExecutorService executor;
+	private Future<?> current;
+	// Incremented on every render and cancel; a pass is only shown if its generation is still the latest.
+	private volatile int generation;
+
+	ProgressiveRenderer(long firstFrameBudgetMillis) {
+		this.firstFrameBudgetNanos = firstFrameBudgetMillis * 1000000;
+		this.executor = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "Progressive renderer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Starts rendering the columns x0 + i*dx for i < columns, cancelling any render in progress.
+	 */
+	synchronized void render(Evaluator f, double x0, double dx, int columns, int oversampling, PassListener listener) {
+		cancel();
+		int myGeneration = generation;
+		long start = System.nanoTime();
+
+		current = executor.submit(() -> {
+			try {
+				boolean first = true;
+				for (int stride = chooseStride(f, x0, dx, columns); stride >= 1; stride /= 2) {
+					SampleBuffer pass = CurveSampler.sample(f, x0, dx*stride, (columns - 1) / stride + 1, 1);
+					publish(pass, first, stride == 1 && oversampling == 1, start, myGeneration, listener);
+					first = false;
+				}
+				if (oversampling > 1) {
+					publish(CurveSampler.sample(f, x0, dx, columns, oversampling), false, true, start, myGeneration, listener);
+				}
+			} catch (CancellationException e) {
+				// A newer render has taken over.
+			}
+		});
+	}
+
+	synchronized void cancel() {
+		generation++;
+		if (current != null) {
+			current.cancel(true);
+			current = null;
+		}
+	}
+
+	private void publish(SampleBuffer samples, boolean first, boolean last, long start, int myGeneration,
+			PassListener listener) {
+		SwingUtilities.invokeLater(() -> {
+			if (generation == myGeneration) {
+				listener.show(samples, first, last, System.nanoTime() - start);
+			}
+		});
+	}
+
+	/**
+	 * Times a few evaluations to estimate how many columns the first pass can afford, and returns the
+	 * smallest power of two stride (but at least MIN_STRIDE) that stays within the budget.
+	 */
+	private int chooseStride(Evaluator f, double x0, double dx, int columns) {
+		long start = System.nanoTime();
+		for (int i = 0; i < PROBES; i++) {
+			f.evaluate(x0 + dx * (columns - 1) * i / PROBES);
+		}
+		double nanosPerColumn = (double) (System.nanoTime() - start) / PROBES;
+
+		int stride = MIN_STRIDE;
+		while (stride < columns && columns / stride * nanosPerColumn > firstFrameBudgetNanos) {
+			stride *= 2;
+		}
+		return stride;
+	}
+}
@@ -0,0 +1,350 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The definite integral, minimum, maximum and mean of an expression over an interval.
+ *
+ * The integral uses adaptive 15 point Gauss-Kronrod quadrature: each interval is estimated with the
+ * Kronrod rule, the embedded 7 point Gauss rule gives an error estimate, and intervals whose error is
+ * too large for their share of the tolerance are halved. The halves are refined in parallel on the
+ * common fork/join pool.
+ *
+ * The interval is cut at multiples of a power of two, so the pieces (and all their halves) are dyadic
+ * intervals, which are the same whatever the view. Their Kronrod estimates are kept in a Cache, so after
+ * a zoom most of the work has already been done. Only the two ragged end pieces are always recomputed.
+ *
+ * Where f has no value (NaN, e.g. sqrt(x) for x < 0) it counts as 0, as the plot shows nothing there.
+ * Intervals on the edge of the domain are refined like any other until they are negligibly small.
+ *
+ * The minimum and maximum are the smallest and largest values seen at the quadrature nodes, the ends
+ * and the given extrema (e.g. those found by RootFinder).
+ */
+final class RangeAnalysis {
+	// The interval is cut into between TOP_PIECES and 2*TOP_PIECES dyadic pieces before refining.
+	static final int TOP_PIECES = 16;
+	private static final double RELATIVE_TOLERANCE = 1e-10;
+	private static final double ABSOLUTE_TOLERANCE = 1e-14;
+	// Halvings below a top piece, and evaluations in all, before giving up on converging.
+	private static final int MAX_DEPTH = 40;
+	private static final int EVALUATION_BUDGET = 1 << 18;
+
+	// Gauss-Kronrod 15 point nodes (positive half) and weights; every other node is also a 7 point Gauss node.
+	private static final double[] KRONROD_NODES = {
+		0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+		0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+		0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+		0.207784955007898467600689403773245, 0};
+	private static final double[] KRONROD_WEIGHTS = {
+		0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+		0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+		0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+		0.204432940075298892414161999234649, 0.209482141084727828012999174891714};
+	// Weights of the Gauss nodes KRONROD_NODES[1], [3], [5] and [7].
+	private static final double[] GAUSS_WEIGHTS = {
+		0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+		0.381830050505118944950369775488975, 0.417959183673469387755102040816327};
+
+	/**
+	 * The quadrature result over an interval: a single Kronrod estimate, or the sum of refined ones.
+	 */
+	private static final class Estimate {
+		final double integral, error;
+		final double absIntegral; // Of |f|, which sets the scale of the tolerance
+		final double min, minX, max, maxX; // NaN if f had no value at any node
+		final double undefined; // Roughly how much of the interval f has no value on
+		final boolean converged;
+
+		Estimate(double integral, double error, double absIntegral, double min, double minX, double max, double maxX,
+				double undefined, boolean converged) {
+			this.integral = integral;
+			this.error = error;
+			this.absIntegral = absIntegral;
+			this.min = min;
+			this.minX = minX;
+			this.max = max;
+			this.maxX = maxX;
+			this.undefined = undefined;
+			this.converged = converged;
+		}
+
+		Estimate unconverged() {
+			return new Estimate(integral, error, absIntegral, min, minX, max, maxX, undefined, false);
+		}
+
+		/**
+		 * This estimate with its error accepted, for an interval on the edge of f's domain.
+		 */
+		Estimate acceptedEdge() {
+			return new Estimate(integral, 0, absIntegral, min, minX, max, maxX, undefined, converged);
+		}
+
+		Estimate plus(Estimate o) {
+			boolean lower = Double.isNaN(min) || o.min < min, higher = Double.isNaN(max) || o.max > max;
+			return new Estimate(integral + o.integral, error + o.error, absIntegral + o.absIntegral,
+					lower ? o.min : min, lower ? o.minX : minX, higher ? o.max : max, higher ? o.maxX : maxX,
+					undefined + o.undefined, converged && o.converged);
+		}
+	}
+
+	/**
+	 * The dyadic interval [index * 2^exponent, (index+1) * 2^exponent].
+	 */
+	private static final class Cell {
+		final int exponent;
+		final long index;
+
+		Cell(int exponent, long index) {
+			this.exponent = exponent;
+			this.index = index;
+		}
+
+		double lo() {return Math.scalb((double) index, exponent);}
+
+		double hi() {return Math.scalb((double) (index + 1), exponent);}
+
+		Cell half(int which) {return new Cell(exponent - 1, 2 * index + which);}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Cell && ((Cell) o).exponent == exponent && ((Cell) o).index == index;
+		}
+
+		@Override
+		public int hashCode() {return Long.hashCode(index) * 31 + exponent;}
+	}
+
+	/**
+	 * Kronrod estimates over dyadic intervals for one function, shared between analyses of it.
+	 * Switching to another function forgets them. Safe to use from several threads.
+	 */
+	static final class Cache {
+		private static final int MAX_ENTRIES = 1 << 16;
+		private final ConcurrentHashMap<Cell, Estimate> estimates = new ConcurrentHashMap<Cell, Estimate>();
+		private String function;
+
+		/**
+		 * @param function : identifies the function and every setting that changes its values.
+		 */
+		synchronized void switchTo(String function) {
+			if (!function.equals(this.function)) {
+				estimates.clear();
+				this.function = function;
+			}
+		}
+
+		int size() {return estimates.size();}
+
+		private Estimate get(Cell cell) {return estimates.get(cell);}
+
+		private void put(Cell cell, Estimate estimate) {
+			if (estimates.size() >= MAX_ENTRIES) {estimates.clear();} // Rare enough that LRU isn't worth it.
+			estimates.put(cell, estimate);
+		}
+	}
+
+	private final Evaluator f;
+	private final Cache cache;
+	private final double a, b;
+	private final List<Double> extrema;
+	private double tolerancePerUnit;
+	private final AtomicInteger evaluations = new AtomicInteger();
+	private final AtomicInteger cacheHits = new AtomicInteger();
+	private Estimate result;
+
+	private RangeAnalysis(Evaluator f, double a, double b, List<Double> extrema, Cache cache) {
+		this.f = f;
+		this.a = a;
+		this.b = b;
+		this.extrema = extrema;
+		this.cache = cache;
+	}
+
+	/**
+	 * Analyses f over [a, b] (a < b), reusing and adding to the cache's estimates.
+	 * @param extrema : f's turning points in [a, b], which the quadrature nodes can miss.
+	 */
+	static RangeAnalysis analyze(Evaluator f, double a, double b, List<Double> extrema, Cache cache) {
+		RangeAnalysis analysis = new RangeAnalysis(f, a, b, extrema, cache);
+		analysis.run();
+		return analysis;
+	}
+
+	double integral() {return result.integral;}
+
+	double errorEstimate() {return result.error;}
+
+	/**
+	 * Whether the integral is finite and its error estimate within the tolerance.
+	 * If not, the integral probably diverges (e.g. 1/x across 0) or f is too wild to integrate.
+	 */
+	boolean converged() {
+		return result.converged && Double.isFinite(result.integral) && result.error <= tolerancePerUnit * (b - a);
+	}
+
+	/**
+	 * The fraction of the interval (roughly) where f has no value, which the integral treats as 0.
+	 */
+	double undefinedFraction() {return result.undefined / (b - a);}
+
+	double mean() {return result.integral / (b - a);}
+
+	double min() {return result.min;}
+
+	double minX() {return result.minX;}
+
+	double max() {return result.max;}
+
+	double maxX() {return result.maxX;}
+
+	int evaluations() {return evaluations.get();}
+
+	int cacheHits() {return cacheHits.get();}
+
+	private void run() {
+		// Cut [a, b] at multiples of a power of two: a ragged piece, whole cells, a ragged piece.
+		int exponent = Math.getExponent((b - a) / TOP_PIECES);
+		double width = Math.scalb(1.0, exponent);
+		long first = (long) Math.ceil(a / width), last = (long) Math.floor(b / width);
+
+		List<Refine> pieces = new ArrayList<Refine>();
+		if (first * width > a) {pieces.add(new Refine(a, Math.min(first * width, b), null, 0));}
+		for (long i = first; i < last; i++) {pieces.add(new Refine(new Cell(exponent, i), 0));}
+		if (last * width < b && last >= first) {pieces.add(new Refine(last * width, b, null, 0));}
+
+		// The tolerance is relative to the integral of |f|, which the unrefined pieces estimate well enough.
+		double scale = 0;
+		for (Refine piece : pieces) {
+			scale += piece.estimate().absIntegral;
+		}
+		tolerancePerUnit = Math.max(ABSOLUTE_TOLERANCE, RELATIVE_TOLERANCE * (Double.isFinite(scale) ? scale : 0)) / (b - a);
+
+		result = ForkJoinPool.commonPool().invoke(new RecursiveTask<Estimate>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Estimate compute() {
+				invokeAll(pieces);
+				Estimate sum = null;
+				for (Refine piece : pieces) {
+					sum = sum == null ? piece.join() : sum.plus(piece.join());
+				}
+				return sum;
+			}
+		});
+
+		// The nodes can miss a sharp turning point, so check the extrema, and the ends.
+		List<Double> candidates = new ArrayList<Double>(extrema);
+		candidates.add(a);
+		candidates.add(b);
+		for (double x : candidates) {
+			double y = f.evaluate(x);
+			result = result.plus(new Estimate(0, 0, 0, y, x, y, x, 0, true));
+		}
+	}
+
+	/**
+	 * Refines the estimate over [lo, hi] until its error is within its share of the tolerance.
+	 */
+	private final class Refine extends RecursiveTask<Estimate> {
+		private static final long serialVersionUID = 1L;
+		private final double lo, hi;
+		private final Cell cell; // Null if [lo, hi] isn't dyadic, in which case nothing is cached
+		private final int depth;
+		private Estimate estimate;
+
+		Refine(double lo, double hi, Cell cell, int depth) {
+			this.lo = lo;
+			this.hi = hi;
+			this.cell = cell;
+			this.depth = depth;
+		}
+
+		Refine(Cell cell, int depth) {
+			this(cell.lo(), cell.hi(), cell, depth);
+		}
+
+		Estimate estimate() {
+			if (estimate != null) {return estimate;}
+			if (cell != null) {
+				estimate = cache.get(cell);
+				if (estimate != null) {
+					cacheHits.incrementAndGet();
+					return estimate;
+				}
+			}
+			estimate = kronrod(lo, hi);
+			if (cell != null) {cache.put(cell, estimate);}
+			return estimate;
+		}
+
+		@Override
+		protected Estimate compute() {
+			Estimate e = estimate();
+			if (e.error <= tolerancePerUnit * (hi - lo)) {return e;}
+
+			double mid = (lo + hi) / 2;
+			if (evaluations.get() >= EVALUATION_BUDGET) {return e.unconverged();}
+			if (depth >= MAX_DEPTH || !(mid > lo && mid < hi)) {
+				// As small as it gets. Its error still counts towards the total, unless it is on the edge of
+				// the domain, where a tiny interval only has a tiny part of the integral.
+				return e.undefined > 0 && Double.isFinite(e.integral) ? e.acceptedEdge() : e;
+			}
+			Refine left = cell != null ? new Refine(cell.half(0), depth + 1) : new Refine(lo, mid, null, depth + 1);
+			Refine right = cell != null ? new Refine(cell.half(1), depth + 1) : new Refine(mid, hi, null, depth + 1);
+			invokeAll(left, right);
+			return left.join().plus(right.join());
+		}
+	}
+
+	/**
+	 * The 15 point Kronrod estimate of the integral over [lo, hi], with |Kronrod - Gauss| as its error.
+	 */
+	private Estimate kronrod(double lo, double hi) {
+		double center = (lo + hi) / 2, half = (hi - lo) / 2;
+		double[] xs = new double[15];
+		double[] ys = new double[15];
+		for (int j = 0; j < 7; j++) {
+			xs[2*j] = center - half * KRONROD_NODES[j];
+			xs[2*j + 1] = center + half * KRONROD_NODES[j];
+		}
+		xs[14] = center;
+		f.evaluate(xs, ys, 15);
+		evaluations.addAndGet(15);
+		
+		double min = Double.NaN, minX = Double.NaN, max = Double.NaN, maxX = Double.NaN;
+		int undefinedNodes = 0;
+		for (int i = 0; i < 15; i++) {
+			if (Double.isNaN(ys[i])) {
+				ys[i] = 0; // Counts as 0 in the integral
+				undefinedNodes++;
+				continue;
+			}
+			if (!(ys[i] >= min)) {min = ys[i]; minX = xs[i];} // NaN comparisons are false, so the first number always sets these.
+			if (!(ys[i] <= max)) {max = ys[i]; maxX = xs[i];}
+		}
+		if (undefinedNodes == 15) {
+			// Outside the domain altogether; nothing to refine.
+			return new Estimate(0, 0, 0, min, minX, max, maxX, hi - lo, true);
+		}
+
+		double kronrod = KRONROD_WEIGHTS[7] * ys[14], gauss = GAUSS_WEIGHTS[3] * ys[14];
+		double abs = KRONROD_WEIGHTS[7] * Math.abs(ys[14]);
+		for (int j = 0; j < 7; j++) {
+			double pair = ys[2*j] + ys[2*j + 1];
+			kronrod += KRONROD_WEIGHTS[j] * pair;
+			abs += KRONROD_WEIGHTS[j] * (Math.abs(ys[2*j]) + Math.abs(ys[2*j + 1]));
+			if (j % 2 == 1) {gauss += GAUSS_WEIGHTS[j / 2] * pair;}
+		}
+
+		double error = Math.abs(kronrod - gauss) * half;
+		// Infinities, or the edge of the domain, mean no trustworthy estimate, so force refinement.
+		if (!Double.isFinite(kronrod) || undefinedNodes > 0) {error = Double.POSITIVE_INFINITY;}
+		return new Estimate(kronrod * half, error, abs * half, min, minX, max, maxX, (hi - lo) * undefinedNodes / 15, true);
+	}
+}
@@ -0,0 +1,293 @@
+package expPlotter;
+
+/**
+ * A parsed expression rewritten as P(x) / Q(x), where P and Q are polynomials.
+ *
+ * Many of the expressions we plot are polynomials (or quotients of them). Evaluating them through the
+ * ParseNode tree costs a virtual call per node and a Math.pow per power; evaluating the extracted
+ * coefficients with Horner's scheme costs one multiply-add per degree.
+ *
+ * Polynomials are not reduced (x/x stays x/x), so the result is NaN in exactly the same places as the tree.
+ * Expanding can still change rounding, e.g. (x+1)^20 expands into large coefficients that cancel.
+ */
+final class RationalFunction implements Evaluator {
+	// Larger degrees (e.g. x^1000) aren't worth expanding; they stay on the generic evaluator.
+	static final int MAX_DEGREE = 64;
+	private static final int PROBES = 32;
+
+	final double[] numerator;   // Coefficients, constant term first.
+	final double[] denominator;
+	private final boolean fma;
+
+	private RationalFunction(double[] numerator, double[] denominator, boolean fma) {
+		this.numerator = numerator;
+		this.denominator = denominator;
+		this.fma = fma;
+	}
+
+	/**
+	 * Returns the expression as a rational function, or null if it isn't one (e.g. it uses x^x or sin(x)).
+	 * @param fma : whether to evaluate with Math.fma, which rounds once per step instead of twice. It is
+	 * only fast on CPUs with fused multiply-add instructions.
+	 */
+	static RationalFunction analyze(ParseNode root, boolean fma) {
+		Fraction f = fraction(root);
+		if (f == null) {return null;}
+
+		// A constant denominator is folded into the numerator, leaving a plain polynomial.
+		if (f.den.length == 1 && f.den[0] != 0 && Double.isFinite(f.den[0])) {
+			double[] num = new double[f.num.length];
+			for (int i = 0; i < num.length; i++) {
+				num[i] = f.num[i] / f.den[0];
+			}
+			return new RationalFunction(num, new double[] {1}, fma);
+		}
+		return new RationalFunction(f.num, f.den, fma);
+	}
+
+	/**
+	 * Checks the expanded form against the tree at evenly spaced points in [a, b].
+	 * Expansion can cancel badly (e.g. (x+1)^20 near x = -1), so the plot only uses it when it agrees.
+	 */
+	boolean agreesWith(ParseNode tree, double a, double b, double tolerance) {
+		for (int i = 0; i <= PROBES; i++) {
+			double x = a + (b - a) * i / PROBES;
+			double expected = tree.evaluate(x);
+			double actual = evaluate(x);
+			if (Double.isNaN(expected) != Double.isNaN(actual)) {return false;}
+			if (Double.isFinite(expected) && !(Math.abs(actual - expected) <= tolerance)) {return false;}
+		}
+		return true;
+	}
+
+	boolean isPolynomial() {
+		return denominator.length == 1 && denominator[0] == 1;
+	}
+
+	int degree() {
+		return Math.max(numerator.length, denominator.length) - 1;
+	}
+
+	@Override
+	public double evaluate(double x) {
+		if (isPolynomial()) {
+			return horner(numerator, x, fma);
+		}
+		return horner(numerator, x, fma) / horner(denominator, x, fma);
+	}
+
+	@Override
+	public Dual evaluate(Dual x) {
+		if (isPolynomial()) {
+			return horner(numerator, x);
+		}
+		return horner(numerator, x).divide(horner(denominator, x));
+	}
+
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		if (isPolynomial()) {
+			return horner(numerator, x);
+		}
+		return horner(numerator, x).divide(horner(denominator, x));
+	}
+
+	@Override
+	public void evaluate(double[] xs, double[] out, int n) {
+		hornerBatch(numerator, xs, out, n, fma);
+		if (isPolynomial()) {return;}
+
+		// Evaluate the denominator a block at a time so we don't need a second array the size of xs.
+		double[] den = new double[Math.min(n, 256)];
+		for (int start = 0; start < n; start += den.length) {
+			int count = Math.min(den.length, n - start);
+			for (int i = 0; i < count; i++) {
+				den[i] = horner(denominator, xs[start + i], fma);
+			}
+			for (int i = 0; i < count; i++) {
+				out[start + i] /= den[i];
+			}
+		}
+	}
+
+	static double horner(double[] c, double x, boolean fma) {
+		double acc = c[c.length - 1];
+		if (fma) {
+			for (int i = c.length - 2; i >= 0; i--) {
+				acc = Math.fma(acc, x, c[i]);
+			}
+		} else {
+			for (int i = c.length - 2; i >= 0; i--) {
+				acc = acc * x + c[i];
+			}
+		}
+		return acc;
+	}
+
+	static DoubleDouble horner(double[] c, DoubleDouble x) {
+		DoubleDouble acc = new DoubleDouble(c[c.length - 1]);
+		for (int i = c.length - 2; i >= 0; i--) {
+			acc = acc.multiply(x).add(new DoubleDouble(c[i]));
+		}
+		return acc;
+	}
+
+	static Dual horner(double[] c, Dual x) {
+		double value = c[c.length - 1], derivative = 0;
+		for (int i = c.length - 2; i >= 0; i--) {
+			// (acc * x + c)' = acc' * x + acc * x'
+			derivative = derivative * x.value + value * x.derivative;
+			value = value * x.value + c[i];
+		}
+		return new Dual(value, derivative);
+	}
+
+	/**
+	 * Horner's scheme across many points at once. The loop over points is innermost, so each step is a
+	 * simple pass over the arrays with no dependency between points.
+	 */
+	static void hornerBatch(double[] c, double[] xs, double[] out, int n, boolean fma) {
+		double top = c[c.length - 1];
+		for (int i = 0; i < n; i++) {
+			out[i] = top;
+		}
+		for (int k = c.length - 2; k >= 0; k--) {
+			double ck = c[k];
+			if (fma) {
+				for (int i = 0; i < n; i++) {
+					out[i] = Math.fma(out[i], xs[i], ck);
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					out[i] = out[i] * xs[i] + ck;
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		String num = Polynomial.toString(numerator);
+		return isPolynomial() ? num : "(" + num + ") / (" + Polynomial.toString(denominator) + ")";
+	}
+
+	/* ***************************
+	 * ANALYSIS OF THE PARSE TREE
+	 * ***************************
+	 */
+
+	/**
+	 * num / den, both as coefficient arrays.
+	 */
+	private static final class Fraction {
+		final double[] num;
+		final double[] den;
+
+		Fraction(double[] num, double[] den) {
+			this.num = num;
+			this.den = den;
+		}
+
+		static Fraction constant(double c) {
+			return new Fraction(new double[] {c}, new double[] {1});
+		}
+
+		boolean isConstant() {
+			return num.length == 1 && den.length == 1;
+		}
+
+		double value() {
+			return num[0] / den[0];
+		}
+	}
+
+	private static Fraction fraction(ParseNode node) {
+		if (node instanceof NumberNode) {
+			return Fraction.constant(((NumberNode) node).number);
+		} else if (node instanceof VariableNode) {
+			return new Fraction(new double[] {0, 1}, new double[] {1});
+		} else if (node instanceof PrimaryNode) {
+			return fraction(((PrimaryNode) node).child);
+		} else if (node instanceof FactorNode) {
+			FactorNode factor = (FactorNode) node;
+			Fraction f = fraction(factor.child);
+			if (f == null || !factor.negative) {return f;}
+			return new Fraction(Polynomial.negate(f.num), f.den);
+		} else if (node instanceof ExpNode) {
+			return sum((ExpNode) node);
+		} else if (node instanceof TermNode) {
+			return product((TermNode) node);
+		} else if (node instanceof BaseNode) {
+			return power((BaseNode) node);
+		} else if (node instanceof FunctionNode) {
+			// A function of a constant (e.g. sin(2)) is a constant; a function of x isn't a polynomial.
+			FunctionNode call = (FunctionNode) node;
+			Fraction arg = fraction(call.argument);
+			if (arg == null || !arg.isConstant()) {return null;}
+			return Fraction.constant(call.function.evaluate(arg.value(), call.fast));
+		}
+		return null;
+	}
+
+	private static Fraction sum(ExpNode node) {
+		Fraction result = fraction(node.children.get(0));
+		for (int i = 1; i < node.children.size() && result != null; i++) {
+			ParseNode child = node.children.get(i);
+			Fraction f = fraction(child);
+			if (f == null) {return null;}
+			double[] term = node.addMap.get(child) ? f.num : Polynomial.negate(f.num);
+			// a/b + c/d = (ad + cb) / bd, skipping the cross-multiplication when the denominators match.
+			if (Polynomial.equal(result.den, f.den)) {
+				result = new Fraction(Polynomial.add(result.num, term), result.den);
+			} else {
+				result = new Fraction(
+						Polynomial.add(Polynomial.multiply(result.num, f.den), Polynomial.multiply(term, result.den)),
+						Polynomial.multiply(result.den, f.den));
+			}
+			if (tooLarge(result)) {return null;}
+		}
+		return result;
+	}
+
+	private static Fraction product(TermNode node) {
+		Fraction result = fraction(node.children.get(0));
+		for (int i = 1; i < node.children.size() && result != null; i++) {
+			ParseNode child = node.children.get(i);
+			Fraction f = fraction(child);
+			if (f == null) {return null;}
+			if (node.multMap.get(child)) {
+				result = new Fraction(Polynomial.multiply(result.num, f.num), Polynomial.multiply(result.den, f.den));
+			} else {
+				result = new Fraction(Polynomial.multiply(result.num, f.den), Polynomial.multiply(result.den, f.num));
+			}
+			if (tooLarge(result)) {return null;}
+		}
+		return result;
+	}
+
+	private static Fraction power(BaseNode node) {
+		Fraction base = fraction(node.base);
+		if (base == null || node.exponent == null) {return base;}
+
+		Fraction exponent = fraction(node.exponent);
+		if (exponent == null || !exponent.isConstant()) {return null;}
+		double e = exponent.value();
+
+		if (base.isConstant()) {
+			return Fraction.constant(Math.pow(base.value(), e));
+		}
+		// Only whole powers of x are polynomial.
+		if (e != Math.rint(e) || Math.abs(e) > MAX_DEGREE) {return null;}
+
+		int n = (int) Math.abs(e);
+		Fraction result = new Fraction(Polynomial.pow(base.num, n), Polynomial.pow(base.den, n));
+		if (e < 0) {
+			result = new Fraction(result.den, result.num);
+		}
+		return tooLarge(result) ? null : result;
+	}
+
+	private static boolean tooLarge(Fraction f) {
+		return f.num.length > MAX_DEGREE + 1 || f.den.length > MAX_DEGREE + 1;
+	}
+}
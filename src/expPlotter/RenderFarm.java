@@ -0,0 +1,267 @@
+package expPlotter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Samples plots in a pool of worker JVMs (see RenderWorker) instead of this one, so an expression that
+ * takes forever to evaluate, overflows the stack or runs out of memory only takes a worker down with it.
+ *
+ * A plot is split into about one tile per worker, of at most TILE_COLUMNS columns. Each worker has a thread
+ * here that sends it tiles over its stdin and reads the samples back from its stdout, until there are none
+ * left; the samples are copied into one SampleBuffer as they arrive.
+ *
+ * A tile that takes longer than the timeout has its worker killed and comes back as NaN (a gap in the
+ * curve); trying again would only take as long. A worker that dies for any other reason is restarted and
+ * its tile tried once more. Workers exit by themselves when this JVM does, as their stdin closes.
+ */
+final class RenderFarm implements AutoCloseable {
+	// Tiles are a multiple of CurveSampler's precision blocks, so they escalate exactly as they would in one
+	// piece, and at most TILE_COLUMNS wide, so a tile that times out leaves a gap of at most that.
+	static final int TILE_COLUMNS = CurveSampler.TILE_COLUMNS;
+	private static final int ATTEMPTS = 2;
+
+	private final long timeoutMillis;
+	private final Worker[] workers;
+	private final ExecutorService handlers;
+	private final ScheduledExecutorService watchdog;
+
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final AtomicInteger jobs = new AtomicInteger();
+	private final AtomicInteger timeouts = new AtomicInteger();
+	private final AtomicInteger crashes = new AtomicInteger();
+	private final AtomicInteger failedTiles = new AtomicInteger();
+
+	/**
+	 * One worker process and the pipes to it. Only ever used by one handler thread at a time.
+	 */
+	private static final class Worker {
+		Process process;
+		DataInputStream in;
+		DataOutputStream out;
+		int restarts;
+
+		void start() throws IOException {
+			String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+			process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), RenderWorker.class.getName())
+					.redirectError(ProcessBuilder.Redirect.INHERIT)
+					.start();
+			in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		}
+
+		void restart() throws IOException {
+			process.destroyForcibly();
+			restarts++;
+			start();
+		}
+	}
+
+	/**
+	 * Starts the workers.
+	 * @param timeoutMillis : how long one tile may take before its worker is killed.
+	 */
+	RenderFarm(int workerCount, long timeoutMillis) throws IOException {
+		this.timeoutMillis = timeoutMillis;
+		workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new Worker();
+			try {
+				workers[i].start();
+			} catch (IOException e) {
+				for (int j = 0; j < i; j++) {workers[j].process.destroyForcibly();}
+				throw e;
+			}
+		}
+		handlers = Executors.newFixedThreadPool(workerCount, task -> {
+			Thread t = new Thread(task, "Render farm handler");
+			t.setDaemon(true);
+			return t;
+		});
+		watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread t = new Thread(task, "Render farm watchdog");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	int workers() {return workers.length;}
+
+	/**
+	 * The width of the tiles a plot of the given number of columns is split into: an equal share per worker,
+	 * rounded up to whole precision blocks.
+	 */
+	int tileColumns(int columns) {
+		int block = CurveSampler.PRECISION_BLOCK;
+		int share = (columns + workers.length - 1) / workers.length;
+		return Math.min(TILE_COLUMNS, Math.max(block, (share + block - 1) / block * block));
+	}
+
+	/**
+	 * Samples exp across the given columns, as CurveSampler.sample would, in the workers.
+	 * @throws ParseFailedException if the workers can't parse exp.
+	 */
+	synchronized SampleBuffer sample(String exp, boolean fastMath, double x0, double dx, int columns, int oversampling) {
+		SampleBuffer buffer = new SampleBuffer(x0, dx, columns);
+		int tileColumns = tileColumns(columns);
+		int tiles = (columns + tileColumns - 1) / tileColumns;
+		AtomicInteger nextTile = new AtomicInteger();
+		AtomicInteger precise = new AtomicInteger();
+
+		List<Future<?>> running = new ArrayList<Future<?>>();
+		for (Worker worker : workers) {
+			running.add(handlers.submit(() -> {
+				for (int tile; (tile = nextTile.getAndIncrement()) < tiles; ) {
+					int from = tile * tileColumns;
+					precise.addAndGet(sampleTile(worker, exp, fastMath, buffer, from, Math.min(from + tileColumns, columns), oversampling));
+				}
+			}));
+		}
+		// Handlers are always waited for, so none is still using its worker when the next plot starts.
+		boolean interrupted = false;
+		Throwable failure = null;
+		for (Future<?> handler : running) {
+			while (true) {
+				try {
+					handler.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					nextTile.set(tiles); // Finish the tiles being sampled, but no more.
+				} catch (ExecutionException e) {
+					nextTile.set(tiles);
+					if (failure == null) {failure = e.getCause();}
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+		if (failure instanceof RuntimeException) {throw (RuntimeException) failure;}
+		if (failure instanceof Error) {throw (Error) failure;}
+		if (failure != null) {throw new IllegalStateException(failure);}
+		buffer.preciseColumns = precise.get();
+		return buffer;
+	}
+
+	/**
+	 * Has one worker sample the columns from (inclusive) to 'to' (exclusive) into the buffer, and returns
+	 * how many of them needed double-double precision.
+	 */
+	private int sampleTile(Worker worker, String exp, boolean fastMath, SampleBuffer buffer, int from, int to, int oversampling) {
+		for (int attempt = 1; ; attempt++) {
+			jobs.incrementAndGet();
+			int id = nextId.getAndIncrement();
+			AtomicBoolean timedOut = new AtomicBoolean();
+			Process process = worker.process;
+			ScheduledFuture<?> kill = watchdog.schedule(() -> {
+				timedOut.set(true);
+				process.destroyForcibly();
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+			try {
+				worker.out.writeInt(id);
+				worker.out.writeByte(fastMath ? 1 : 0);
+				RenderWorker.writeString(worker.out, exp);
+				worker.out.writeDouble(buffer.x0);
+				worker.out.writeDouble(buffer.dx);
+				worker.out.writeInt(from);
+				worker.out.writeInt(to);
+				worker.out.writeInt(oversampling);
+				worker.out.flush();
+
+				if (worker.in.readInt() != id) {throw new IOException("worker out of step");}
+				if (worker.in.readByte() == RenderWorker.PARSE_FAILED) {
+					kill.cancel(false);
+					throw new ParseFailedException(RenderWorker.readString(worker.in));
+				}
+				int precise = worker.in.readInt();
+				for (double[] values : new double[][] {buffer.first, buffer.min, buffer.max, buffer.last}) {
+					for (int i = from; i < to; i++) {values[i] = worker.in.readDouble();}
+				}
+				if (!kill.cancel(false)) {
+					restart(worker); // Killed just as it finished.
+				}
+				return precise;
+			} catch (IOException e) {
+				kill.cancel(false);
+			}
+
+			// The worker died, or was killed by the watchdog.
+			if (timedOut.get()) {
+				timeouts.incrementAndGet();
+			} else {
+				crashes.incrementAndGet();
+			}
+			restart(worker);
+			if (timedOut.get() || attempt == ATTEMPTS) {
+				failedTiles.incrementAndGet();
+				for (double[] values : new double[][] {buffer.first, buffer.min, buffer.max, buffer.last}) {
+					Arrays.fill(values, from, to, Double.NaN);
+				}
+				return 0;
+			}
+		}
+	}
+
+	private void restart(Worker worker) {
+		try {
+			worker.restart();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not restart a render worker", e);
+		}
+	}
+
+	int timeouts() {return timeouts.get();}
+
+	int crashes() {return crashes.get();}
+
+	int failedTiles() {return failedTiles.get();}
+
+	int restarts() {
+		int restarts = 0;
+		for (Worker worker : workers) {restarts += worker.restarts;}
+		return restarts;
+	}
+
+	String stats() {
+		return String.format("%d workers, %d jobs: %d timed out, %d crashed, %d tiles left blank, %d restarts",
+				workers.length, jobs.get(), timeouts.get(), crashes.get(), failedTiles.get(), restarts());
+	}
+
+	/**
+	 * Stops the workers.
+	 */
+	@Override
+	public synchronized void close() {
+		handlers.shutdownNow();
+		watchdog.shutdownNow();
+		for (Worker worker : workers) {
+			try {
+				worker.out.close(); // The worker exits at the end of its input.
+				if (!worker.process.waitFor(1, TimeUnit.SECONDS)) {worker.process.destroyForcibly();}
+			} catch (IOException | InterruptedException e) {
+				worker.process.destroyForcibly();
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package expPlotter;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that RenderFarm recovers from losing a worker: a worker killed in the middle of a tile is restarted
+ * and the tile sampled again, so the plot still comes back complete; and once tiles have timed out (and been
+ * left blank), the restarted workers sample the next plot in full. Plots are compared with CurveSampler's.
+ *
+ * Usage: java expPlotter.RenderFarmRecovery
+ */
+final class RenderFarmRecovery {
+	private static final int WORKERS = 2;
+	private static final double X0 = -10, DX = 0.04;
+	private static final int COLUMNS = 501;
+	private static final int OVERSAMPLING = 256;
+	// Long enough for a freshly started worker to sample sin(x), far too short for the slow expression at HANG.
+	private static final long TIMEOUT = 1000; // ms
+	private static final int HANG = 1 << 16; // oversampling
+
+	public static void main(String[] args) throws Exception {
+		// Slow enough that a tile takes a good fraction of a second, so a worker can be killed in the middle of one.
+		StringBuilder slow = new StringBuilder("0");
+		for (int k = 1; k <= 100; k++) {slow.append("+sin(x+").append(k).append(")");}
+		String exp = slow.toString();
+		ExecutorService caller = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "Caller");
+			t.setDaemon(true);
+			return t;
+		});
+		int failures = 0;
+
+		try (RenderFarm farm = new RenderFarm(WORKERS, 60000)) {
+			Future<SampleBuffer> plot = caller.submit(() -> farm.sample(exp, false, X0, DX, COLUMNS, OVERSAMPLING));
+			Thread.sleep(300);
+			Optional<ProcessHandle> worker = ProcessHandle.current().children().findFirst();
+			if (!worker.isPresent()) {throw new IllegalStateException("No worker processes");}
+			worker.get().destroyForcibly();
+			SampleBuffer samples = plot.get();
+
+			System.out.println("Worker killed mid-tile: " + farm.stats());
+			failures += expect(farm.crashes() >= 1, "the killed worker's job to count as crashed");
+			failures += expect(farm.restarts() >= 1, "the killed worker to be restarted");
+			failures += expect(farm.failedTiles() == 0, "no tile to be left blank");
+			failures += expect(matches(samples, exp, OVERSAMPLING), "the samples to match CurveSampler's");
+		}
+
+		try (RenderFarm farm = new RenderFarm(WORKERS, TIMEOUT)) {
+			farm.sample(exp, false, X0, DX, COLUMNS, HANG);
+			System.out.println("Tiles timed out: " + farm.stats());
+			failures += expect(farm.timeouts() >= 1 && farm.failedTiles() >= 1, "the slow tiles to time out and be left blank");
+			failures += expect(farm.restarts() >= 1, "the timed out workers to be restarted");
+
+			int failedBefore = farm.failedTiles();
+			SampleBuffer samples = farm.sample("sin(x)", false, X0, DX, COLUMNS, 1);
+			System.out.println("Next plot: " + farm.stats());
+			failures += expect(farm.failedTiles() == failedBefore, "no tile of the next plot to be left blank");
+			failures += expect(matches(samples, "sin(x)", 1), "the next plot to match CurveSampler's");
+		}
+
+		if (failures > 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	private static int expect(boolean ok, String what) {
+		if (ok) {return 0;}
+		System.out.println("  Expected " + what);
+		return 1;
+	}
+
+	/**
+	 * Whether the farm's samples are exactly those CurveSampler takes here.
+	 */
+	private static boolean matches(SampleBuffer farmed, String exp, int oversampling) {
+		SampleBuffer local = CurveSampler.sample(Parser.parse(exp), X0, DX, COLUMNS, oversampling);
+		for (int i = 0; i < COLUMNS; i++) {
+			if (Double.compare(farmed.first[i], local.first[i]) != 0 || Double.compare(farmed.min[i], local.min[i]) != 0
+					|| Double.compare(farmed.max[i], local.max[i]) != 0 || Double.compare(farmed.last[i], local.last[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,86 @@
+package expPlotter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A worker process for RenderFarm: reads jobs from stdin, samples them, and writes the results to stdout.
+ * Exits when stdin is closed. Started by RenderFarm; not meant to be run by hand.
+ *
+ * Job:    int id, byte fastMath, int length + UTF-8 expression, double x0, double dx, int from, int to, int oversampling
+ *         (columns from, inclusive, to 'to', exclusive, of the plot starting at x0)
+ * Result: int id, byte status; then if OK: int preciseColumns and first, min, max, last (to - from doubles each),
+ *         or if PARSE_FAILED: int length + UTF-8 message
+ */
+final class RenderWorker {
+	static final byte OK = 0;
+	static final byte PARSE_FAILED = 1;
+
+	private RenderWorker() {}
+
+	public static void main(String[] args) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+
+		// Consecutive jobs are nearly always tiles of the same expression, so the last parse is kept.
+		String lastExpression = null;
+		boolean lastFastMath = false;
+		Evaluator f = null;
+
+		while (true) {
+			int id;
+			try {
+				id = in.readInt();
+			} catch (EOFException e) {
+				return; // The farm closed us.
+			}
+			boolean fastMath = in.readByte() != 0;
+			String exp = readString(in);
+			double x0 = in.readDouble(), dx = in.readDouble();
+			int from = in.readInt(), to = in.readInt(), oversampling = in.readInt();
+
+			out.writeInt(id);
+			try {
+				if (!exp.equals(lastExpression) || fastMath != lastFastMath) {
+					lastExpression = null;
+					Parser.fastMath = fastMath;
+					f = ExpressionPlotter.parseExp(exp);
+					lastExpression = exp;
+					lastFastMath = fastMath;
+				}
+			} catch (ParseFailedException e) {
+				out.writeByte(PARSE_FAILED);
+				writeString(out, String.valueOf(e.getMessage()));
+				out.flush();
+				continue;
+			}
+
+			// Sampled in a buffer for the whole plot, so every x is computed as it would be in one piece.
+			SampleBuffer samples = new SampleBuffer(x0, dx, to);
+			int precise = CurveSampler.sampleTile(f, samples, from, to, oversampling);
+			out.writeByte(OK);
+			out.writeInt(precise);
+			for (double[] values : new double[][] {samples.first, samples.min, samples.max, samples.last}) {
+				for (int i = from; i < to; i++) {out.writeDouble(values[i]);}
+			}
+			out.flush();
+		}
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
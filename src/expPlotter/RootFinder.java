@@ -0,0 +1,144 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the roots and turning points of a parsed expression over an interval.
+ *
+ * A coarse pass evaluates f and f' (using dual numbers) at a handful of points. Every interval
+ * where f or f' changes sign brackets a root or an extremum, which is then refined with a Newton
+ * iteration that falls back to bisection whenever a step would leave the bracket.
+ * This takes far fewer evaluations than scanning the curve pixel by pixel.
+ */
+final class RootFinder {
+	static final int COARSE_SAMPLES = 64;
+	private static final int MAX_ITERATIONS = 60;
+
+	private final Evaluator f;
+	private final List<Double> roots = new ArrayList<Double>();
+	private final List<Double> extrema = new ArrayList<Double>();
+	private int evaluations;
+
+	private RootFinder(Evaluator f) {
+		this.f = f;
+	}
+
+	/**
+	 * Solves for the roots and extrema of f in [a, b].
+	 */
+	static RootFinder solve(Evaluator f, double a, double b) {
+		RootFinder finder = new RootFinder(f);
+		finder.search(a, b);
+		return finder;
+	}
+
+	List<Double> roots() {return roots;}
+
+	List<Double> extrema() {return extrema;}
+
+	int evaluations() {return evaluations;}
+
+	private Dual eval(double x) {
+		evaluations++;
+		return f.evaluate(Dual.variable(x));
+	}
+
+	private void search(double a, double b) {
+		double h = (b - a) / COARSE_SAMPLES;
+		double tolerance = Math.abs(h) * 1e-10;
+
+		double[] xs = new double[COARSE_SAMPLES + 1];
+		Dual[] samples = new Dual[COARSE_SAMPLES + 1];
+		double largest = 0;
+		for (int i = 0; i <= COARSE_SAMPLES; i++) {
+			xs[i] = a + i * h;
+			samples[i] = eval(xs[i]);
+			if (Double.isFinite(samples[i].value)) {
+				largest = Math.max(largest, Math.abs(samples[i].value));
+			}
+		}
+
+		for (int i = 0; i < COARSE_SAMPLES; i++) {
+			Dual lo = samples[i], hi = samples[i + 1];
+
+			if (lo.value == 0) {
+				roots.add(xs[i]);
+			} else if (hi.value != 0 && changesSign(lo.value, hi.value)) {
+				double x = converge(xs[i], xs[i + 1], lo.value, false, tolerance);
+				// A sign change across a pole (e.g. 1/x) converges onto the pole; discard it.
+				if (Math.abs(eval(x).value) <= Math.min(Math.abs(lo.value), Math.abs(hi.value))) {
+					roots.add(x);
+				}
+			}
+
+			if (lo.derivative == 0 && i > 0 && changesSign(samples[i - 1].derivative, hi.derivative)) {
+				extrema.add(xs[i]);
+			} else if (changesSign(lo.derivative, hi.derivative)) {
+				double x = converge(xs[i], xs[i + 1], lo.derivative, true, tolerance);
+				Dual at = eval(x);
+				if (Double.isFinite(at.value)
+						&& Math.abs(at.derivative) <= Math.min(Math.abs(lo.derivative), Math.abs(hi.derivative))) {
+					extrema.add(x);
+					// A turning point that touches zero (e.g. x^2) is a root without a sign change.
+					if (Math.abs(at.value) <= largest * 1e-9 && !nearAny(roots, x, Math.abs(h))) {
+						roots.add(x);
+					}
+				}
+			}
+		}
+		if (samples[COARSE_SAMPLES].value == 0) {
+			roots.add(xs[COARSE_SAMPLES]);
+		}
+	}
+
+	/**
+	 * Safeguarded Newton iteration on g over the bracket [lo, hi], where g(lo) = gLo.
+	 * For roots g = f and the slope is f' from the dual evaluation. For extrema g = f', and the
+	 * slope f'' is estimated from successive iterates (a secant step).
+	 */
+	private double converge(double lo, double hi, double gLo, boolean extremum, double tolerance) {
+		double x = (lo + hi) / 2;
+		double previousX = lo, previousG = gLo;
+		double lastStep = hi - lo;
+
+		for (int i = 0; i < MAX_ITERATIONS && hi - lo > tolerance; i++) {
+			Dual d = eval(x);
+			double g = extremum ? d.derivative : d.value;
+			if (g == 0) {return x;}
+
+			// Shrink the bracket so it still contains the sign change.
+			if (changesSign(gLo, g)) {
+				hi = x;
+			} else {
+				lo = x;
+				gLo = g;
+			}
+
+			double slope = extremum ? (g - previousG) / (x - previousX) : d.derivative;
+			double next = x - g / slope;
+			previousX = x;
+			previousG = g;
+
+			// Bisect if Newton leaves the bracket (or is NaN) or isn't converging at least as fast as bisection.
+			if (!(next > lo && next < hi) || Math.abs(next - x) * 2 > lastStep) {
+				next = (lo + hi) / 2;
+			}
+			lastStep = Math.abs(next - x);
+			x = next;
+			if (lastStep < tolerance) {break;}
+		}
+		return x;
+	}
+
+	private static boolean changesSign(double a, double b) {
+		return (a < 0 && b > 0) || (a > 0 && b < 0);
+	}
+
+	private static boolean nearAny(List<Double> xs, double x, double distance) {
+		for (double other : xs) {
+			if (Math.abs(other - x) < distance) {return true;}
+		}
+		return false;
+	}
+}
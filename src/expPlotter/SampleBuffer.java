@@ -0,0 +1,41 @@
+package expPlotter;
+
+/**
+ * The sampled curve for one plot: for every pixel column, the first, minimum, maximum and last
+ * value of f over the samples taken in that column (M4 aggregation).
+ * Column i covers the x values centred on x0 + i*dx.
+ */
+final class SampleBuffer {
+	final double x0;
+	final double dx;
+	final int columns;
+	
+	final double[] first;
+	final double[] min;
+	final double[] max;
+	final double[] last;
+	
+	// How many columns were evaluated in double-double precision (see CurveSampler).
+	int preciseColumns;
+	
+	SampleBuffer(double x0, double dx, int columns) {
+		this.x0 = x0;
+		this.dx = dx;
+		this.columns = columns;
+		first = new double[columns];
+		min = new double[columns];
+		max = new double[columns];
+		last = new double[columns];
+	}
+	
+	double x(int column) {
+		return x0 + column*dx;
+	}
+	
+	/**
+	 * Whether any sample in this column produced a number (rather than NaN).
+	 */
+	boolean hasValue(int column) {
+		return !Double.isNaN(min[column]);
+	}
+}
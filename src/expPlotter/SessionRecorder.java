@@ -0,0 +1,64 @@
+package expPlotter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes the actions of a live session to a file that SessionReplay can play back.
+ *
+ * Each line is the time in milliseconds since recording started, the action, and for "expr" the
+ * expression that was entered, e.g.
+ *
+ *   # Function Grapher session v1
+ *   0 expr sin(x)/x
+ *   2150 zoomIn
+ *   3300 fastMath
+ *
+ * Actions: expr, zoomIn, zoomOut, oversampling, fastMath, hornerFma, progressive (the toggles switch the option).
+ */
+final class SessionRecorder {
+	static final String HEADER = "# Function Grapher session v1";
+
+	private final File file;
+	private final BufferedWriter out;
+	private final long start = System.nanoTime();
+	private int actions;
+
+	SessionRecorder(File file) throws IOException {
+		this.file = file;
+		this.out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		out.write(HEADER);
+		out.newLine();
+		out.flush();
+	}
+
+	/**
+	 * Appends an action. Each line is flushed, so the file is usable even if the plotter is killed.
+	 * @param argument : the expression for "expr", otherwise null.
+	 */
+	synchronized void record(String action, String argument) {
+		try {
+			out.write((System.nanoTime() - start) / 1000000 + " " + action + (argument == null ? "" : " " + argument));
+			out.newLine();
+			out.flush();
+			actions++;
+		} catch (IOException e) {
+			// Losing the recording shouldn't break the session; the file just ends early.
+		}
+	}
+
+	synchronized void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// Everything recorded has already been flushed.
+		}
+	}
+
+	File file() {return file;}
+
+	synchronized int actions() {return actions;}
+}
@@ -0,0 +1,274 @@
+package expPlotter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Replays a session recorded by SessionRecorder and reports the latency of every action.
+ * Run with: java expPlotter.SessionReplay <session file> [--gui] [--realtime]
+ *
+ * Headless (the default), each action runs the same PlotPipeline as ExpressionPlotter.run() (parse, Horner
+ * detection, zoom prefetch, sampling, clipping, roots and extrema, range analysis and saving the session)
+ * without drawing anything. With --gui the actions drive a real ExpressionPlotter on the event dispatch
+ * thread, and each latency includes painting the result. Either way the session is saved to a temporary
+ * file, not the user's.
+ *
+ * By default actions run back to back, which measures throughput. With --realtime the recorded pauses
+ * between actions are kept, which matters for anything that works in the background while the user is
+ * idle (e.g. zoom prefetching).
+ */
+public class SessionReplay {
+
+	/**
+	 * Something that can perform the recorded actions.
+	 */
+	interface Target {
+		void expression(String exp);
+		void zoomIn();
+		void zoomOut();
+		void toggle(String option);
+	}
+
+	static final class Action {
+		final long time; // ms since the start of the session
+		final String name;
+		final String argument;
+
+		Action(long time, String name, String argument) {
+			this.time = time;
+			this.name = name;
+			this.argument = argument;
+		}
+	}
+
+	private static final List<String> TOGGLES = Arrays.asList("oversampling", "fastMath", "hornerFma", "progressive");
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: java expPlotter.SessionReplay <session file> [--gui] [--realtime]");
+			return;
+		}
+		List<String> flags = Arrays.asList(args).subList(1, args.length);
+		List<Action> actions = load(new File(args[0]));
+		File session = File.createTempFile("replay", ".session");
+		session.delete(); // Start without a stored session.
+		session.deleteOnExit();
+		Target target = flags.contains("--gui") ? new GuiTarget(session) : new HeadlessTarget(session);
+
+		System.out.println("Replaying " + actions.size() + " actions from " + args[0]
+				+ (flags.contains("--gui") ? " with the GUI" : " headless") + (flags.contains("--realtime") ? " in real time" : ""));
+		replay(actions, target, flags.contains("--realtime"));
+		System.exit(0);
+	}
+
+	static List<Action> load(File file) throws IOException {
+		List<Action> actions = new ArrayList<Action>();
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i).trim();
+			if (line.isEmpty() || line.startsWith("#")) {continue;}
+
+			String[] parts = line.split(" ", 3);
+			String name = parts.length > 1 ? parts[1] : "";
+			boolean known = name.equals("expr") || name.equals("zoomIn") || name.equals("zoomOut") || TOGGLES.contains(name);
+			if (!known) {
+				throw new IOException(file.getName() + " line " + (i + 1) + ": unknown action '" + name + "'");
+			}
+			try {
+				actions.add(new Action(Long.parseLong(parts[0]), name, parts.length > 2 ? parts[2] : ""));
+			} catch (NumberFormatException e) {
+				throw new IOException(file.getName() + " line " + (i + 1) + ": bad time '" + parts[0] + "'");
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * Performs the actions on the target, timing each one, and prints the latency percentiles
+	 * per action and overall.
+	 */
+	static void replay(List<Action> actions, Target target, boolean realtime) throws InterruptedException {
+		Map<String, List<Long>> latencies = new LinkedHashMap<String, List<Long>>();
+		List<Long> all = new ArrayList<Long>();
+		long busy = 0;
+		long start = System.nanoTime();
+
+		for (Action action : actions) {
+			if (realtime) {
+				long wait = action.time - (System.nanoTime() - start) / 1000000;
+				if (wait > 0) {Thread.sleep(wait);}
+			}
+			long begin = System.nanoTime();
+			perform(action, target);
+			long latency = System.nanoTime() - begin;
+
+			busy += latency;
+			all.add(latency);
+			latencies.computeIfAbsent(action.name, name -> new ArrayList<Long>()).add(latency);
+		}
+		long wall = System.nanoTime() - start;
+
+		System.out.printf("%-14s %6s %10s %10s %10s %10s%n", "action", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+		for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+			printRow(entry.getKey(), entry.getValue());
+		}
+		printRow("all", all);
+		System.out.printf("Throughput: %.1f actions/s busy (%.2f s), %.1f actions/s wall clock (%.2f s)%n",
+				all.size() / (busy / 1e9), busy / 1e9, all.size() / (wall / 1e9), wall / 1e9);
+	}
+
+	private static void perform(Action action, Target target) {
+		switch (action.name) {
+		case "expr": target.expression(action.argument); break;
+		case "zoomIn": target.zoomIn(); break;
+		case "zoomOut": target.zoomOut(); break;
+		default: target.toggle(action.name); break;
+		}
+	}
+
+	private static void printRow(String name, List<Long> nanos) {
+		long[] sorted = new long[nanos.size()];
+		for (int i = 0; i < sorted.length; i++) {sorted[i] = nanos.get(i);}
+		Arrays.sort(sorted);
+		System.out.printf("%-14s %6d %10.2f %10.2f %10.2f %10.2f%n", name, sorted.length,
+				percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6, percentile(sorted, 99) / 1e6,
+				sorted[sorted.length - 1] / 1e6);
+	}
+
+	/**
+	 * Nearest-rank percentile of sorted values.
+	 */
+	static long percentile(long[] sorted, double p) {
+		int rank = (int) Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * Does what ExpressionPlotter.plot() does with the same settings, through the same PlotPipeline, minus the
+	 * drawing. Range analysis runs in the background and saving is done on its own thread, as in the GUI.
+	 * Progressive rendering only changes what is drawn when, so it is ignored here.
+	 */
+	private static final class HeadlessTarget implements Target {
+		// As in ExpressionPlotter, with its default window size on a screen without scaling.
+		private static final int GRID_SIZE = 500;
+
+		private final PlotPipeline pipeline = new PlotPipeline(Runnable::run);
+		private String exp = "";
+		private double scale = 1;
+		private int oversampling = 1;
+		private boolean fastMath;
+		private boolean hornerFma;
+
+		@Override
+		public void expression(String exp) {
+			this.exp = exp.replaceAll(" ", "");
+			plot();
+		}
+
+		HeadlessTarget(File session) {
+			pipeline.keepSessions(new ExpressionStore(session));
+		}
+
+		@Override
+		public void zoomIn() {
+			scale /= ExpressionPlotter.ZOOM_FACTOR;
+			plot();
+		}
+
+		@Override
+		public void zoomOut() {
+			scale *= ExpressionPlotter.ZOOM_FACTOR;
+			plot();
+		}
+
+		@Override
+		public void toggle(String option) {
+			switch (option) {
+			case "oversampling": oversampling = oversampling == 1 ? ExpressionPlotter.OVERSAMPLING_FACTOR : 1; break;
+			case "fastMath": fastMath = !fastMath; break;
+			case "hornerFma": hornerFma = !hornerFma; break;
+			default: break;
+			}
+			plot();
+		}
+
+		private void plot() {
+			if (exp.isEmpty()) {return;}
+			try {
+				Evaluator root = pipeline.parse(exp, fastMath);
+				PlotPipeline.View view = new PlotPipeline.View(scale, GRID_SIZE, 1, oversampling, fastMath, hornerFma);
+				pipeline.cancelAnalysis();
+				Evaluator f = PlotPipeline.evaluatorFor(root, view);
+
+				SampleBuffer samples = pipeline.prefetched(exp, view);
+				if (samples == null) {
+					samples = PlotPipeline.sample(f, view);
+				}
+				PlotPipeline.clip(samples, view, (xs, ys, n) -> {});
+				RootFinder finder = RootFinder.solve(root, view.left(), view.right());
+				pipeline.analyze(exp, root, view, finder.extrema(), analysis -> {});
+				pipeline.prefetchNeighbours(root, exp, view);
+				pipeline.save(exp, view, e -> System.err.println("Could not save the session: " + e.getMessage()));
+			} catch (ParseFailedException e) {
+				// The GUI would print the error; it still counts as an action.
+			}
+		}
+	}
+
+	/**
+	 * Drives a real ExpressionPlotter. Each action runs on the event dispatch thread and is followed by
+	 * an immediate repaint, so its latency is what the user would wait for.
+	 */
+	private static final class GuiTarget implements Target {
+		private final ExpressionPlotter plotter = new ExpressionPlotter();
+
+		GuiTarget(File session) {
+			onEdt(() -> plotter.restoreSession(session));
+		}
+
+		@Override
+		public void expression(String exp) {
+			onEdt(() -> {
+				plotter.GUI.setTextFieldTxt(exp);
+				plotter.run();
+			});
+		}
+
+		@Override
+		public void zoomIn() {onEdt(plotter::zoomIn);}
+
+		@Override
+		public void zoomOut() {onEdt(plotter::zoomOut);}
+
+		@Override
+		public void toggle(String option) {
+			switch (option) {
+			case "oversampling": onEdt(plotter::toggleOversampling); break;
+			case "fastMath": onEdt(plotter::toggleFastMath); break;
+			case "hornerFma": onEdt(plotter::toggleHornerFma); break;
+			case "progressive": onEdt(plotter::toggleProgressive); break;
+			default: break;
+			}
+		}
+
+		private void onEdt(Runnable action) {
+			try {
+				SwingUtilities.invokeAndWait(() -> {
+					action.run();
+					plotter.GUI.redrawNow();
+				});
+			} catch (Exception e) {
+				throw new RuntimeException("Replaying an action failed", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package expPlotter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+class TermNode implements ParseNode {
+	
+	ArrayList<ParseNode> children = new ArrayList<ParseNode>();
+	// This Map tells us whether we should mutiply or divide the next term.
+	Map<ParseNode, Boolean> multMap = new HashMap<ParseNode, Boolean>(); 
+	
+	@Override
+	public double evaluate(double x) {
+		double result = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (multMap.get(child)) { // If true, we multiply the factors.
+				result *= child.evaluate(x);
+			} else { // Otherwise, we divide.
+				result /= child.evaluate(x);
+			}
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		Dual result = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (multMap.get(child)) {
+				result = result.multiply(child.evaluate(x));
+			} else {
+				result = result.divide(child.evaluate(x));
+			}
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		DoubleDouble result = children.get(0).evaluate(x);
+		
+		for (int i = 1; i < children.size(); i++) {
+			ParseNode child = children.get(i);
+			if (multMap.get(child)) {
+				result = result.multiply(child.evaluate(x));
+			} else {
+				result = result.divide(child.evaluate(x));
+			}
+		}
+		
+		return result;
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		children.add(new FactorNode().parse(s));
+		
+		while (true) {
+			if (Parser.checkEat(Parser.TIMES, s) || 
+					s.hasNext(Parser.OPEN_BRACKET) || s.hasNext(Parser.VARIABLE)) {
+				ParseNode nextTerm = new FactorNode().parse(s);
+				children.add(nextTerm);
+				
+				multMap.put(nextTerm, true);
+			} else if (Parser.checkEat(Parser.DIVIDE, s)) {
+				ParseNode nextTerm = new FactorNode().parse(s);
+				children.add(nextTerm);
+				
+				multMap.put(nextTerm, false);
+			} else {
+				break;
+			}
+		}
+		
+		return this;
+	}
+	
+}
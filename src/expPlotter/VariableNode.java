@@ -0,0 +1,35 @@
+package expPlotter;
+
+import java.util.Scanner;
+
+class VariableNode implements ParseNode {
+	
+	@Override
+	public double evaluate(double x) {
+		return x;
+	}
+	
+	@Override
+	public Dual evaluate(Dual x) {
+		return x;
+	}
+	
+	@Override
+	public DoubleDouble evaluate(DoubleDouble x) {
+		return x;
+	}
+
+	@Override
+	public ParseNode parse(Scanner s) {
+		// If there has been a letter which has already been used as a character, then check that the next token
+		// matches this letter. Otherwise, make this token the recognised character.
+		if (Parser.recognizedVar == null) {
+			Parser.recognizedVar = s.next();
+		} else {
+			Parser.requireEat(Parser.recognizedVar, "VARIABLE", s);
+		}
+		
+		return this;
+	}
+	
+}
@@ -0,0 +1,154 @@
+package expPlotter;
+
+import sGUI.Raster;
+
+/**
+ * Clips a curve to the viewport before it is drawn. Vertices come in as doubles in pixel coordinates,
+ * however far off-screen, and only the visible parts leave as int polylines.
+ *
+ * Each segment is trimmed to the viewport with Liang-Barsky (Raster's edge test). A segment entirely outside it is culled and
+ * ends the current polyline; a segment that leaves or enters the viewport is cut at the edge, so the
+ * polyline ends or starts there. A non-finite vertex (from e.g. 1/0 or 0^-1) is a gap.
+ */
+final class ViewportClipper {
+
+	/**
+	 * Receives the visible polylines. The arrays are reused, so they must be drawn or copied straight away.
+	 */
+	interface Sink {
+		void polyline(int[] xs, int[] ys, int n);
+	}
+
+	private final double minX, minY, maxX, maxY;
+	private final Sink sink;
+	private final int[] xs, ys;
+	private int n;
+
+	// The previous vertex, unclipped, if the curve hasn't had a gap since.
+	private double lastX, lastY;
+	private boolean hasLast;
+
+	private int segments, culled, clipped, gaps;
+
+	/**
+	 * @param capacity : the longest polyline passed to the sink at once; longer ones are split.
+	 */
+	ViewportClipper(double minX, double minY, double maxX, double maxY, int capacity, Sink sink) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.sink = sink;
+		xs = new int[Math.max(capacity, 2)];
+		ys = new int[Math.max(capacity, 2)];
+	}
+
+	/**
+	 * Continues the curve to (x, y).
+	 */
+	void vertex(double x, double y) {
+		if (!Double.isFinite(x) || !Double.isFinite(y)) {
+			if (hasLast) {gaps++;}
+			gap();
+			return;
+		}
+		if (!hasLast) {
+			hasLast = true;
+			lastX = x;
+			lastY = y;
+			if (inside(x, y)) {add(x, y);}
+			return;
+		}
+		segment(lastX, lastY, x, y);
+		lastX = x;
+		lastY = y;
+	}
+
+	/**
+	 * Ends the current polyline; the next vertex starts a new one.
+	 */
+	void gap() {
+		flush();
+		hasLast = false;
+	}
+
+	/**
+	 * Draws whatever is left. Call once the last vertex has been added.
+	 */
+	void finish() {
+		gap();
+	}
+
+	int segments() {return segments;}
+
+	/** Segments dropped because no part of them was in the viewport. */
+	int culled() {return culled;}
+
+	/** Segments partly in the viewport, trimmed to its edge. */
+	int clipped() {return clipped;}
+
+	/** Places where the curve was split at a non-finite value. */
+	int gaps() {return gaps;}
+
+	String stats() {
+		return String.format("%d segments: %d culled, %d clipped, %d split at non-finite values", segments, culled, clipped, gaps);
+	}
+
+	private void segment(double x1, double y1, double x2, double y2) {
+		segments++;
+		double dx = x2 - x1, dy = y2 - y1;
+		double[] range = {0, 1};
+		// Both ends beyond the same edge is the common case (a curve off the top or bottom), and testing it
+		// directly also avoids trusting t when dx or dy is so large that x1 + t*dx loses all precision.
+		boolean sameSide = (x1 < minX && x2 < minX) || (x1 > maxX && x2 > maxX) || (y1 < minY && y2 < minY) || (y1 > maxY && y2 > maxY);
+		if (sameSide || !Raster.clip(-dx, x1 - minX, range) || !Raster.clip(dx, maxX - x1, range)
+				|| !Raster.clip(-dy, y1 - minY, range) || !Raster.clip(dy, maxY - y1, range)) {
+			culled++;
+			flush();
+			return;
+		}
+		if (range[0] > 0 || range[1] < 1) {clipped++;}
+		if (range[0] > 0) {
+			// Entering the viewport: a new polyline starts at the edge.
+			flush();
+			add(x1 + range[0] * dx, y1 + range[0] * dy);
+		} else if (n == 0) {
+			add(x1, y1); // Starting from an edge point of a culled segment.
+		}
+		if (range[1] < 1) {
+			add(x1 + range[1] * dx, y1 + range[1] * dy);
+			flush(); // Leaving it.
+		} else {
+			add(x2, y2);
+		}
+	}
+
+	private boolean inside(double x, double y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	private void add(double x, double y) {
+		// Points on an edge can be a rounding error outside it.
+		x = Math.min(Math.max(x, minX), maxX);
+		y = Math.min(Math.max(y, minY), maxY);
+		int px = (int) Math.floor(x + 0.5), py = (int) Math.floor(y + 0.5);
+		if (n > 0 && xs[n-1] == px && ys[n-1] == py) {return;} // Skip repeated vertices.
+		if (n == xs.length) {
+			// Full: draw what there is and carry on from its last vertex.
+			sink.polyline(xs, ys, n);
+			xs[0] = xs[n-1];
+			ys[0] = ys[n-1];
+			n = 1;
+		}
+		xs[n] = px;
+		ys[n] = py;
+		n++;
+	}
+
+	private void flush() {
+		if (n > 0) {
+			sink.polyline(xs, ys, n);
+		}
+		n = 0;
+	}
+}
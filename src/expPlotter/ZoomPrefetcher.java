@@ -0,0 +1,133 @@
+package expPlotter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the samples for the next zoom levels in the background while the user looks at the current one,
+ * so clicking "Scale up" or "Scale down" can draw straight away.
+ *
+ * Prefetched levels are kept per plot (the expression and every setting that affects its samples).
+ * Starting a different plot cancels and forgets the old plot's levels. The cache holds at most
+ * memoryBudget bytes of samples, evicting the least recently used levels first.
+ */
+final class ZoomPrefetcher {
+	private final ExecutorService executor;
+	private final long memoryBudget;
+
+	private String plot;
+	// Scale -> samples being computed or already computed for the current plot, least recently used first.
+	private final LinkedHashMap<Double, Entry> levels = new LinkedHashMap<Double, Entry>(16, 0.75f, true);
+	private long bytesUsed;
+
+	private int hits;
+	private int misses;
+
+	private static final class Entry {
+		final Future<SampleBuffer> future;
+		final long bytes;
+
+		Entry(Future<SampleBuffer> future, long bytes) {
+			this.future = future;
+			this.bytes = bytes;
+		}
+	}
+
+	ZoomPrefetcher(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		this.executor = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "Zoom prefetcher");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+	}
+
+	/**
+	 * Queues the samples for a zoom level of a plot, unless they are already cached or queued.
+	 * @param columns : the number of columns the task will sample, which determines its memory use.
+	 */
+	synchronized void prefetch(String plot, double scale, int columns, Callable<SampleBuffer> task) {
+		switchTo(plot);
+		if (levels.containsKey(scale)) {return;}
+
+		long bytes = 4L * Double.BYTES * columns; // first, min, max and last
+		if (bytes > memoryBudget) {return;}
+		while (bytesUsed + bytes > memoryBudget) {
+			evictEldest();
+		}
+		levels.put(scale, new Entry(executor.submit(task), bytes));
+		bytesUsed += bytes;
+	}
+
+	/**
+	 * Returns the prefetched samples for a zoom level of a plot, or null if they weren't prefetched.
+	 * If the level is still being computed this waits for it, which is quicker than starting again.
+	 */
+	SampleBuffer take(String plot, double scale) {
+		Entry entry;
+		synchronized (this) {
+			// Only count lookups for a plot we could have prefetched for; a new expression is never a hit.
+			boolean samePlot = plot.equals(this.plot);
+			switchTo(plot);
+			entry = levels.get(scale);
+			if (entry == null || entry.future.isCancelled()) {
+				if (samePlot) {misses++;}
+				return null;
+			}
+			hits++;
+		}
+		try {
+			return entry.future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | CancellationException e) {
+			// Fall through and let the caller compute it.
+		}
+		synchronized (this) {
+			hits--;
+			misses++;
+		}
+		return null;
+	}
+
+	/**
+	 * The fraction of zoom levels that were ready (or in progress) when they were needed.
+	 */
+	synchronized double hitRate() {
+		int total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	synchronized int hits() {return hits;}
+
+	synchronized int misses() {return misses;}
+
+	/**
+	 * Cancels everything queued for the previous plot when the plot changes.
+	 */
+	private void switchTo(String plot) {
+		if (plot.equals(this.plot)) {return;}
+		this.plot = plot;
+		for (Entry entry : levels.values()) {
+			entry.future.cancel(true);
+		}
+		levels.clear();
+		bytesUsed = 0;
+	}
+
+	private void evictEldest() {
+		Iterator<Map.Entry<Double, Entry>> eldest = levels.entrySet().iterator();
+		Entry entry = eldest.next().getValue();
+		entry.future.cancel(true);
+		bytesUsed -= entry.bytes;
+		eldest.remove();
+	}
+}
@@ -1,5 +1,5 @@
-package sGUI;
-
-public interface ButtonFunction {
-	public void func();
-}
+package sGUI;
+
+public interface ButtonFunction {
+	public void func();
+}
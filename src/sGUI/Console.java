@@ -0,0 +1,119 @@
+package sGUI;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * A read-only text area that keeps only the last 'capacity' lines printed to it.
+ *
+ * Lines can be printed from any thread. They go into a fixed-size ring buffer, and the view catches up
+ * at most once every FLUSH_MILLIS (about once a frame) on the event dispatch thread, appending the new
+ * lines and dropping the oldest ones in a single edit. Memory use stays the same however much is printed:
+ * at most 'capacity' lines, each cut to MAX_LINE_LENGTH characters.
+ *
+ * @author Sam Chan
+ */
+final class Console extends JTextArea {
+
+	private static final long serialVersionUID = 1L;
+	static final int FLUSH_MILLIS = 16;
+	static final int MAX_LINE_LENGTH = 500;
+
+	private final int capacity;
+	// Ring buffer of the last 'capacity' lines; lines[head] is the oldest.
+	private final String[] lines;
+	private int head;
+	private int size;
+	// How many of the newest lines aren't in the view yet (at most capacity).
+	private int unflushed;
+	// The number of lines in the view. Only used on the event dispatch thread.
+	private int shown;
+	private final Timer flushTimer;
+
+	/**
+	 * Construct a Console.
+	 * @param rows : preferred height in lines.
+	 * @param columns : preferred width in characters.
+	 * @param capacity : the number of lines to keep.
+	 */
+	public Console(int rows, int columns, int capacity) {
+		super(rows, columns);
+		this.capacity = capacity;
+		this.lines = new String[capacity];
+		setEditable(false);
+
+		flushTimer = new Timer(FLUSH_MILLIS, e -> flush());
+		flushTimer.setRepeats(false);
+	}
+
+	/**
+	 * Adds a line, evicting the oldest if the console is full. Can be called from any thread.
+	 * Text with line breaks in it is added as several lines.
+	 */
+	public void println(String text) {
+		// The view is trimmed by line count, so every line in the buffer must be exactly one line of the view.
+		int start = 0;
+		for (int end; (end = text.indexOf('\n', start)) >= 0; start = end + 1) {
+			add(text.substring(start, end));
+		}
+		add(text.substring(start));
+	}
+
+	private void add(String line) {
+		if (line.length() > MAX_LINE_LENGTH) {
+			line = line.substring(0, MAX_LINE_LENGTH) + "... (" + line.length() + " characters)";
+		}
+		boolean schedule;
+		synchronized (this) {
+			lines[(head + size) % capacity] = line;
+			if (size < capacity) {
+				size++;
+			} else {
+				head = (head + 1) % capacity;
+			}
+			schedule = unflushed == 0;
+			unflushed = Math.min(unflushed + 1, capacity);
+		}
+		// The first unflushed line schedules a flush; later ones just join it.
+		// The timer is only touched on the event dispatch thread.
+		if (schedule) {SwingUtilities.invokeLater(flushTimer::restart);}
+	}
+
+	/**
+	 * Brings the view up to date with the ring buffer. Runs on the event dispatch thread.
+	 */
+	private void flush() {
+		StringBuilder text = new StringBuilder();
+		int added;
+		synchronized (this) {
+			added = unflushed;
+			for (int i = size - added; i < size; i++) {
+				text.append(lines[(head + i) % capacity]).append('\n');
+			}
+			unflushed = 0;
+		}
+		if (added == 0) {return;}
+
+		Document doc = getDocument();
+		if (added == capacity) {
+			// Everything in the view has been evicted.
+			setText(text.toString());
+			shown = added;
+		} else {
+			try {
+				doc.insertString(doc.getLength(), text.toString(), null);
+				shown += added;
+				if (shown > capacity) {
+					doc.remove(0, getLineEndOffset(shown - capacity - 1));
+					shown = capacity;
+				}
+			} catch (BadLocationException e) {
+				throw new Error("Console view out of step with its buffer", e);
+			}
+		}
+		setCaretPosition(doc.getLength()); // Keep the newest line in view.
+	}
+}
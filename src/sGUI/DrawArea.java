@@ -1,65 +1,230 @@
-package sGUI;
-
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.swing.JPanel;
-
-public class DrawArea extends JPanel{
-	
-	private static final long serialVersionUID = 1L;
-	private List<Shape> shapes = new ArrayList<Shape>();
-	SimpleGUI GUI;
-	
-	public DrawArea(SimpleGUI gui) {
-		this.GUI = gui;
-	}
-	
-	/*
-	 * 
-	 * This implementation is not good at all for heavy graphics operations.
-	 * (it repaints the entire screen if anything at all changes)
-	 * 
-	 * This implementation enables interacting with individual shapes that have been drawn 
-	 * behind other shapes (move/removing etc)- which can be handy. 
-	 * However, this means you are obliged to regularly clear the backlog of unused shapes with 
-	 * repeating animations. So, it is not good for animations.
-	 * 
-	 */
-	
-	public void paintComponent(Graphics g) {
-		Graphics2D g2D = (Graphics2D) g;
-		super.paintComponent(g2D);
-		// Make the background white
-		Color col = g2D.getColor();
-		g2D.setColor(Color.white);
-		g2D.fillRect(0, 0, getWidth(), getHeight());
-		g2D.setColor(col);
-		g2D.setStroke(new BasicStroke(GUI.getLineWidth()));
-		
-		// Then draw all the shapes on top of the background
-		if (shapes.isEmpty()) {return;}
-		for (int i = 0; i < shapes.size(); i++) {
-			Shape s = shapes.get(i);
-			if (s.isFillShape()) {
-				s.fill(g2D);
-			} else {s.draw(g2D);}
-		}
-	}
-	
-	public void addShape(Shape s) {shapes.add(s);}
-	
-	public void clearShapes() {shapes.clear();}
-	
-	public void removeShape(Shape s) {shapes.remove(s);}
-	
-	
-}
-
-
-
-
+package sGUI;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+public class DrawArea extends JPanel{
+	
+	private static final long serialVersionUID = 1L;
+	private ShapeIndex shapes = new ShapeIndex(); // Only touched on the event dispatch thread
+	// Changes to the shapes made from any thread wait here, in order, until the event dispatch thread applies them.
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean applyScheduled = new AtomicBoolean();
+	// The changes a thread has staged since beginBatch(), if it is in a batch.
+	private final ThreadLocal<List<Runnable>> batch = new ThreadLocal<List<Runnable>>();
+	// While set, this prerendered frame is shown instead of the shapes (see SimpleGUI.presentFrame).
+	private volatile Image frame;
+	// Painted over the shapes. Only touched on the event dispatch thread.
+	private Overlay overlay;
+	private Rectangle overlayBounds;
+	// The width shapes are stroked with, read on every paint.
+	private final IntSupplier lineWidth;
+	SimpleGUI GUI;
+	
+	public DrawArea(SimpleGUI gui) {
+		this(gui::getLineWidth);
+		this.GUI = gui;
+	}
+	
+	/**
+	 * Construct a DrawArea without a SimpleGUI, e.g. for a headless test, stroking shapes lineWidth wide.
+	 */
+	DrawArea(IntSupplier lineWidth) {
+		this.lineWidth = lineWidth;
+	}
+	
+	/*
+	 * 
+	 * This implementation is not good at all for heavy graphics operations.
+	 * (it repaints the entire screen if anything at all changes)
+	 * 
+	 * This implementation enables interacting with individual shapes that have been drawn 
+	 * behind other shapes (move/removing etc)- which can be handy. 
+	 * However, this means you are obliged to regularly clear the backlog of unused shapes with 
+	 * repeating animations. So, it is not good for animations.
+	 * 
+	 * Animations should instead render whole frames themselves and hand them over with setFrame,
+	 * which bypasses the shape list until the frame is cleared.
+	 * 
+	 * Concurrency: shapes can be added and removed from any thread. The changes are queued without
+	 * locking and applied on the event dispatch thread before it paints, so a paint never sees the shapes
+	 * half changed. A thread can group its changes with beginBatch() and endBatch() so they are applied
+	 * (and so appear on screen) all at once.
+	 * 
+	 */
+	
+	public void paintComponent(Graphics g) {
+		Graphics2D g2D = (Graphics2D) g;
+		super.paintComponent(g2D);
+		applyPending();
+		Image current = frame;
+		if (current != null) {
+			synchronized (current) {g2D.drawImage(current, 0, 0, null);}
+			return;
+		}
+		// Make the background white
+		Color col = g2D.getColor();
+		g2D.setColor(Color.white);
+		g2D.fillRect(0, 0, getWidth(), getHeight());
+		g2D.setColor(col);
+		int lineWidth = this.lineWidth.getAsInt();
+		g2D.setStroke(new BasicStroke(lineWidth));
+		
+		// Then draw the shapes in the area being painted on top of the background.
+		// Shape bounds don't include the line width, so look a little further out.
+		Rectangle clip = g2D.getClipBounds();
+		int pad = lineWidth + 1;
+		List<Shape> visible = clip == null ? shapes.all()
+				: shapes.query(clip.x - pad, clip.y - pad, clip.width + 2*pad, clip.height + 2*pad);
+		for (Shape s : visible) {
+			if (s.isFillShape()) {
+				s.fill(g2D);
+			} else {s.draw(g2D);}
+		}
+		paintOverlay(g2D);
+	}
+	
+	private void paintOverlay(Graphics2D g2D) {
+		if (overlay == null) {return;}
+		Color col = g2D.getColor();
+		Stroke stroke = g2D.getStroke();
+		Font font = g2D.getFont();
+		overlay.paint(g2D);
+		g2D.setColor(col);
+		g2D.setStroke(stroke);
+		g2D.setFont(font);
+	}
+	
+	/**
+	 * Paints overlay on top of the shapes from now on, replacing any other. null removes it.
+	 * Can be called from any thread.
+	 */
+	public void setOverlay(Overlay overlay) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(() -> setOverlay(overlay));
+			return;
+		}
+		this.overlay = overlay;
+		overlayChanged();
+	}
+	
+	/**
+	 * Repaints only what the overlay covered before and covers now. Can be called from any thread.
+	 */
+	public void overlayChanged() {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(this::overlayChanged);
+			return;
+		}
+		Rectangle bounds = overlay == null ? null : overlay.bounds();
+		// Antialiased edges can spill a pixel past the bounds.
+		if (overlayBounds != null) {repaint(overlayBounds.x - 1, overlayBounds.y - 1, overlayBounds.width + 2, overlayBounds.height + 2);}
+		if (bounds != null) {repaint(bounds.x - 1, bounds.y - 1, bounds.width + 2, bounds.height + 2);}
+		if (bounds == null) {
+			overlayBounds = null;
+		} else if (overlayBounds == null) {
+			overlayBounds = new Rectangle(bounds);
+		} else {
+			overlayBounds.setBounds(bounds);
+		}
+	}
+	
+	public void addShape(Shape s) {publish(() -> shapes.add(s));}
+	
+	public void clearShapes() {publish(() -> shapes.clear());}
+	
+	public void removeShape(Shape s) {publish(() -> shapes.remove(s));}
+	
+	/**
+	 * Starts staging this thread's changes to the shapes, until endBatch(). Batches don't nest.
+	 */
+	public void beginBatch() {
+		if (batch.get() != null) {throw new IllegalStateException("Already in a batch");}
+		batch.set(new ArrayList<Runnable>());
+	}
+	
+	/**
+	 * Publishes the changes staged since beginBatch() as one change.
+	 */
+	public void endBatch() {
+		List<Runnable> staged = batch.get();
+		if (staged == null) {throw new IllegalStateException("Not in a batch");}
+		batch.remove();
+		publish(() -> {
+			for (Runnable change : staged) {change.run();}
+		});
+	}
+	
+	private void publish(Runnable change) {
+		List<Runnable> staged = batch.get();
+		if (staged != null) {
+			staged.add(change);
+			return;
+		}
+		pending.add(change);
+		// Apply it soon even if nothing repaints, so the queue can't build up.
+		if (applyScheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::applyPending);
+		}
+	}
+	
+	/**
+	 * Applies the changes queued before it was called; any published meanwhile wait for the next pass, so
+	 * busy producers can't keep the event dispatch thread from painting. Only called on that thread.
+	 */
+	private void applyPending() {
+		for (int n = pending.size(); n > 0; n--) {
+			pending.poll().run();
+		}
+		shapes.refileMoved();
+		applyScheduled.set(false);
+		// A change published while this ran may have found a pass already scheduled and not scheduled one.
+		if (!pending.isEmpty() && applyScheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::applyPending);
+		}
+	}
+	
+	/**
+	 * Returns every shape, in painting order. Must be called on the event dispatch thread.
+	 */
+	List<Shape> shapes() {
+		applyPending();
+		return shapes.all();
+	}
+	
+	/**
+	 * Returns the shapes whose bounds are within tolerance pixels of (x, y), topmost first.
+	 * Shapes without bounds are included, since they could be anywhere.
+	 * Must be called on the event dispatch thread.
+	 */
+	public List<Shape> shapesAt(int x, int y, int tolerance) {
+		applyPending();
+		List<Shape> hits = shapes.query(x - tolerance, y - tolerance, 2*tolerance + 1, 2*tolerance + 1);
+		Collections.reverse(hits);
+		return hits;
+	}
+	
+	public void setFrame(Image frame) {this.frame = frame;}
+	
+	
+}
+
+
+
+
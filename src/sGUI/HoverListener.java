@@ -0,0 +1,13 @@
+package sGUI;
+
+/**
+ * Follows the mouse over the graphics area. See SimpleGUI.addHoverListener.
+ *
+ * @author Sam Chan
+ */
+public interface HoverListener {
+	/**
+	 * The mouse is at (x, y) in drawing coordinates, or has left the graphics area if both are NaN.
+	 */
+	public void hovered(double x, double y);
+}
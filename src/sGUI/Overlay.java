@@ -0,0 +1,23 @@
+package sGUI;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/**
+ * Something painted on top of all the shapes that changes far more often than they do, like a readout
+ * following the mouse. It isn't a shape: changing it only repaints the area it covered and now covers
+ * (see SimpleGUI.repaintOverlay), and costs no new objects on the shape list.
+ *
+ * @author Sam Chan
+ */
+public interface Overlay {
+	/**
+	 * The area the overlay paints in, in drawing coordinates, or null if it paints nothing.
+	 */
+	public Rectangle bounds();
+
+	/**
+	 * Paints the overlay. Called on the event dispatch thread, after the shapes.
+	 */
+	public void paint(Graphics2D g);
+}
@@ -0,0 +1,369 @@
+package sGUI;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A software rasterizer that draws polylines straight into the pixel array of an image, without going
+ * through Graphics2D for every segment. Draw everything into it, then put the image on the graphics
+ * pane once (e.g. with SimpleGUI.drawImg(Image, x, y)).
+ *
+ * Aliased lines use Bresenham's algorithm with a square pen of the line width. Antialiased lines use
+ * Xiaolin Wu's algorithm: each step along the line splits its coverage between the pixels either side
+ * of the ideal line. Wider antialiased lines spread the same idea over a span as thick as the line.
+ *
+ * Pixels are premultiplied ARGB, so blending a partly covered pixel is a multiply-add per channel.
+ * Segments are clipped to the image first, so coordinates far outside it cost nothing.
+ *
+ * drawPolylines draws many polylines at once. On a large image it splits the image into bands of rows
+ * and rasterizes the bands in parallel, each band only writing its own rows, so no pixel is shared.
+ *
+ * drawPolylinesSupersampled is the high quality mode: every pixel is tested at N x N subsample points
+ * against the line (a capsule around each segment), and covered in proportion to how many are inside.
+ * A subsample is only counted once however many segments cover it, so the joins between segments don't
+ * darken. Once every segment is in, each pixel's mask is resolved into the image in the current colour,
+ * covered by the fraction of its bits that are set. Bands of rows are supersampled in parallel, as above.
+ *
+ * The coverage is kept as a bit per subsample rather than accumulated as a float per pixel: adding each
+ * segment's coverage would count the subsamples at every join twice, and the joins of a sampled curve
+ * are everywhere. The price is at most 64 subsamples (8 x 8) per pixel, which is already 65 levels of
+ * coverage, more than 8-bit alpha can show apart at a line's edge.
+ *
+ * @author Sam Chan
+ */
+public final class Raster {
+	// Images at least this tall are rasterized in bands of BAND_HEIGHT rows, in parallel.
+	static final int PARALLEL_HEIGHT = 512;
+	static final int BAND_HEIGHT = 64;
+	
+	// Each pixel's subsamples are kept as the bits of one long.
+	public static final int MAX_SUBSAMPLES = 8;
+	
+	private final int width, height;
+	private final BufferedImage image;
+	private final int[] pixels;
+
+	// The colour being drawn, premultiplied, split into channels.
+	private int alpha, red, green, blue;
+
+	/**
+	 * Construct a Raster of the given size, initially transparent.
+	 */
+	public Raster(int width, int height) {
+		this.width = width;
+		this.height = height;
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Returns the image drawn into. Changes to the Raster show up in it.
+	 */
+	public BufferedImage image() {return image;}
+
+	/**
+	 * Makes every pixel transparent again.
+	 */
+	public void clear() {
+		Arrays.fill(pixels, 0);
+	}
+
+	/**
+	 * Draws the first n vertices of xs and ys as connected line segments.
+	 * @param lineWidth : width of the line in pixels, e.g. SimpleGUI.getLineWidth().
+	 * @param antialias : whether to use Wu's algorithm (true) or Bresenham's (false).
+	 */
+	public void drawPolyline(int[] xs, int[] ys, int n, Color col, int lineWidth, boolean antialias) {
+		setColor(col);
+		drawPolyline(xs, ys, n, lineWidth, antialias, 0, height);
+	}
+	
+	/**
+	 * Draws every polyline in the lists, xs.get(i) and ys.get(i) being the vertices of the i-th, in the
+	 * same colour and width. Large images are drawn in bands of rows in parallel.
+	 */
+	public void drawPolylines(List<int[]> xs, List<int[]> ys, Color col, int lineWidth, boolean antialias) {
+		setColor(col);
+		inBands((top, bottom) -> {
+			for (int i = 0; i < xs.size(); i++) {
+				drawPolyline(xs.get(i), ys.get(i), xs.get(i).length, lineWidth, antialias, top, bottom);
+			}
+		});
+	}
+	
+	/**
+	 * Draws every polyline in the lists like drawPolylines, antialiased by testing subsamples x subsamples
+	 * points in every pixel. Slower than Wu's algorithm, but exact for any slope and width, and the
+	 * segments of a polyline join without gaps or overlaps.
+	 * @param subsamples : from 1 (aliased) to MAX_SUBSAMPLES; 4 gives 17 levels of coverage.
+	 */
+	public void drawPolylinesSupersampled(List<int[]> xs, List<int[]> ys, Color col, int lineWidth, int subsamples) {
+		if (subsamples < 1 || subsamples > MAX_SUBSAMPLES) {
+			throw new IllegalArgumentException("subsamples must be from 1 to " + MAX_SUBSAMPLES + ": " + subsamples);
+		}
+		setColor(col);
+		double radius = lineWidth / 2.0;
+		float full = subsamples * subsamples;
+		inBands((top, bottom) -> {
+			long[] masks = new long[width * (bottom - top)];
+			for (int i = 0; i < xs.size(); i++) {
+				int[] px = xs.get(i), py = ys.get(i);
+				if (px.length == 1) {
+					cover(px[0], py[0], px[0], py[0], radius, subsamples, masks, top, bottom);
+				}
+				for (int j = 1; j < px.length; j++) {
+					cover(px[j-1], py[j-1], px[j], py[j], radius, subsamples, masks, top, bottom);
+				}
+			}
+			// Resolve: every subsample has been tested against every segment, so the masks are final.
+			for (int y = top; y < bottom; y++) {
+				for (int x = 0; x < width; x++) {
+					long mask = masks[(y - top) * width + x];
+					if (mask != 0) {blend(x, y, Long.bitCount(mask) / full);}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Runs the task over the image's rows: in bands of BAND_HEIGHT in parallel for a large image on a
+	 * machine with more than one processor, otherwise all at once.
+	 */
+	private void inBands(Band task) {
+		boolean parallel = height >= PARALLEL_HEIGHT && Runtime.getRuntime().availableProcessors() > 1;
+		int bands = parallel ? (height + BAND_HEIGHT - 1) / BAND_HEIGHT : 1;
+		int bandHeight = bands == 1 ? height : BAND_HEIGHT;
+		IntStream range = IntStream.range(0, bands);
+		(bands == 1 ? range : range.parallel()).forEach(band -> {
+			int top = band * bandHeight;
+			task.draw(top, Math.min(top + bandHeight, height));
+		});
+	}
+	
+	private interface Band {
+		/** Draws the rows from top (inclusive) to bottom (exclusive). */
+		void draw(int top, int bottom);
+	}
+	
+	/**
+	 * Draws a polyline, only writing the rows from top (inclusive) to bottom (exclusive).
+	 */
+	private void drawPolyline(int[] xs, int[] ys, int n, int lineWidth, boolean antialias, int top, int bottom) {
+		if (n == 1) {
+			drawLine(xs[0], ys[0], xs[0], ys[0], lineWidth, antialias, top, bottom);
+		}
+		for (int i = 1; i < n; i++) {
+			drawLine(xs[i-1], ys[i-1], xs[i], ys[i], lineWidth, antialias, top, bottom);
+		}
+	}
+
+	/**
+	 * Draws a single line segment from (x1, y1) to (x2, y2).
+	 */
+	public void drawLine(int x1, int y1, int x2, int y2, Color col, int lineWidth, boolean antialias) {
+		setColor(col);
+		drawLine(x1, y1, x2, y2, lineWidth, antialias, 0, height);
+	}
+
+	private void setColor(Color col) {
+		alpha = col.getAlpha();
+		red = col.getRed() * alpha / 255;
+		green = col.getGreen() * alpha / 255;
+		blue = col.getBlue() * alpha / 255;
+	}
+
+	private void drawLine(int x1, int y1, int x2, int y2, int lineWidth, boolean antialias, int top, int bottom) {
+		int ax = x1, ay = y1, bx = x2, by = y2;
+		boolean inside = x1 >= 0 && x1 < width && x2 >= 0 && x2 < width && y1 >= 0 && y1 < height && y2 >= 0 && y2 < height;
+		if (!inside) {
+			// Liang-Barsky clip against the image, grown by the pen so thick lines reach the edges.
+			double margin = lineWidth + 1;
+			double dx = (double) x2 - x1, dy = (double) y2 - y1;
+			double[] range = {0, 1};
+			if (!clip(-dx, x1 + margin, range) || !clip(dx, width - 1 + margin - x1, range)
+					|| !clip(-dy, y1 + margin, range) || !clip(dy, height - 1 + margin - y1, range)) {
+				return;
+			}
+			ax = (int) Math.round(x1 + range[0] * dx);
+			ay = (int) Math.round(y1 + range[0] * dy);
+			bx = (int) Math.round(x1 + range[1] * dx);
+			by = (int) Math.round(y1 + range[1] * dy);
+		}
+		// The clip is against the whole image whatever the band, so every band steps along the same pixels.
+		int reach = lineWidth + 1;
+		if (Math.max(ay, by) + reach < top || Math.min(ay, by) - reach >= bottom) {return;}
+		if (antialias) {
+			wu(ax, ay, bx, by, lineWidth, top, bottom);
+		} else {
+			bresenham(ax, ay, bx, by, lineWidth, top, bottom);
+		}
+	}
+
+	/**
+	 * One Liang-Barsky edge test: narrows range (the visible part of the segment, as t0 and t1) to the
+	 * side of an edge where p*t <= q, and returns false if nothing is left.
+	 */
+	public static boolean clip(double p, double q, double[] range) {
+		if (p == 0) {return q >= 0;} // Parallel to this edge: all in or all out.
+		double t = q / p;
+		if (p < 0) {range[0] = Math.max(range[0], t);}
+		else {range[1] = Math.min(range[1], t);}
+		return range[0] <= range[1];
+	}
+
+	/**
+	 * Sets the mask bits of the subsamples within radius of the segment from (x1, y1) to (x2, y2), in the
+	 * rows from top to bottom. Vertices are pixel centres; subsample (sx, sy) of pixel (x, y) is at
+	 * (x - 0.5 + (sx + 0.5)/n, y - 0.5 + (sy + 0.5)/n) and is bit sy*n + sx.
+	 */
+	private void cover(int x1, int y1, int x2, int y2, double radius, int n, long[] masks, int top, int bottom) {
+		double dx = (double) x2 - x1, dy = (double) y2 - y1;
+		double length2 = dx * dx + dy * dy;
+		double[] range = {0, 1};
+		double margin = radius + 1;
+		if (!clip(-dx, x1 + margin, range) || !clip(dx, width - 1 + margin - x1, range)
+				|| !clip(-dy, y1 - top + margin, range) || !clip(dy, bottom - 1 + margin - y1, range)) {
+			return;
+		}
+		double ax = x1 + range[0] * dx, ay = y1 + range[0] * dy;
+		double bx = x1 + range[1] * dx, by = y1 + range[1] * dy;
+		// A pixel whose centre is this close is entirely inside, or this far entirely outside.
+		double inner = radius - Math.sqrt(0.5), outer = radius + Math.sqrt(0.5);
+		long all = n == 8 ? -1L : (1L << (n * n)) - 1;
+
+		int firstRow = Math.max(top, (int) Math.floor(Math.min(ay, by) - radius));
+		int lastRow = Math.min(bottom - 1, (int) Math.ceil(Math.max(ay, by) + radius));
+		for (int y = firstRow; y <= lastRow; y++) {
+			// The columns the capsule can reach in this row.
+			double left = Math.min(ax, bx), right = Math.max(ax, bx);
+			if (dy != 0) {
+				double t0 = (y - outer - y1) / dy, t1 = (y + outer - y1) / dy;
+				double ta = Math.max(range[0], Math.min(t0, t1)), tb = Math.min(range[1], Math.max(t0, t1));
+				if (ta > tb) {continue;}
+				left = Math.min(x1 + ta * dx, x1 + tb * dx);
+				right = Math.max(x1 + ta * dx, x1 + tb * dx);
+			}
+			int firstColumn = Math.max(0, (int) Math.floor(left - outer));
+			int lastColumn = Math.min(width - 1, (int) Math.ceil(right + outer));
+			int row = (y - top) * width;
+			for (int x = firstColumn; x <= lastColumn; x++) {
+				if (masks[row + x] == all) {continue;}
+				double d = distance2(x, y, x1, y1, dx, dy, length2);
+				if (d >= outer * outer) {continue;}
+				if (inner > 0 && d <= inner * inner) {
+					masks[row + x] = all;
+					continue;
+				}
+				long mask = masks[row + x];
+				for (int sy = 0; sy < n; sy++) {
+					double py = y - 0.5 + (sy + 0.5) / n;
+					for (int sx = 0; sx < n; sx++) {
+						double px = x - 0.5 + (sx + 0.5) / n;
+						if (distance2(px, py, x1, y1, dx, dy, length2) <= radius * radius) {mask |= 1L << (sy * n + sx);}
+					}
+				}
+				masks[row + x] = mask;
+			}
+		}
+	}
+
+	/**
+	 * The squared distance from (px, py) to the segment from (x1, y1) to (x1 + dx, y1 + dy).
+	 */
+	private static double distance2(double px, double py, double x1, double y1, double dx, double dy, double length2) {
+		double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - x1) * dx + (py - y1) * dy) / length2));
+		double ex = px - (x1 + t * dx), ey = py - (y1 + t * dy);
+		return ex * ex + ey * ey;
+	}
+
+	private void bresenham(int x1, int y1, int x2, int y2, int lineWidth, int top, int bottom) {
+		int dx = Math.abs(x2 - x1), dy = -Math.abs(y2 - y1);
+		int sx = x1 < x2 ? 1 : -1, sy = y1 < y2 ? 1 : -1;
+		int error = dx + dy;
+		int pen = (lineWidth - 1) / 2; // Square pen from -pen to lineWidth-1-pen around each point
+		int color = (alpha << 24) | (red << 16) | (green << 8) | blue;
+
+		while (true) {
+			if (lineWidth == 1) {
+				if (x1 >= 0 && x1 < width && y1 >= top && y1 < bottom) {
+					if (alpha == 255) {pixels[y1 * width + x1] = color;}
+					else {blend(x1, y1, 1);}
+				}
+			} else {
+				int left = Math.max(x1 - pen, 0), right = Math.min(x1 - pen + lineWidth, width);
+				for (int y = Math.max(y1 - pen, top); y < Math.min(y1 - pen + lineWidth, bottom); y++) {
+					if (alpha == 255) {
+						Arrays.fill(pixels, y * width + left, y * width + Math.max(left, right), color);
+					} else {
+						for (int x = left; x < right; x++) {blend(x, y, 1);}
+					}
+				}
+			}
+			if (x1 == x2 && y1 == y2) {break;}
+			int e2 = 2 * error;
+			if (e2 >= dy) {error += dy; x1 += sx;}
+			if (e2 <= dx) {error += dx; y1 += sy;}
+		}
+	}
+
+	/**
+	 * Steps along the major axis; at each step the ideal line crosses the minor axis at a fractional
+	 * position, and the pixels it passes through get coverage in proportion to their overlap with a
+	 * span of the line's thickness (measured along the minor axis) centred there.
+	 */
+	private void wu(int x1, int y1, int x2, int y2, int lineWidth, int top, int bottom) {
+		boolean steep = Math.abs(y2 - y1) > Math.abs(x2 - x1);
+		if (steep) { // Make x the major axis.
+			int t = x1; x1 = y1; y1 = t;
+			t = x2; x2 = y2; y2 = t;
+		}
+		if (x1 > x2) {
+			int t = x1; x1 = x2; x2 = t;
+			t = y1; y1 = y2; y2 = t;
+		}
+		double gradient = x2 == x1 ? 0 : (double) (y2 - y1) / (x2 - x1);
+		// Thickness along the minor axis for a line lineWidth thick perpendicular to itself.
+		// A 1 pixel line keeps Wu's classic 1 pixel span.
+		double span = lineWidth == 1 ? 1 : lineWidth * Math.sqrt(1 + gradient * gradient);
+
+		// When steep, x is the row, so only the band's rows need stepping through.
+		int first = steep ? Math.max(x1, top) : x1, last = steep ? Math.min(x2, bottom - 1) : x2;
+		for (int x = first; x <= last; x++) {
+			// Not accumulated, so every band gets exactly the same y for the same x.
+			double y = y1 + (x - x1) * gradient;
+			double from = y - span / 2 + 0.5, to = from + span; // In pixel edges: pixel j covers [j, j+1)
+			for (int j = (int) Math.floor(from); j < to; j++) {
+				double coverage = Math.min(to, j + 1) - Math.max(from, j);
+				if (coverage <= 0) {continue;}
+				if (steep) {
+					if (j >= 0 && j < width && x >= top && x < bottom) {blend(j, x, coverage);}
+				} else {
+					if (x >= 0 && x < width && j >= top && j < bottom) {blend(x, j, coverage);}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Source-over blends the current colour into pixel (x, y) with the given coverage (0 to 1).
+	 */
+	private void blend(int x, int y, double coverage) {
+		int i = y * width + x;
+		int dst = pixels[i];
+		int c = (int) (coverage * 256);
+		if (c >= 256 && alpha == 255) {
+			pixels[i] = (255 << 24) | (red << 16) | (green << 8) | blue;
+			return;
+		}
+		int keep = 256 - (alpha * c >> 8); // What is left of the destination, out of 256
+		int a = (alpha * c >> 8) + ((dst >>> 24) * keep >> 8);
+		int r = (red * c >> 8) + (((dst >> 16) & 0xff) * keep >> 8);
+		int g = (green * c >> 8) + (((dst >> 8) & 0xff) * keep >> 8);
+		int b = (blue * c >> 8) + ((dst & 0xff) * keep >> 8);
+		pixels[i] = (Math.min(a, 255) << 24) | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
+	}
+}
@@ -1,323 +1,540 @@
-package sGUI;
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-/**
- * A Shape contains a name, position, and methods to draw it on the graphics pane.
- * There several children of Shape included in this java file:
- * Rectangle, Oval, Line, ImageShape, and StringShape.
- * 
- * Position:
- * Shape contains the x1 and y1 fields which dictate where the Shape will be placed on the graphics pane.
- * For the shapes: Rectangle, Oval, ImageShape, and StringShape, this x1 and y1 will be the center of the shape.
- * For the shapes: Line, and the shapes returned by Shape.layer(...), x1 and y1 will be (respectively): 
- * One of the points on either end of the line, and the top left-corner of the custom shape.
- * 
- * Behaviour with SimpleGUI:
- * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
- * fill shape or not using Shape.isFillShape(...). If this is true, then SimpleGUI will call Shape.fill(...).
- * If this is false, then Shape.draw(...) will be called.
- * 
- * The return value of Shape.isFillShape(...) controls whether Shape.draw(...) or Shape.fill(...) will be used to draw this
- * Shape on the graphics pane.
- * 
- * @author Sam Chan
- */
-public abstract class Shape {
-	
-	/**
-	 * Name of this Shape.
-	 */
-	protected String name;
-	
-	/**
-	 * Horizontal position of this Shape on the graphics pane.
-	 * See this class' javadoc for more details on what this means.
-	 */
-	protected int x1;
-	
-	/**
-	 * Vertical position of this Shape on the graphics pane.
-	 * See this class' javadoc for more details on what this means.
-	 */
-	protected int y1;
-	
-	/**
-	 * Construct a Shape.
-	 * @param name
-	 * @param x1 : horizontal position of this Shape on the graphics pane.
-	 * @param y1 : vertical position of this Shape on the graphics pane.
-	 */
-	public Shape(String name, int x1, int y1) {
-		this.name = name;
-		this.x1 = x1;
-		this.y1 = y1;
-	}
-	
-	/**
-	 * The purpose of draw(...) is to draw a non-filled version of the shape.
-	 * 
-	 * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
-	 * fill shape or not using Shape.isFillShape(). If this is true, then SimpleGUI will call Shape.fill(), if not, 
-	 * then Shape.draw() will be called.
-	 * 
-	 * @param g
-	 */
-	public abstract void draw(Graphics2D g);
-	
-	/**
-	 * Returns whether or not this Shape is a 'fill shape' or not.
-	 * Fill shapes are drawn on the graphics pane using this Shape's Shape.fill(...) method.
-	 * This is in contrast to 'non fill shapes', which are drawn with Shape.draw(...).
-	 * 
-	 * The return value of this method controls whether Shape.draw() or Shape.fill() will be used to draw this
-	 * Shape on the graphics pane.
-	 * 
-	 * @return whether this Shape is a fill shape or not.
-	 */
-	public boolean isFillShape() {return false;}
-	
-	/**
-	 * Sets the position of this Shape.
-	 * @param x1
-	 * @param y1
-	 */
-	public void setPosition(int x1, int y1) {
-		this.x1 = x1;
-		this.y1 = y1;
-	}
-	
-	
-	/**
-	 * The purpose of fill(...) is to draw a filled version of the shape drawn by Shape.draw(...).
-	 * 
-	 * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
-	 * fill shape or not using Shape.isFillShape(). If this is true, then SimpleGUI will call Shape.fill(), if not, 
-	 * then Shape.draw() will be called.
-	 * 
-	 * If this method is left unimplemented then by default this method calls Shape.draw().
-	 * 
-	 * @param g
-	 */
-	public void fill (Graphics2D g) {draw(g);}
-	
-	/* **************************
-	 * Accessor methods for Shape
-	 * **************************
-	 */
-	
-	/**
-	 * Returns the name of this Shape.
-	 * @return Shape name.
-	 */
-	public String getShapeName() {return name;}
-	
-	/**
-	 * Returns the x1 coordinate for this Shape.
-	 * See this class' Javadoc for more information about coordinates.
-	 * @return x1
-	 */
-	public int x1() {return x1;}
-	/**
-	 * Returns the y1 coordinate for this Shape.
-	 * See this class' Javadoc for more information about coordinates.
-	 * @return y1
-	 */
-	public int y1() {return y1;}
-	
-	/**
-	 * Takes in a list of shapes 'shapeSequence' and layers the shapes on top of eachother.
-	 * 
-	 * The first element in shapeSequence goes on the first layer. The last element goes on the last layer.
-	 * Shapes on later layers will draw over those on earlier layers.
-	 * 
-	 * Example:
-	 * If we construct a Rectangle shape object with the x1,y1 parameters (100,100) then pass it into layer(List<Shape>), 
-	 * The returned custom shape when drawn at (0,0) will draw the Rectangle at (100,100).
-	 * When drawn at (0,10), the Rectangle is drawn at (100, 110).
-	 * 
-	 * The returned custom shape's fill() and draw() methods will do the same thing.
-	 * 
-	 * @param shapeSequence
-	 * @return A custom shape.
-	 */
-	public static Shape layer(List<Shape> shapeSequence) {
-		// First we create a shallow copy of shapeSequence
-		ArrayList<Shape> shapeSequenceCopy = new ArrayList<Shape>(shapeSequence);
-		// Now we create a map of where all the shapes should be drawn relative to (0,0) which is the default position and customShape's center
-		Map<Shape, int[]> positionsTemplate = new HashMap<Shape, int[]>();
-		for (Shape s : shapeSequenceCopy) {
-			int[] pos = {s.x1(), s.y1()};
-			positionsTemplate.put(s, pos);
-		}
-		
-		// Next we create the object.
-		Shape customShape = new Shape("CUSTOM", 0, 0) {
-			
-			// By default, Shape.fill() calls draw(), so we don't need to implement Shape.fill().
-			
-			@Override
-			public void draw(Graphics2D g) {
-				for (Shape s : shapeSequenceCopy) {
-					s.setPosition(positionsTemplate.get(s)[0] + this.x1(), positionsTemplate.get(s)[1] + this.y1());
-					if (s.isFillShape()) {s.fill(g);}
-					else {s.draw(g);}
-				}
-			}
-			
-			@Override
-			public boolean isFillShape() {
-				return true; // Our customShape is always a fill by default.
-			}
-
-		};
-		
-		return customShape;
-	}
-}
-
-final class Rectangle extends Shape{
-	private int width, height;
-	private Color fillCol, lineCol;
-	private boolean fillShape;
-	
-	/**
-	 * Construct a Rectangle of a given position and size.
-	 * The parameters x1, y1 specify the coordinates of the center of this Rectangle.
-	 * 
-	 * If parameter fillShape is true, then fillCol must not be null and lineCol should ideally be set to null.
-	 * Otherwise, lineCol must not be null and fillCol should ideally be set to null.
-	 * However, nothing bad will happen if we do not ideally set the other to null.
-	 * 
-	 * @param x1 : Horizontal coordinate of the center of this Rectangle.
-	 * @param y1 : Vertical coordinate of the center of this Rectangle.
-	 * @param width : Width of this Rectangle.
-	 * @param height : Height of this Rectangle.
-	 * @param lineCol : Colour of the border of this non-filled Rectangle.
-	 * @param fillCol : Colour of the fill of this filled Rectangle.
-	 * @param fillShape : Whether this Rectangle will be filled or not.
-	 */
-	public Rectangle(int x1, int y1, int width, int height, Color lineCol, Color fillCol, boolean fillShape) {
-		super("Rectangle", x1, y1);
-		
-		if (fillShape) {
-			if (fillCol == null) throw new Error("fillCol cannot be null if fillShape is true!");
-			this.fillCol = fillCol;
-		} else {
-			if (lineCol == null) throw new Error("lineCol cannot be null if fillShape is false!");
-			this.lineCol = lineCol;
-		}
-		
-		this.fillShape = fillShape;
-		this.width = width;
-		this.height = height;
-		
-	}
-	
-	@Override
-	public void draw(Graphics2D g) {
-		g.setColor(lineCol);
-		g.drawRect(x1, y1, width, height);
-	}
-	
-	@Override
-	public void fill (Graphics2D g) {
-		g.setColor(fillCol);
-		g.fillRect(x1, y1, width, height);
-	}
-	
-	@Override
-	public String getShapeName() {return name;}
-	@Override
-	public boolean isFillShape() {return fillShape;}
-}
-
-final class Oval extends Shape{
-	private int width, height;
-	private Color fillCol, lineCol;
-	private boolean fillShape;
-	
-	public Oval(int x1, int y1, int width, int height, Color lineCol, Color fillCol, boolean fillShape) {
-		super("Oval", x1, y1);
-		this.fillShape = fillShape;
-		this.width = width;
-		this.height = height;
-		this.lineCol = lineCol;
-		this.fillCol = fillCol;
-	}
-	
-	@Override
-	public void draw(Graphics2D g) {
-		g.setColor(lineCol);
-		g.drawOval(x1, y1, width, height);
-	}
-	
-	@Override
-	public void fill (Graphics2D g) {
-		g.setColor(fillCol);
-		g.fillOval(x1, y1, width, height);
-	}
-	
-	@Override
-	public String getShapeName() {return name;}
-	@Override
-	public boolean isFillShape() {return fillShape;}
-}
-
-final class Line extends Shape{
-	private Color lineCol;
-	private final int LENGTH, HEIGHT; // The length of the Horizontal component, and height of the vertical component
-	
-	public Line(int x1, int y1, int x2, int y2, Color lineCol) {
-		super("Line", x1, y1);
-		LENGTH = x2 - x1;
-		HEIGHT = y2 - y1;
-		
-		this.lineCol = lineCol;
-	}
-	
-	@Override
-	public void draw(Graphics2D g) {
-		g.setColor(lineCol);
-		g.drawLine(x1, y1, x1 + LENGTH, y1 + HEIGHT);
-	}
-
-}
-
-final class ImageShape extends Shape{
-	private Image img;
-	
-	public ImageShape(Image img, int x1, int y1) {
-		super("Image", x1, y1);
-		this.img = img;
-	}
-	
-	@Override
-	public void draw(Graphics2D g) {
-		g.drawImage(img, x1, y1, null);
-	}
-	
-}
-
-final class StringShape extends Shape{
-	private String str;
-	private Color lineCol;
-	
-	public StringShape(String str, int x1, int y1, Color col) {
-		super("StringShape", x1, y1);
-		this.str = str;
-		this.lineCol = col;
-	}
-	
-	@Override
-	public void draw(Graphics2D g) {
-		g.setColor(lineCol);
-		g.drawString(str, x1, y1);
-	}
-
-}
+package sGUI;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A Shape contains a name, position, and methods to draw it on the graphics pane.
+ * There several children of Shape included in this java file:
+ * Rectangle, Oval, Line, Polyline, ImageShape, StringShape, and Group (returned by Shape.layer(...)).
+ * 
+ * Position:
+ * Shape contains the x1 and y1 fields which dictate where the Shape will be placed on the graphics pane.
+ * For the shapes: Rectangle, Oval, ImageShape, and StringShape, this x1 and y1 will be the center of the shape.
+ * For the shapes: Line, Polyline, and the shapes returned by Shape.layer(...), x1 and y1 will be (respectively): 
+ * One of the points on either end of the line, the first vertex of the polyline, and the top left-corner of the custom shape.
+ * 
+ * Behaviour with SimpleGUI:
+ * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
+ * fill shape or not using Shape.isFillShape(...). If this is true, then SimpleGUI will call Shape.fill(...).
+ * If this is false, then Shape.draw(...) will be called.
+ * 
+ * The return value of Shape.isFillShape(...) controls whether Shape.draw(...) or Shape.fill(...) will be used to draw this
+ * Shape on the graphics pane.
+ * 
+ * @author Sam Chan
+ */
+public abstract class Shape {
+	
+	/**
+	 * Name of this Shape.
+	 */
+	protected String name;
+	
+	/**
+	 * Horizontal position of this Shape on the graphics pane.
+	 * See this class' javadoc for more details on what this means.
+	 */
+	protected int x1;
+	
+	/**
+	 * Vertical position of this Shape on the graphics pane.
+	 * See this class' javadoc for more details on what this means.
+	 */
+	protected int y1;
+	
+	// The DrawArea index this Shape is in (if any) and its handle there. See ShapeIndex.
+	volatile ShapeIndex index;
+	int handle;
+	
+	/**
+	 * Construct a Shape.
+	 * @param name
+	 * @param x1 : horizontal position of this Shape on the graphics pane.
+	 * @param y1 : vertical position of this Shape on the graphics pane.
+	 */
+	public Shape(String name, int x1, int y1) {
+		this.name = name;
+		this.x1 = x1;
+		this.y1 = y1;
+	}
+	
+	/**
+	 * The purpose of draw(...) is to draw a non-filled version of the shape.
+	 * 
+	 * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
+	 * fill shape or not using Shape.isFillShape(). If this is true, then SimpleGUI will call Shape.fill(), if not, 
+	 * then Shape.draw() will be called.
+	 * 
+	 * @param g
+	 */
+	public abstract void draw(Graphics2D g);
+	
+	/**
+	 * Returns whether or not this Shape is a 'fill shape' or not.
+	 * Fill shapes are drawn on the graphics pane using this Shape's Shape.fill(...) method.
+	 * This is in contrast to 'non fill shapes', which are drawn with Shape.draw(...).
+	 * 
+	 * The return value of this method controls whether Shape.draw() or Shape.fill() will be used to draw this
+	 * Shape on the graphics pane.
+	 * 
+	 * @return whether this Shape is a fill shape or not.
+	 */
+	public boolean isFillShape() {return false;}
+	
+	/**
+	 * Sets the position of this Shape.
+	 * @param x1
+	 * @param y1
+	 */
+	public void setPosition(int x1, int y1) {
+		this.x1 = x1;
+		this.y1 = y1;
+		ShapeIndex current = index;
+		if (current != null) {current.moved(this);}
+	}
+	
+	/**
+	 * Returns the smallest rectangle containing everything this Shape draws (ignoring the line width), 
+	 * or null if that isn't known. The graphics pane uses it to skip shapes outside the area being painted
+	 * and to find the shapes under the mouse. Shapes without bounds are always painted.
+	 * 
+	 * By default this returns null.
+	 * 
+	 * @return the bounds of this Shape, or null.
+	 */
+	public java.awt.Rectangle getBounds() {return null;}
+	
+	
+	/**
+	 * The purpose of fill(...) is to draw a filled version of the shape drawn by Shape.draw(...).
+	 * 
+	 * When it is time to draw this Shape on the graphics pane, SimpleGUI will check whether this Shape is a
+	 * fill shape or not using Shape.isFillShape(). If this is true, then SimpleGUI will call Shape.fill(), if not, 
+	 * then Shape.draw() will be called.
+	 * 
+	 * If this method is left unimplemented then by default this method calls Shape.draw().
+	 * 
+	 * @param g
+	 */
+	public void fill (Graphics2D g) {draw(g);}
+	
+	/* **************************
+	 * Accessor methods for Shape
+	 * **************************
+	 */
+	
+	/**
+	 * Returns the name of this Shape.
+	 * @return Shape name.
+	 */
+	public String getShapeName() {return name;}
+	
+	/**
+	 * Returns the x1 coordinate for this Shape.
+	 * See this class' Javadoc for more information about coordinates.
+	 * @return x1
+	 */
+	public int x1() {return x1;}
+	/**
+	 * Returns the y1 coordinate for this Shape.
+	 * See this class' Javadoc for more information about coordinates.
+	 * @return y1
+	 */
+	public int y1() {return y1;}
+	
+	/**
+	 * Takes in a list of shapes 'shapeSequence' and layers the shapes on top of eachother.
+	 * 
+	 * The first element in shapeSequence goes on the first layer. The last element goes on the last layer.
+	 * Shapes on later layers will draw over those on earlier layers.
+	 * 
+	 * Example:
+	 * If we construct a Rectangle shape object with the x1,y1 parameters (100,100) then pass it into layer(List<Shape>), 
+	 * The returned custom shape when drawn at (0,0) will draw the Rectangle at (100,100).
+	 * When drawn at (0,10), the Rectangle is drawn at (100, 110).
+	 * 
+	 * The returned custom shape's fill() and draw() methods will do the same thing.
+	 * The shapes in shapeSequence are never modified, so they can be shared between several layers.
+	 * 
+	 * @param shapeSequence
+	 * @return A custom shape.
+	 */
+	public static Shape layer(List<Shape> shapeSequence) {
+		return new Group(shapeSequence, 0, 0);
+	}
+	
+	/**
+	 * Like layer(List<Shape>), but the layered shapes are rendered once into an image of the given size
+	 * (covering (0,0) to (width,height) relative to the custom shape) which is then drawn in their place.
+	 * 
+	 * Use this for layers whose shapes don't change, such as a background. Changes to the shapes after the
+	 * first draw are not shown. Anything outside the given size is cut off.
+	 * 
+	 * @param shapeSequence
+	 * @param width : width of the area the shapes cover.
+	 * @param height : height of the area the shapes cover.
+	 * @return A custom shape.
+	 */
+	public static Shape cachedLayer(List<Shape> shapeSequence, int width, int height) {
+		return new Group(shapeSequence, width, height);
+	}
+}
+
+final class Group extends Shape{
+	private final Shape[] children;
+	// Where each child was when the group was made, relative to the group's position.
+	private final int[] offsetX, offsetY;
+	
+	// Only used by cached groups (width and height > 0).
+	private final int width, height;
+	private BufferedImage cache;
+	private Stroke cacheStroke;
+	private double cacheScale; // Device pixels per unit, so the image stays sharp on HiDPI screens
+	
+	/**
+	 * Construct a Group of shapes, drawn in list order. If width and height are positive the group is
+	 * rendered into an image of that size once and the image is drawn from then on.
+	 */
+	public Group(List<Shape> shapeSequence, int width, int height) {
+		super("CUSTOM", 0, 0);
+		children = shapeSequence.toArray(new Shape[0]);
+		offsetX = new int[children.length];
+		offsetY = new int[children.length];
+		for (int i = 0; i < children.length; i++) {
+			offsetX[i] = children[i].x1();
+			offsetY[i] = children[i].y1();
+		}
+		this.width = width;
+		this.height = height;
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {
+		if (width > 0 && height > 0) {return new java.awt.Rectangle(x1, y1, width, height);}
+		java.awt.Rectangle union = null;
+		for (int i = 0; i < children.length; i++) {
+			java.awt.Rectangle b = children[i].getBounds();
+			if (b == null) {return null;}
+			b.translate(x1 + offsetX[i] - children[i].x1(), y1 + offsetY[i] - children[i].y1());
+			union = union == null ? b : union.union(b);
+		}
+		return union;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		if (width > 0 && height > 0) {
+			// The stroke width can change between paints, and is baked into the image.
+			if (cache == null || !g.getStroke().equals(cacheStroke) || g.getTransform().getScaleX() != cacheScale) {
+				renderCache(g);
+			}
+			g.drawImage(cache, x1, y1, width, height, null);
+			return;
+		}
+		
+		// One translate for the whole group. A child is only translated on its own if it has been moved
+		// since the group was made, so the group still draws it where it was.
+		g.translate(x1, y1);
+		for (int i = 0; i < children.length; i++) {
+			Shape s = children[i];
+			int dx = offsetX[i] - s.x1(), dy = offsetY[i] - s.y1();
+			if (dx != 0 || dy != 0) {g.translate(dx, dy);}
+			if (s.isFillShape()) {s.fill(g);}
+			else {s.draw(g);}
+			if (dx != 0 || dy != 0) {g.translate(-dx, -dy);}
+		}
+		g.translate(-x1, -y1);
+	}
+	
+	private void renderCache(Graphics2D g) {
+		cacheScale = g.getTransform().getScaleX();
+		double pixels = Math.max(cacheScale, 1);
+		cache = new BufferedImage((int) Math.ceil(width * pixels), (int) Math.ceil(height * pixels), BufferedImage.TYPE_INT_ARGB);
+		cacheStroke = g.getStroke();
+		Graphics2D cacheGraphics = cache.createGraphics();
+		cacheGraphics.scale(pixels, pixels);
+		cacheGraphics.setRenderingHints(g.getRenderingHints());
+		cacheGraphics.setStroke(cacheStroke);
+		cacheGraphics.setFont(g.getFont());
+		for (int i = 0; i < children.length; i++) {
+			Shape s = children[i];
+			int dx = offsetX[i] - s.x1(), dy = offsetY[i] - s.y1();
+			cacheGraphics.translate(dx, dy);
+			if (s.isFillShape()) {s.fill(cacheGraphics);}
+			else {s.draw(cacheGraphics);}
+			cacheGraphics.translate(-dx, -dy);
+		}
+		cacheGraphics.dispose();
+	}
+	
+	@Override
+	public boolean isFillShape() {
+		return true; // Our customShape is always a fill by default.
+	}
+	
+}
+
+final class Rectangle extends Shape{
+	private int width, height;
+	private Color fillCol, lineCol;
+	private boolean fillShape;
+	
+	/**
+	 * Construct a Rectangle of a given position and size.
+	 * The parameters x1, y1 specify the coordinates of the center of this Rectangle.
+	 * 
+	 * If parameter fillShape is true, then fillCol must not be null and lineCol should ideally be set to null.
+	 * Otherwise, lineCol must not be null and fillCol should ideally be set to null.
+	 * However, nothing bad will happen if we do not ideally set the other to null.
+	 * 
+	 * @param x1 : Horizontal coordinate of the center of this Rectangle.
+	 * @param y1 : Vertical coordinate of the center of this Rectangle.
+	 * @param width : Width of this Rectangle.
+	 * @param height : Height of this Rectangle.
+	 * @param lineCol : Colour of the border of this non-filled Rectangle.
+	 * @param fillCol : Colour of the fill of this filled Rectangle.
+	 * @param fillShape : Whether this Rectangle will be filled or not.
+	 */
+	public Rectangle(int x1, int y1, int width, int height, Color lineCol, Color fillCol, boolean fillShape) {
+		super("Rectangle", x1, y1);
+		
+		if (fillShape) {
+			if (fillCol == null) throw new Error("fillCol cannot be null if fillShape is true!");
+			this.fillCol = fillCol;
+		} else {
+			if (lineCol == null) throw new Error("lineCol cannot be null if fillShape is false!");
+			this.lineCol = lineCol;
+		}
+		
+		this.fillShape = fillShape;
+		this.width = width;
+		this.height = height;
+		
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		g.setColor(lineCol);
+		g.drawRect(x1, y1, width, height);
+	}
+	
+	@Override
+	public void fill (Graphics2D g) {
+		g.setColor(fillCol);
+		g.fillRect(x1, y1, width, height);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {return new java.awt.Rectangle(x1, y1, width + 1, height + 1);}
+	
+	@Override
+	public String getShapeName() {return name;}
+	@Override
+	public boolean isFillShape() {return fillShape;}
+}
+
+final class Oval extends Shape{
+	private int width, height;
+	private Color fillCol, lineCol;
+	private boolean fillShape;
+	
+	public Oval(int x1, int y1, int width, int height, Color lineCol, Color fillCol, boolean fillShape) {
+		super("Oval", x1, y1);
+		this.fillShape = fillShape;
+		this.width = width;
+		this.height = height;
+		this.lineCol = lineCol;
+		this.fillCol = fillCol;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		g.setColor(lineCol);
+		g.drawOval(x1, y1, width, height);
+	}
+	
+	@Override
+	public void fill (Graphics2D g) {
+		g.setColor(fillCol);
+		g.fillOval(x1, y1, width, height);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {return new java.awt.Rectangle(x1, y1, width + 1, height + 1);}
+	
+	@Override
+	public String getShapeName() {return name;}
+	@Override
+	public boolean isFillShape() {return fillShape;}
+}
+
+final class Line extends Shape{
+	private Color lineCol;
+	private final int LENGTH, HEIGHT; // The length of the Horizontal component, and height of the vertical component
+	
+	public Line(int x1, int y1, int x2, int y2, Color lineCol) {
+		super("Line", x1, y1);
+		LENGTH = x2 - x1;
+		HEIGHT = y2 - y1;
+		
+		this.lineCol = lineCol;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		g.setColor(lineCol);
+		g.drawLine(x1, y1, x1 + LENGTH, y1 + HEIGHT);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {
+		return new java.awt.Rectangle(x1 + Math.min(LENGTH, 0), y1 + Math.min(HEIGHT, 0), Math.abs(LENGTH) + 1, Math.abs(HEIGHT) + 1);
+	}
+
+}
+
+final class Polyline extends Shape{
+	private Color lineCol;
+	private final int[] xs, ys; // Vertices relative to the first vertex, in units of 1/pixelScale
+	private int minX, minY, maxX, maxY; // Bounds relative to the first vertex, in the same units
+	private final double pixelScale;
+	private final double fractionX, fractionY; // Where the first vertex is past (x1, y1), less than 1 unit
+	
+	/**
+	 * Construct a Polyline through the first n vertices of xs and ys.
+	 * The arrays are copied, so the caller is free to reuse them.
+	 */
+	public Polyline(int[] xs, int[] ys, int n, Color lineCol) {
+		this(xs, ys, n, lineCol, 1);
+	}
+	
+	/**
+	 * Construct a Polyline whose vertices are given in units of 1/pixelScale, e.g. in device pixels on a
+	 * HiDPI screen with pixelScale device pixels per unit.
+	 */
+	public Polyline(int[] xs, int[] ys, int n, Color lineCol, double pixelScale) {
+		super("Polyline", (int) Math.floor(xs[0] / pixelScale), (int) Math.floor(ys[0] / pixelScale));
+		this.pixelScale = pixelScale;
+		fractionX = xs[0] / pixelScale - x1;
+		fractionY = ys[0] / pixelScale - y1;
+		this.xs = new int[n];
+		this.ys = new int[n];
+		for (int i = 0; i < n; i++) {
+			this.xs[i] = xs[i] - xs[0];
+			this.ys[i] = ys[i] - ys[0];
+			minX = Math.min(minX, this.xs[i]);
+			maxX = Math.max(maxX, this.xs[i]);
+			minY = Math.min(minY, this.ys[i]);
+			maxY = Math.max(maxY, this.ys[i]);
+		}
+		this.lineCol = lineCol;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		g.setColor(lineCol);
+		if (pixelScale == 1) {
+			g.translate(x1, y1);
+			g.drawPolyline(xs, ys, xs.length);
+			g.translate(-x1, -y1);
+			return;
+		}
+		// Draw in device pixels, with the stroke widened to match so the line keeps its width.
+		AffineTransform transform = g.getTransform();
+		Stroke stroke = g.getStroke();
+		g.translate(x1 + fractionX, y1 + fractionY);
+		g.scale(1 / pixelScale, 1 / pixelScale);
+		if (stroke instanceof BasicStroke) {
+			BasicStroke basic = (BasicStroke) stroke;
+			g.setStroke(new BasicStroke((float) (basic.getLineWidth() * pixelScale), basic.getEndCap(), basic.getLineJoin()));
+		}
+		g.drawPolyline(xs, ys, xs.length);
+		g.setStroke(stroke);
+		g.setTransform(transform);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {
+		int left = (int) Math.floor(minX / pixelScale), top = (int) Math.floor(minY / pixelScale);
+		int right = (int) Math.ceil(maxX / pixelScale) + 1, bottom = (int) Math.ceil(maxY / pixelScale) + 1;
+		return new java.awt.Rectangle(x1 + left, y1 + top, right - left + 1, bottom - top + 1);
+	}
+	
+}
+
+final class ImageShape extends Shape{
+	private Image img;
+	private final double pixelScale; // Image pixels per unit
+	
+	public ImageShape(Image img, int x1, int y1) {
+		this(img, x1, y1, 1);
+	}
+	
+	/**
+	 * Construct an ImageShape for an image with pixelScale pixels per unit, e.g. one rendered at device
+	 * resolution on a HiDPI screen. It is drawn 1/pixelScale of its pixel size.
+	 */
+	public ImageShape(Image img, int x1, int y1, double pixelScale) {
+		super("Image", x1, y1);
+		this.img = img;
+		this.pixelScale = pixelScale;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		if (pixelScale == 1) {
+			g.drawImage(img, x1, y1, null);
+			return;
+		}
+		AffineTransform place = AffineTransform.getTranslateInstance(x1, y1);
+		place.scale(1 / pixelScale, 1 / pixelScale);
+		g.drawImage(img, place, null);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {
+		int width = img.getWidth(null), height = img.getHeight(null);
+		if (width < 0 || height < 0) {return null;} // Unknown until loaded
+		return new java.awt.Rectangle(x1, y1, (int) Math.ceil(width / pixelScale), (int) Math.ceil(height / pixelScale));
+	}
+	
+}
+
+final class StringShape extends Shape{
+	private String str;
+	private Color lineCol;
+	private Font font;
+	// Where the text is relative to (x1, y1), from the TextCache.
+	private java.awt.Rectangle textBounds;
+	
+	/**
+	 * Construct a StringShape drawing str in font, with the start of its baseline at (x1, y1).
+	 */
+	public StringShape(String str, int x1, int y1, Color col, Font font) {
+		super("StringShape", x1, y1);
+		this.str = str;
+		this.lineCol = col;
+		this.font = font;
+	}
+	
+	@Override
+	public void draw(Graphics2D g) {
+		g.setColor(lineCol);
+		g.setFont(font);
+		g.drawString(str, x1, y1);
+	}
+	
+	@Override
+	public java.awt.Rectangle getBounds() {
+		if (textBounds == null) {textBounds = TextCache.bounds(str, font);}
+		return new java.awt.Rectangle(x1 + textBounds.x, y1 + textBounds.y, textBounds.width, textBounds.height);
+	}
+
+}
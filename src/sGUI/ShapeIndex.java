@@ -0,0 +1,246 @@
+package sGUI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stores the shapes of a DrawArea in a uniform grid of CELL x CELL pixel cells, so painting a small
+ * region (or hit testing a point) only looks at the shapes near it.
+ *
+ * Handles:
+ * Each shape gets a handle when added, which it keeps in Shape.handle. Handles increase in the order
+ * shapes are added, so sorting handles gives the painting order. Removing a shape just forgets its handle,
+ * in O(1); its entries in the grid are skipped from then on and swept out when there are enough of them.
+ *
+ * Bounds:
+ * The grid covers (0,0) to (CELLS*CELL, CELLS*CELL). Anything beyond it is filed in the edge cells, so
+ * shapes partly off screen still work. Shapes without bounds (Shape.getBounds() returns null), or that
+ * would cover more than MAX_CELLS cells, are kept in a separate list that every query checks.
+ * Moving a shape (Shape.setPosition(...)) queues it to be refiled by refileMoved().
+ *
+ * Not thread safe, apart from moved(...): only the event dispatch thread should use it.
+ *
+ * @author Sam Chan
+ */
+final class ShapeIndex {
+	static final int CELL = 64;
+	static final int CELLS = 64;
+	private static final int MAX_CELLS = 64;
+	// Sweep out removed entries once there are this many and they outnumber the live ones.
+	private static final int MIN_GARBAGE = 4096;
+
+	// Indexed by handle. shapes[h] is null once the shape is removed.
+	private Shape[] shapes = new Shape[256];
+	private int[] boundsX = new int[256], boundsY = new int[256], boundsW = new int[256], boundsH = new int[256];
+	// Whether the shape has no bounds, and so matches every query.
+	private boolean[] unbounded = new boolean[256];
+	private int handles; // The number of handles given out
+	private int live;
+
+	// cells[i] holds the handles filed in cell i (row-major), cellSizes[i] of them. Created when first needed.
+	private final int[][] cells = new int[CELLS * CELLS][];
+	private final int[] cellSizes = new int[CELLS * CELLS];
+	private int[] large = new int[16];
+	private int largeSize;
+	private int entries;
+	private int garbage;
+
+	// For removing duplicates from a query: stamps[h] == query if h has been seen in this query.
+	private int[] stamps = new int[256];
+	private int query;
+	
+	// Shapes moved since the last refileMoved(), possibly by other threads.
+	private final Queue<Shape> moved = new ConcurrentLinkedQueue<Shape>();
+
+	void add(Shape s) {
+		if (s.index != null) {s.index.remove(s);}
+		if (handles == shapes.length) {grow();}
+		int h = handles++;
+		shapes[h] = s;
+		s.index = this;
+		s.handle = h;
+		live++;
+		file(h);
+	}
+
+	void remove(Shape s) {
+		if (s.index != this) {return;}
+		shapes[s.handle] = null;
+		garbage += entriesOf(s.handle);
+		s.index = null;
+		live--;
+		if (garbage > MIN_GARBAGE && garbage > entries - garbage) {compact();}
+	}
+
+	/**
+	 * Notes that a shape has moved, so it is refiled at the next refileMoved(). Can be called from any thread.
+	 */
+	void moved(Shape s) {
+		moved.add(s);
+	}
+	
+	/**
+	 * Refiles the shapes that have moved.
+	 */
+	void refileMoved() {
+		Shape s;
+		while ((s = moved.poll()) != null) {
+			if (s.index == this) {update(s);}
+		}
+	}
+	
+	/**
+	 * Refiles a shape whose position has changed. Its old entries become garbage.
+	 */
+	private void update(Shape s) {
+		garbage += entriesOf(s.handle);
+		file(s.handle);
+		if (garbage > MIN_GARBAGE && garbage > entries - garbage) {compact();}
+	}
+
+	void clear() {
+		for (int h = 0; h < handles; h++) {
+			if (shapes[h] != null) {shapes[h].index = null;}
+			shapes[h] = null;
+		}
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = null;
+			cellSizes[i] = 0;
+		}
+		handles = live = largeSize = entries = garbage = 0;
+	}
+
+	int size() {return live;}
+
+	/**
+	 * Returns every shape, in painting order.
+	 */
+	List<Shape> all() {
+		List<Shape> result = new ArrayList<Shape>(live);
+		for (int h = 0; h < handles; h++) {
+			if (shapes[h] != null) {result.add(shapes[h]);}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the shapes whose bounds intersect the given area (and those without bounds), in painting order.
+	 */
+	List<Shape> query(int x, int y, int width, int height) {
+		if (++query == 0) { // Wrapped around; old stamps could now match.
+			Arrays.fill(stamps, 0);
+			query = 1;
+		}
+		int[] found = new int[16];
+		int n = 0;
+
+		for (int i = 0; i < largeSize; i++) {
+			int h = large[i];
+			if (matches(h, x, y, width, height)) {
+				if (n == found.length) {found = Arrays.copyOf(found, n * 2);}
+				found[n++] = h;
+			}
+		}
+		int col0 = cell(x), col1 = cell(x + width - 1), row0 = cell(y), row1 = cell(y + height - 1);
+		for (int row = row0; row <= row1; row++) {
+			for (int col = col0; col <= col1; col++) {
+				int c = row * CELLS + col;
+				for (int i = 0; i < cellSizes[c]; i++) {
+					int h = cells[c][i];
+					if (matches(h, x, y, width, height)) {
+						if (n == found.length) {found = Arrays.copyOf(found, n * 2);}
+						found[n++] = h;
+					}
+				}
+			}
+		}
+
+		Arrays.sort(found, 0, n);
+		List<Shape> result = new ArrayList<Shape>(n);
+		for (int i = 0; i < n; i++) {
+			result.add(shapes[found[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether h is a live shape that intersects the area and hasn't been found yet in this query.
+	 * Stale entries (for removed or moved shapes) fail the bounds test or the stamp.
+	 */
+	private boolean matches(int h, int x, int y, int width, int height) {
+		if (shapes[h] == null || stamps[h] == query) {return false;}
+		boolean hit = unbounded[h] || (boundsX[h] < x + width && x < boundsX[h] + boundsW[h]
+				&& boundsY[h] < y + height && y < boundsY[h] + boundsH[h]);
+		if (hit) {stamps[h] = query;}
+		return hit;
+	}
+
+	private void file(int h) {
+		java.awt.Rectangle b = shapes[h].getBounds();
+		unbounded[h] = b == null;
+		if (b != null) {
+			boundsX[h] = b.x;
+			boundsY[h] = b.y;
+			boundsW[h] = Math.max(b.width, 1);
+			boundsH[h] = Math.max(b.height, 1);
+		}
+
+		if (b == null || cellCount(h) > MAX_CELLS) {
+			if (largeSize == large.length) {large = Arrays.copyOf(large, largeSize * 2);}
+			large[largeSize++] = h;
+			entries++;
+			return;
+		}
+		for (int row = cell(boundsY[h]); row <= cell(boundsY[h] + boundsH[h] - 1); row++) {
+			for (int col = cell(boundsX[h]); col <= cell(boundsX[h] + boundsW[h] - 1); col++) {
+				int c = row * CELLS + col;
+				if (cells[c] == null) {cells[c] = new int[8];}
+				else if (cellSizes[c] == cells[c].length) {cells[c] = Arrays.copyOf(cells[c], cellSizes[c] * 2);}
+				cells[c][cellSizes[c]++] = h;
+				entries++;
+			}
+		}
+	}
+
+	/**
+	 * The number of grid entries the shape's current filing uses (1 if it's in the large list).
+	 */
+	private int entriesOf(int h) {
+		return unbounded[h] || cellCount(h) > MAX_CELLS ? 1 : cellCount(h);
+	}
+
+	private int cellCount(int h) {
+		int cols = cell(boundsX[h] + boundsW[h] - 1) - cell(boundsX[h]) + 1;
+		int rows = cell(boundsY[h] + boundsH[h] - 1) - cell(boundsY[h]) + 1;
+		return cols * rows;
+	}
+
+	private static int cell(int coordinate) {
+		return Math.min(Math.max(Math.floorDiv(coordinate, CELL), 0), CELLS - 1);
+	}
+
+	/**
+	 * Renumbers the live shapes (keeping their order) and refiles them, dropping all garbage.
+	 */
+	private void compact() {
+		Shape[] old = Arrays.copyOf(shapes, handles);
+		clear();
+		for (Shape s : old) {
+			if (s != null) {add(s);}
+		}
+	}
+
+	private void grow() {
+		int capacity = shapes.length * 2;
+		shapes = Arrays.copyOf(shapes, capacity);
+		boundsX = Arrays.copyOf(boundsX, capacity);
+		boundsY = Arrays.copyOf(boundsY, capacity);
+		boundsW = Arrays.copyOf(boundsW, capacity);
+		boundsH = Arrays.copyOf(boundsH, capacity);
+		unbounded = Arrays.copyOf(unbounded, capacity);
+		stamps = Arrays.copyOf(stamps, capacity);
+	}
+}
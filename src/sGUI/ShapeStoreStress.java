@@ -0,0 +1,112 @@
+package sGUI;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Stress test for DrawArea's shape store: several producer threads add and remove batches of shapes
+ * while the event dispatch thread paints continuously. After every paint it checks that each batch is
+ * either entirely present or entirely absent. Runs headless.
+ *
+ * Usage: java sGUI.ShapeStoreStress [producers] [seconds]
+ *
+ * @author Sam Chan
+ */
+final class ShapeStoreStress {
+	private static final int BATCH_SIZE = 50;
+
+	public static void main(String[] args) throws Exception {
+		int producers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		DrawArea area = new DrawArea(() -> 1);
+		area.setSize(600, 600);
+		BufferedImage canvas = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+
+		Map<Shape, Integer> batchOf = new ConcurrentHashMap<Shape, Integer>();
+		AtomicLong nextBatch = new AtomicLong();
+		AtomicLong published = new AtomicLong();
+		AtomicBoolean running = new AtomicBoolean(true);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			long seed = p;
+			Thread producer = new Thread(() -> {
+				Random random = new Random(seed);
+				List<List<Shape>> mine = new ArrayList<List<Shape>>();
+				while (running.get()) {
+					area.beginBatch();
+					if (mine.size() > 20 || (!mine.isEmpty() && random.nextBoolean())) {
+						for (Shape s : mine.remove(random.nextInt(mine.size()))) {area.removeShape(s);}
+					} else {
+						int id = (int) nextBatch.getAndIncrement();
+						List<Shape> shapes = new ArrayList<Shape>();
+						for (int i = 0; i < BATCH_SIZE; i++) {
+							int x = random.nextInt(600), y = random.nextInt(600);
+							Shape s = new Line(x, y, x + random.nextInt(40), y + random.nextInt(40), Color.black);
+							batchOf.put(s, id);
+							shapes.add(s);
+							area.addShape(s);
+						}
+						mine.add(shapes);
+					}
+					area.endBatch();
+					published.incrementAndGet();
+					// Roughly the pace of a real producer; flat out, they would just fill the queue faster than any painter.
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}, "Producer " + p);
+			threads.add(producer);
+			producer.start();
+		}
+
+		long paints = 0, shapesPainted = 0, failures = 0;
+		long end = System.nanoTime() + seconds * 1000000000L;
+		long[] result = new long[2];
+		while (System.nanoTime() < end) {
+			SwingUtilities.invokeAndWait(() -> {
+				Graphics2D g = canvas.createGraphics();
+				area.paint(g);
+				g.dispose();
+
+				List<Shape> shapes = area.shapes();
+				Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+				for (Shape s : shapes) {counts.merge(batchOf.get(s), 1, Integer::sum);}
+				int torn = 0;
+				for (int count : counts.values()) {
+					if (count != BATCH_SIZE) {torn++;}
+				}
+				result[0] = shapes.size();
+				result[1] = torn;
+			});
+			paints++;
+			shapesPainted += result[0];
+			failures += result[1];
+		}
+		running.set(false);
+		for (Thread t : threads) {t.join();}
+
+		System.out.printf("%d producers, %d s: %d batches published, %d paints (%.0f shapes each on average), %d torn batches%n",
+				producers, seconds, published.get(), paints, (double) shapesPainted / paints, failures);
+		if (failures > 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
@@ -1,392 +1,609 @@
-package sGUI;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.TextArea;
-import java.awt.TextField;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.net.URL;
-
-import javax.imageio.ImageIO;
-import javax.swing.*;
-
-public class SimpleGUI {
-	private JFrame frame;
-	private JPanel buttonPanel;
-	private DrawArea graphicsPane;
-	private TextField textField;
-	private TextArea textArea;
-	
-	private Color col;
-	private int lineWidth = 1;
-	
-	private boolean inputRecieved;
-	private Thread callingThread;
-	
-	private SimpleGUI() {
-		frame = new JFrame();
-		buttonPanel = new JPanel();
-		graphicsPane = new DrawArea(this);
-		textField = new TextField(30);
-		textArea = new TextArea(40,30);
-		JPanel lhsPanel = new JPanel(); // this is the entire left-hand-side panel
-		JPanel textPanel = new JPanel(); // this is the entire right-hand-side panel
-		JScrollPane textAreaScrollPane = new JScrollPane(textArea);
-		col = Color.black;
-		
-		callingThread = Thread.currentThread();
-		
-		// Everytime the user presses enter in the textField inputRecieved is true, and we notify all waiting 
-		// on the callingThread.
-		textField.addActionListener((e) -> {
-			inputRecieved = true;
-			synchronized (callingThread) {callingThread.notifyAll();}
-		});
-		
-		// Adding the text boxes to the textPanel
-		textArea.setEditable(false);
-		textPanel.add(textField);
-		textPanel.add(textAreaScrollPane);
-		// Adding lhs components to lhsPanel
-		lhsPanel.add(buttonPanel);
-		lhsPanel.add(Box.createVerticalGlue());
-		
-		// Layouts for all the components
-		textPanel.setLayout(new BoxLayout(textPanel, BoxLayout.Y_AXIS));
-		buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
-		lhsPanel.setLayout(new BoxLayout(lhsPanel, BoxLayout.Y_AXIS));
-		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.X_AXIS));
-		
-		// Set the preferred size for the graphicsPane and let the other panels work around that
-		graphicsPane.setPreferredSize(new Dimension(600,600));
-		
-		lhsPanel.setBorder(BorderFactory.createRaisedBevelBorder());
-		
-		// Configuring the frame
-		frame.setLocation(400, 100); // At some point fix this to be in proportion to screen size rather than constant
-		frame.getContentPane().add(lhsPanel);
-		frame.getContentPane().add(graphicsPane);
-		frame.getContentPane().add(textPanel);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.pack();
-		frame.setVisible(true);
-		
-	}
-	
-	/*
-	 * Concurrency: Whoever owns this object's intrinsic lock can call:
-	 * askUserInput(...), getTextFieldTxt(...), sleep(...). 
-	 */
-	
-	/**
-	 * Sets the title of the GUI window
-	 */
-	public void setFrameName(String name) {
-		frame.setTitle(name);
-	}
-	
-	public void addTextFieldListener(ButtonFunction f) {
-		textField.addActionListener(e -> f.func());
-	}
-	
-	/**
-	 * Adds a button with some name and some vertical distance (in pixels) from the component above it
-	 */
-	public void addButton(String name, int verticalSpacing, ButtonFunction f) {
-		JButton button = new JButton();
-		button.addActionListener(e -> f.func());
-		button.setText(name);
-		
-		// constant spacing between component before
-		buttonPanel.add(Box.createRigidArea(new Dimension(0, verticalSpacing)));
-		buttonPanel.add(button);
-	}
-	
-	/**
-	 * Clears the graphics pane
-	 */
-	public void clear() {
-		graphicsPane.clearShapes(); // clears the list of shapes to be painted
-		// Then, adds the background rectangle to that list of shapes
-		redraw();
-		// paintComponent will end up setting the color of the Graphics object to the background col, so we must set it back.
-		graphicsPane.getGraphics().setColor(col);
-	}
-	
-	/* 
-	 * *********************
-	 * SHAPE DRAWING METHODS
-	 * *********************
-	 */
-	
-	/**
-	 * Draws a line from (x1, y1) to (x2, y2)
-	 */
-	public Shape drawLine(double x1, double y1, double x2, double y2) {
-		Shape s = new Line((int)(x1+0.5), (int)(y1+0.5), (int)(x2+0.5), (int)(y2+0.5), col);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	/**
-	 * Draws a rectangle where (x,y) is the top-left corner of the rectangle
-	 */
-	public Shape drawRect(double x, double y, double width, double height) {
-		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	/**
-	 * Draws an oval with a bounding rectangle with left-hand corner at (x,y)
-	 */
-	public Shape drawOval(double x, double y, double width, double height) {
-		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	/**
-	 * Draws an image where (x,y) is the top-left corner of the image.
-	 */
-	public Shape drawImg(File imgFile, double x, double y) {
-		BufferedImage img = null;
-		try {
-			img = ImageIO.read(imgFile);
-		} catch (IOException e) {
-			throw new Error("Failed to read image file!", e);
-		}
-		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	/**
-	 * Draws an image where (x,y) is the top-left corner of the image.
-	 */
-	public Shape drawImg(URL u, double x, double y) {
-		BufferedImage img = null;
-		try {
-			img = ImageIO.read(u);
-		} catch (IOException e) {
-			throw new Error("Failed to read image file!", e);
-		}
-		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	public Shape drawString(String str, double x, double y, Color col) {
-		Shape s = new StringShape(str, (int)(x+0.5), (int)(y+0.5), col);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	public Shape drawShape(Shape custom, double x, double y) {
-		custom.setPosition((int)(x+0.5), (int)(y+0.5));
-		graphicsPane.addShape(custom);
-		redraw();
-		return custom;
-	}
-	
-	public Shape fillRect(double x, double y, double width, double height) {
-		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	public Shape fillOval(double x, double y, double width, double height) {
-		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
-		graphicsPane.addShape(s);
-		redraw();
-		return s;
-	}
-	
-	/**
-	 * Deletes the shape from the draw area if it exists.
-	 * If this method appears to do nothing on the draw area, then the shape likely does not exist on the draw area.
-	 */
-	public void deleteShape(Shape s) {
-		graphicsPane.removeShape(s);
-		redraw();
-	}
-	
-	public void setColor(Color col) {
-		this.col = col;
-	}
-	
-	/**
-	 * Refreshes the graphics area
-	 */
-	public void redraw() {
-		graphicsPane.repaint();
-	}
-	
-	/*
-	 * *********************
-	 * SHAPE FACTORY METHODS
-	 * *********************
-	 */
-	
-	/**
-	 * Returns a line Shape from (x1, y1) to (x2, y2)
-	 */
-	public Shape createLineShape(double x1, double y1, double x2, double y2) {
-		Shape s = new Line((int)(x1+0.5), (int)(y1+0.5), (int)(x2+0.5), (int)(y2+0.5), col);
-		return s;
-	}
-	/**
-	 * Returns a rectangle Shape where (x,y) is the top-left corner of the rectangle
-	 */
-	public Shape createRectShape(double x, double y, double width, double height) {
-		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
-		return s;
-	}
-	
-	/**
-	 * Returns an oval Shape with a bounding rectangle with left-hand corner at (x,y)
-	 */
-	public Shape createOvalShape(double x, double y, double width, double height) {
-		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
-		return s;
-	}
-	
-	/**
-	 * Returns an image Shape
-	 */
-	public Shape createImgShape(File imgFile, double x, double y) {
-		BufferedImage img = null;
-		try {
-			img = ImageIO.read(imgFile);
-		} catch (IOException e) {
-			throw new Error("Failed to read image file!", e);
-		}
-		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
-		return s;
-	}
-	
-	public Shape createStringShape(String str, double x, double y, Color col) {
-		Shape s = new StringShape(str, (int)(x+0.5), (int)(y+0.5), col);
-		return s;
-	}
-	
-	public Shape createFilledRectShape(double x, double y, double width, double height) {
-		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
-		return s;
-	}
-	
-	public Shape createFilledOvalShape(double x, double y, double width, double height) {
-		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
-		return s;
-	}
-	
-	/*
-	 * ******************
-	 * TEXT PANEL METHODS
-	 * ******************
-	 */
-	
-	/**
-	 * Asks a question for the user and then waits for the input from the textField.
-	 * Once the user has pressed enter in the text field, this method will return the text 
-	 * the user has typed in the text field.
-	 * @param question 
-	 * @return text input
-	 */
-	public synchronized String askUserInput(String question) {
-		inputRecieved = false; // has to be false since we haven't asked the question yet!
-		callingThread = Thread.currentThread();
-		println(question);
-		try {
-			synchronized (callingThread) {
-				while (!inputRecieved) {
-					callingThread.wait();
-				}
-			}
-		} catch (InterruptedException e) {
-			throw new Error("GUI was interrupted whilst asking user input", e);
-		}
-		return getTextFieldTxt();
-	}
-	
-	/**
-	 * Gets the input from the text field
-	 * @return text field text.
-	 */
-	public synchronized String getTextFieldTxt() {
-		return textField.getText();
-	}
-	
-	/**
-	 * Prints to the text area on a new line 
-	 * @param txt 
-	 */
-	public void println(String txt) {
-		textArea.append(txt + "\n");
-	}
-	
-	/* *******************
-	 * GETTERS AND SETTERS
-	 * *******************
-	 */
-	
-	/* 
-	 * TODO:
-	 * Consider having different locks for the methods for getting/setting line width
-	 * and getting/setting textfield text. 
-	 */
-	
-	/**
-	 * Gets the line width field of this SimpleGUI object.
-	 * In turn, this method is called by the DrawArea object which uses the return value to set
-	 * the Graphics2D stroke width.
-	 * @return line width
-	 */
-	public int getLineWidth() {
-		return lineWidth;
-	}
-	
-	/**
-	 * Sets the line width field of this SimpleGUI object. 
-	 * @param width
-	 */
-	public void setLineWidth(int width) {
-		lineWidth = width;
-	}
-	
-	/**
-	 * Sleeps the calling thread for x milliseconds.
-	 */
-	public synchronized void sleep(long millis) {
-		try {
-			Thread.sleep(millis);
-		} catch (InterruptedException e) {
-			throw new Error("Sleep method interrupted!", e);
-		}
-	}
-	
-	/**
-	 * Sets up the GUI by creating a SimpleGUI object and configuring it to default settings like having a 'clear' button.
-	 * Returns the aforementioned SimpleGUI object
-	 */
-	public static SimpleGUI setupGUI() {
-		SimpleGUI guiObj = new SimpleGUI();
-		guiObj.setFrameName("GUI");
-		guiObj.addButton("Clear", 0, () -> guiObj.clear());
-		return guiObj;
-	}
-	
-	public static void main(String[] args) {
-        setupGUI();
-    }
-
-}
-
+package sGUI;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.TextField;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+
+public class SimpleGUI {
+	private JFrame frame;
+	private JPanel buttonPanel;
+	private DrawArea graphicsPane;
+	private TextField textField;
+	private Console textArea;
+	private static final int CONSOLE_LINES = 1000; // Older lines are dropped
+	
+	private Color col;
+	private int lineWidth = 1;
+	
+	private boolean inputRecieved;
+	private Thread callingThread;
+	
+	private SimpleGUI() {
+		frame = new JFrame();
+		buttonPanel = new JPanel();
+		graphicsPane = new DrawArea(this);
+		textField = new TextField(30);
+		textArea = new Console(40,30, CONSOLE_LINES);
+		JPanel lhsPanel = new JPanel(); // this is the entire left-hand-side panel
+		JPanel textPanel = new JPanel(); // this is the entire right-hand-side panel
+		JScrollPane textAreaScrollPane = new JScrollPane(textArea);
+		col = Color.black;
+		
+		callingThread = Thread.currentThread();
+		
+		// Everytime the user presses enter in the textField inputRecieved is true, and we notify all waiting 
+		// on the callingThread.
+		textField.addActionListener((e) -> {
+			inputRecieved = true;
+			synchronized (callingThread) {callingThread.notifyAll();}
+		});
+		
+		// Adding the text boxes to the textPanel
+		textPanel.add(textField);
+		textPanel.add(textAreaScrollPane);
+		// Adding lhs components to lhsPanel
+		lhsPanel.add(buttonPanel);
+		lhsPanel.add(Box.createVerticalGlue());
+		
+		// Layouts for all the components
+		textPanel.setLayout(new BoxLayout(textPanel, BoxLayout.Y_AXIS));
+		buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
+		lhsPanel.setLayout(new BoxLayout(lhsPanel, BoxLayout.Y_AXIS));
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.X_AXIS));
+		
+		// Set the preferred size for the graphicsPane and let the other panels work around that
+		graphicsPane.setPreferredSize(new Dimension(600,600));
+		
+		lhsPanel.setBorder(BorderFactory.createRaisedBevelBorder());
+		
+		// Configuring the frame
+		frame.setLocation(400, 100); // At some point fix this to be in proportion to screen size rather than constant
+		frame.getContentPane().add(lhsPanel);
+		frame.getContentPane().add(graphicsPane);
+		frame.getContentPane().add(textPanel);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		
+	}
+	
+	/*
+	 * Concurrency: Whoever owns this object's intrinsic lock can call:
+	 * askUserInput(...), getTextFieldTxt(...), sleep(...). 
+	 */
+	
+	/**
+	 * Sets the title of the GUI window
+	 */
+	public void setFrameName(String name) {
+		frame.setTitle(name);
+	}
+	
+	public void addTextFieldListener(ButtonFunction f) {
+		textField.addActionListener(e -> f.func());
+	}
+	
+	/**
+	 * Calls f once the text in the textField has stopped changing for debounceMillis, e.g. to act on
+	 * what the user is typing without waiting for enter. f is called on the event dispatch thread.
+	 */
+	public void addTextChangeListener(int debounceMillis, ButtonFunction f) {
+		Timer settled = new Timer(debounceMillis, e -> f.func());
+		settled.setRepeats(false);
+		textField.addTextListener(e -> settled.restart());
+	}
+	
+	/**
+	 * Calls f once the graphics pane has changed size (or moved to a screen with a different pixel scale)
+	 * and then stayed that way for debounceMillis, so dragging the window edge calls it once, not per pixel.
+	 * f runs on the event dispatch thread.
+	 */
+	public void addResizeListener(int debounceMillis, ButtonFunction f) {
+		Timer settled = new Timer(debounceMillis, e -> f.func());
+		settled.setRepeats(false);
+		graphicsPane.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent e) {settled.restart();}
+		});
+		graphicsPane.addPropertyChangeListener("graphicsConfiguration", e -> settled.restart());
+	}
+	
+	/**
+	 * Returns the size of the graphics pane, in the units shapes are drawn in.
+	 */
+	public Dimension getDrawAreaSize() {
+		return graphicsPane.getSize();
+	}
+	
+	/**
+	 * Returns how many device pixels make up one unit of the graphics pane on its current screen,
+	 * e.g. 2 on a HiDPI screen at 200% scaling, or 1 off screen.
+	 */
+	public double getPixelScale() {
+		GraphicsConfiguration config = graphicsPane.getGraphicsConfiguration();
+		return config == null ? 1 : config.getDefaultTransform().getScaleX();
+	}
+	
+	/**
+	 * Adds a button with some name and some vertical distance (in pixels) from the component above it
+	 */
+	public void addButton(String name, int verticalSpacing, ButtonFunction f) {
+		JButton button = new JButton();
+		button.addActionListener(e -> f.func());
+		button.setText(name);
+		
+		// constant spacing between component before
+		buttonPanel.add(Box.createRigidArea(new Dimension(0, verticalSpacing)));
+		buttonPanel.add(button);
+	}
+	
+	/**
+	 * Clears the graphics pane
+	 */
+	public void clear() {
+		graphicsPane.clearShapes(); // clears the list of shapes to be painted
+		graphicsPane.setFrame(null); // and stops showing any animation frame
+		// Then, adds the background rectangle to that list of shapes
+		redraw();
+		// paintComponent will end up setting the color of the Graphics object to the background col, so we must set it back.
+		graphicsPane.getGraphics().setColor(col);
+	}
+	
+	/* 
+	 * *********************
+	 * SHAPE DRAWING METHODS
+	 * *********************
+	 */
+	
+	/**
+	 * Draws a line from (x1, y1) to (x2, y2)
+	 */
+	public Shape drawLine(double x1, double y1, double x2, double y2) {
+		Shape s = new Line((int)(x1+0.5), (int)(y1+0.5), (int)(x2+0.5), (int)(y2+0.5), col);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws a connected line through the first n points of (xs[i], ys[i]).
+	 * A single Polyline is much cheaper to store and paint than n-1 separate lines.
+	 */
+	public Shape drawPolyline(int[] xs, int[] ys, int n) {
+		Shape s = new Polyline(xs, ys, n, col);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Like drawPolyline(xs, ys, n), but with the vertices in units of 1/pixelScale, e.g. in device pixels
+	 * (see getPixelScale()). The line width is still in units.
+	 */
+	public Shape drawPolyline(int[] xs, int[] ys, int n, double pixelScale) {
+		Shape s = new Polyline(xs, ys, n, col, pixelScale);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws a rectangle where (x,y) is the top-left corner of the rectangle
+	 */
+	public Shape drawRect(double x, double y, double width, double height) {
+		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws an oval with a bounding rectangle with left-hand corner at (x,y)
+	 */
+	public Shape drawOval(double x, double y, double width, double height) {
+		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws an image where (x,y) is the top-left corner of the image.
+	 */
+	public Shape drawImg(File imgFile, double x, double y) {
+		BufferedImage img = null;
+		try {
+			img = ImageIO.read(imgFile);
+		} catch (IOException e) {
+			throw new Error("Failed to read image file!", e);
+		}
+		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws an image where (x,y) is the top-left corner of the image.
+	 */
+	public Shape drawImg(URL u, double x, double y) {
+		BufferedImage img = null;
+		try {
+			img = ImageIO.read(u);
+		} catch (IOException e) {
+			throw new Error("Failed to read image file!", e);
+		}
+		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Draws an image already in memory (e.g. Raster.image()) where (x,y) is its top-left corner.
+	 * The image is not copied, so later changes to it show up at the next repaint.
+	 */
+	public Shape drawImg(Image img, double x, double y) {
+		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Like drawImg(Image, x, y), for an image with pixelScale pixels per unit (e.g. rendered at device
+	 * resolution, see getPixelScale()). It is drawn 1/pixelScale of its pixel size.
+	 */
+	public Shape drawImg(Image img, double x, double y, double pixelScale) {
+		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5), pixelScale);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	public Shape drawString(String str, double x, double y, Color col) {
+		Shape s = new StringShape(str, (int)(x+0.5), (int)(y+0.5), col, graphicsPane.getFont());
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	public Shape drawShape(Shape custom, double x, double y) {
+		custom.setPosition((int)(x+0.5), (int)(y+0.5));
+		graphicsPane.addShape(custom);
+		redraw();
+		return custom;
+	}
+	
+	public Shape fillRect(double x, double y, double width, double height) {
+		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	public Shape fillOval(double x, double y, double width, double height) {
+		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
+		graphicsPane.addShape(s);
+		redraw();
+		return s;
+	}
+	
+	/**
+	 * Deletes the shape from the draw area if it exists.
+	 * If this method appears to do nothing on the draw area, then the shape likely does not exist on the draw area.
+	 */
+	public void deleteShape(Shape s) {
+		graphicsPane.removeShape(s);
+		redraw();
+	}
+	
+	public void setColor(Color col) {
+		this.col = col;
+	}
+	
+	public Color getColor() {
+		return col;
+	}
+	
+	/**
+	 * Runs drawing and publishes all the shapes it draws or deletes at once, so the graphics pane never
+	 * shows them half drawn. Shape drawing methods can be called from any thread; batches let several
+	 * threads draw at the same time without their partial results showing.
+	 */
+	public void drawBatch(Runnable drawing) {
+		graphicsPane.beginBatch();
+		try {
+			drawing.run();
+		} finally {
+			graphicsPane.endBatch();
+		}
+	}
+	
+	/**
+	 * Returns the shapes drawn at or near (x, y), topmost first, e.g. to find what the mouse is over.
+	 * Matches are by bounding box, so a diagonal line matches anywhere in the box around it.
+	 */
+	public java.util.List<Shape> shapesAt(double x, double y) {
+		return graphicsPane.shapesAt((int)(x+0.5), (int)(y+0.5), 2);
+	}
+	
+	/**
+	 * Calls l whenever the mouse moves over the graphics area, and once with NaN when it leaves.
+	 * l is called on the event dispatch thread.
+	 */
+	public void addHoverListener(HoverListener l) {
+		graphicsPane.addMouseMotionListener(new MouseMotionAdapter() {
+			@Override
+			public void mouseMoved(MouseEvent e) {l.hovered(e.getX(), e.getY());}
+		});
+		graphicsPane.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseExited(MouseEvent e) {l.hovered(Double.NaN, Double.NaN);}
+		});
+	}
+	
+	/**
+	 * Paints overlay on top of the shapes, or removes it if null. See Overlay.
+	 */
+	public void setOverlay(Overlay overlay) {
+		graphicsPane.setOverlay(overlay);
+	}
+	
+	/**
+	 * Shows the changes to the overlay, repainting only the area it covered and covers now.
+	 */
+	public void repaintOverlay() {
+		graphicsPane.overlayChanged();
+	}
+	
+	/**
+	 * Refreshes the graphics area
+	 */
+	public void redraw() {
+		graphicsPane.repaint();
+	}
+	
+	/**
+	 * Repaints the graphics area straight away rather than when Swing gets round to it.
+	 * Must be called on the event dispatch thread.
+	 */
+	public void redrawNow() {
+		graphicsPane.paintImmediately(0, 0, graphicsPane.getWidth(), graphicsPane.getHeight());
+	}
+	
+	/**
+	 * Shows a prerendered frame in place of the shapes, drawing it immediately from the calling thread
+	 * rather than waiting for a repaint. Intended for animation loops that render their own frames.
+	 * The frame stays up (e.g. when the window is uncovered) until the next frame or clear().
+	 * The caller must hold the frame's lock while drawing into it, so a repaint never shows half a frame.
+	 * @param frame : an image the size of the graphics area, or null to go back to showing the shapes.
+	 */
+	public void presentFrame(Image frame) {
+		graphicsPane.setFrame(frame);
+		if (frame == null) {
+			redraw();
+			return;
+		}
+		Graphics g = graphicsPane.getGraphics();
+		if (g == null) {return;} // Not on screen yet.
+		try {
+			synchronized (frame) {g.drawImage(frame, 0, 0, null);}
+		} finally {
+			g.dispose();
+		}
+		Toolkit.getDefaultToolkit().sync(); // Flush now; some platforms buffer drawing otherwise.
+	}
+	
+	/**
+	 * Returns an image of what the graphics area currently shows, e.g. to use as the static background of an animation.
+	 * Must be called on the event dispatch thread.
+	 */
+	public BufferedImage snapshot() {
+		BufferedImage image = new BufferedImage(Math.max(graphicsPane.getWidth(), 1), Math.max(graphicsPane.getHeight(), 1),
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		graphicsPane.paint(g);
+		g.dispose();
+		return image;
+	}
+	
+	/*
+	 * *********************
+	 * SHAPE FACTORY METHODS
+	 * *********************
+	 */
+	
+	/**
+	 * Returns a line Shape from (x1, y1) to (x2, y2)
+	 */
+	public Shape createLineShape(double x1, double y1, double x2, double y2) {
+		Shape s = new Line((int)(x1+0.5), (int)(y1+0.5), (int)(x2+0.5), (int)(y2+0.5), col);
+		return s;
+	}
+	/**
+	 * Returns a rectangle Shape where (x,y) is the top-left corner of the rectangle
+	 */
+	public Shape createRectShape(double x, double y, double width, double height) {
+		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
+		return s;
+	}
+	
+	/**
+	 * Returns an oval Shape with a bounding rectangle with left-hand corner at (x,y)
+	 */
+	public Shape createOvalShape(double x, double y, double width, double height) {
+		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), col, null, false);
+		return s;
+	}
+	
+	/**
+	 * Returns an image Shape
+	 */
+	public Shape createImgShape(File imgFile, double x, double y) {
+		BufferedImage img = null;
+		try {
+			img = ImageIO.read(imgFile);
+		} catch (IOException e) {
+			throw new Error("Failed to read image file!", e);
+		}
+		Shape s = new ImageShape(img, (int)(x+0.5), (int)(y+0.5));
+		return s;
+	}
+	
+	public Shape createStringShape(String str, double x, double y, Color col) {
+		Shape s = new StringShape(str, (int)(x+0.5), (int)(y+0.5), col, graphicsPane.getFont());
+		return s;
+	}
+	
+	public Shape createFilledRectShape(double x, double y, double width, double height) {
+		Shape s = new Rectangle((int) (x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
+		return s;
+	}
+	
+	public Shape createFilledOvalShape(double x, double y, double width, double height) {
+		Shape s = new Oval((int)(x+0.5), (int)(y+0.5), (int)(width+0.5), (int)(height+0.5), null, col, true);
+		return s;
+	}
+	
+	/*
+	 * ******************
+	 * TEXT PANEL METHODS
+	 * ******************
+	 */
+	
+	/**
+	 * Asks a question for the user and then waits for the input from the textField.
+	 * Once the user has pressed enter in the text field, this method will return the text 
+	 * the user has typed in the text field.
+	 * @param question 
+	 * @return text input
+	 */
+	public synchronized String askUserInput(String question) {
+		inputRecieved = false; // has to be false since we haven't asked the question yet!
+		callingThread = Thread.currentThread();
+		println(question);
+		try {
+			synchronized (callingThread) {
+				while (!inputRecieved) {
+					callingThread.wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new Error("GUI was interrupted whilst asking user input", e);
+		}
+		return getTextFieldTxt();
+	}
+	
+	/**
+	 * Opens a file chooser dialog over the GUI window.
+	 * @return the chosen file, or null if the user cancelled.
+	 */
+	public File chooseFile(String title) {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle(title);
+		if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+			return chooser.getSelectedFile();
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the input from the text field
+	 * @return text field text.
+	 */
+	public synchronized String getTextFieldTxt() {
+		return textField.getText();
+	}
+	
+	/**
+	 * Sets the text in the text field, e.g. to replay what a user typed. Text change listeners (see
+	 * addTextChangeListener) hear about it as they would about typing; text field listeners, which wait
+	 * for Enter, don't.
+	 */
+	public void setTextFieldTxt(String txt) {
+		textField.setText(txt);
+	}
+	
+	/**
+	 * Prints to the text area on a new line. Can be called from any thread; the text area shows
+	 * new lines within a frame or so, and keeps only the last CONSOLE_LINES.
+	 * @param txt 
+	 */
+	public void println(String txt) {
+		textArea.println(txt);
+	}
+	
+	/* *******************
+	 * GETTERS AND SETTERS
+	 * *******************
+	 */
+	
+	/* 
+	 * TODO:
+	 * Consider having different locks for the methods for getting/setting line width
+	 * and getting/setting textfield text. 
+	 */
+	
+	/**
+	 * Gets the line width field of this SimpleGUI object.
+	 * In turn, this method is called by the DrawArea object which uses the return value to set
+	 * the Graphics2D stroke width.
+	 * @return line width
+	 */
+	public int getLineWidth() {
+		return lineWidth;
+	}
+	
+	/**
+	 * Sets the line width field of this SimpleGUI object. 
+	 * @param width
+	 */
+	public void setLineWidth(int width) {
+		lineWidth = width;
+	}
+	
+	/**
+	 * Sleeps the calling thread for x milliseconds.
+	 */
+	public synchronized void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new Error("Sleep method interrupted!", e);
+		}
+	}
+	
+	/**
+	 * Sets up the GUI by creating a SimpleGUI object and configuring it to default settings like having a 'clear' button.
+	 * Returns the aforementioned SimpleGUI object
+	 */
+	public static SimpleGUI setupGUI() {
+		SimpleGUI guiObj = new SimpleGUI();
+		guiObj.setFrameName("GUI");
+		guiObj.addButton("Clear", 0, () -> guiObj.clear());
+		return guiObj;
+	}
+	
+	public static void main(String[] args) {
+        setupGUI();
+    }
+
+}
+
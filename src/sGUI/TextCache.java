@@ -0,0 +1,72 @@
+package sGUI;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The bounds of strings as laid out in a font, so StringShape can tell the ShapeIndex where it is without
+ * laying its text out again every time the same label is drawn.
+ *
+ * Laying text out (mapping characters to glyphs and measuring them) costs far more than drawing it, which
+ * Java2D already does from its own cache of glyph images. Axis labels are made again on every replot, but
+ * mostly with strings that were drawn before, so the bounds are kept by font and then by string, and the
+ * least recently used strings in a font are dropped once it has more than CAPACITY (and the least recently
+ * used fonts once there are more than FONTS). Looking up a string that is there allocates nothing.
+ *
+ * Thread safe.
+ *
+ * @author Sam Chan
+ */
+final class TextCache {
+	static final int CAPACITY = 1024;
+	static final int FONTS = 16;
+	// Whether glyph advances are rounded to whole pixels (fractional metrics off, the default) can move the
+	// end of a long string by a few pixels, so text is measured both ways, and padded for antialiasing.
+	private static final FontRenderContext[] FRCS = {
+			new FontRenderContext(null, false, false), new FontRenderContext(null, true, true)};
+	private static final int PADDING = 2;
+
+	private static final LinkedHashMap<Font, LinkedHashMap<String, java.awt.Rectangle>> fonts =
+			new LinkedHashMap<Font, LinkedHashMap<String, java.awt.Rectangle>>(16, 0.75f, true);
+
+	private TextCache() {}
+
+	/**
+	 * The area str covers drawn in font, relative to the start of its baseline. Don't modify it.
+	 */
+	static synchronized java.awt.Rectangle bounds(String str, Font font) {
+		LinkedHashMap<String, java.awt.Rectangle> bounds = fonts.get(font);
+		if (bounds == null) {
+			bounds = new LinkedHashMap<String, java.awt.Rectangle>(16, 0.75f, true);
+			fonts.put(font, bounds);
+			dropEldest(fonts, FONTS);
+		}
+		java.awt.Rectangle b = bounds.get(str);
+		if (b != null) {return b;}
+
+		if (str.isEmpty()) {
+			b = new java.awt.Rectangle();
+		} else {
+			for (FontRenderContext frc : FRCS) {
+				java.awt.Rectangle r = new TextLayout(str, font, frc).getBounds().getBounds();
+				b = b == null ? r : b.union(r);
+			}
+		}
+		b.grow(PADDING, PADDING);
+		bounds.put(str, b);
+		dropEldest(bounds, CAPACITY);
+		return b;
+	}
+
+	private static void dropEldest(LinkedHashMap<?, ?> map, int capacity) {
+		if (map.size() > capacity) {
+			Iterator<? extends Map.Entry<?, ?>> eldest = map.entrySet().iterator();
+			eldest.next();
+			eldest.remove();
+		}
+	}
+}